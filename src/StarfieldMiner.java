@@ -1,50 +1,114 @@
 import miner.ShipWeaponMiner;
+import parser.ESMDumpLoader;
 import parser.ESMJsonParser;
+import parser.LinkGraph;
 import util.Holder;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class StarfieldMiner {
+    private static final String USAGE =
+            "Usage: StarfieldMiner [--link] [--pipeline] [--output <csv file>]"
+                    + " [<dump directory or glob> [<threads> [<snapshot file>]]]";
+
     public static void main(String[] args) {
         // String dataMiner = args[0];
+        // --link resolves every reference up front, and reports those that don't resolve. It loads
+        // every signature rather than just the miner's, so only truly dangling references show.
+        // --pipeline loads the dumps through a staged ingest pipeline, and reports the throughput
+        // of each stage.
+        // --output names the CSV file to write. By default, output.csv is written beside the
+        // directory that holds the dumps.
+        List<String> positional = new ArrayList<>();
+        boolean link = false;
+        boolean pipelined = false;
+        String outputFile = null;
+        for (int idx = 0; idx < args.length; idx++) {
+            if ("--link".equals(args[idx])) {
+                link = true;
+            } else if ("--pipeline".equals(args[idx])) {
+                pipelined = true;
+            } else if ("--output".equals(args[idx])) {
+                if (++idx == args.length) {
+                    System.err.println(USAGE);
+                    return;
+                }
+                outputFile = args[idx];
+            } else {
+                positional.add(args[idx]);
+            }
+        }
         String base = "C:\\Users\\Eric Karlson\\Documents\\Starfield\\JSON\\";
-        String filename1 = base + "AMMO.json";
-        String filename2 = base + "AVIF.json";
-        String filename3 = base + "COBJ.json";
-        String filename4 = base + "DMGT.json";
-        String filename5 = base + "EXPL.json";
-        String filename6 = base + "FLST.json";
-        String filename7 = base + "GBFM.json";
-        String filename8 = base + "GLOB.json";
-        String filename9 = base + "KYWD.json";
-        String filename10 = base + "PERK.json";
-        String filename11 = base + "PROJ.json";
-        String filename12 = base + "WEAP.json";
+        String source = (positional.size() > 0) ? positional.get(0) : base;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (positional.size() > 1) {
+            threads = parseThreads(positional.get(1));
+            if (threads < 1) {
+                System.err.println("StarfieldMiner: <threads> must be a positive number");
+                System.err.println(USAGE);
+                return;
+            }
+        }
+        String snapshot = (positional.size() > 2) ? positional.get(2) : null;
+        if (null == outputFile) {
+            outputFile = defaultOutputFile(source);
+        }
 
         Holder<String> current = new Holder<>();
-        try (PrintStream output =
-                     new PrintStream(base + "..\\output.csv")) {
-            ESMJsonParser parser = new ESMJsonParser();
-            // for (int idx = 1; idx < args.length; idx++) {
-            //    parser.parse(args[idx]);
-            //
-            parser.parse(filename1, current);
-            parser.parse(filename2, current);
-            parser.parse(filename3, current);
-            parser.parse(filename4, current);
-            parser.parse(filename5, current);
-            parser.parse(filename6, current);
-            parser.parse(filename7, current);
-            parser.parse(filename8, current);
-            parser.parse(filename9, current);
-            parser.parse(filename10, current);
-            parser.parse(filename11, current);
-            parser.parse(filename12, current);
+        try (PrintStream output = new PrintStream(outputFile)) {
             ShipWeaponMiner miner = new ShipWeaponMiner();
+            ESMJsonParser parser = new ESMJsonParser();
+            if (!link) {
+                parser.setSignatureFilter(miner.getRequiredSignatures());
+            }
+            List<String> dumps = ESMDumpLoader.discover(source);
+            if ((null == snapshot) || !parser.loadSnapshot(snapshot, dumps)) {
+                ESMDumpLoader loader = new ESMDumpLoader(parser, threads);
+                loader.setPipelined(pipelined);
+                loader.load(dumps, current);
+                if (null != snapshot) {
+                    current.set(snapshot);
+                    parser.writeSnapshot(snapshot, dumps);
+                }
+            }
+            if (link) {
+                LinkGraph links = parser.link(threads);
+                links.printDangling(System.err, 3);
+            }
             miner.run(parser, output);
         } catch (IOException e) {
             System.out.println("StarField " + current.get() + ": error opening file: " + e.getMessage());
         }
     }
+
+    /**
+     * @param threads The thread count given on the command line
+     * @return The thread count, or {@code 0} if it is not a number
+     */
+    private static int parseThreads(String threads) {
+        try {
+            return Integer.parseInt(threads);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param source The dump directory, or a glob of dump files
+     * @return The path of output.csv, in the parent of the directory that holds the dumps
+     */
+    private static String defaultOutputFile(String source) {
+        Path dir = Paths.get(source);
+        if (!Files.isDirectory(dir)) {
+            dir = (null != dir.getParent()) ? dir.getParent() : Paths.get(".");
+        }
+        Path parent = dir.toAbsolutePath().normalize().getParent();
+        return ((null != parent) ? parent : dir).resolve("output.csv").toString();
+    }
 }
@@ -1,8 +1,13 @@
 package datamodel;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
+import parser.LinkGraph;
+import parser.RecordProjection;
 
 /**
  * Abstraction of the AMMO record type
@@ -13,24 +18,47 @@ import parser.ESMJsonParser;
 public class AMMORecord extends Record {
   private static final String FLD_DNAM = "DNAM - DNAM";
   private static final String FLD_PROJECTILE = "Projectile";
+  private static final LinkGraph.Field LINK_PROJECTILE = LinkGraph.field(FLD_DNAM, FLD_PROJECTILE);
+
+  /** The fields of an AMMO record that the accessors read */
+  public static final class Projection implements RecordProjection {
+    private String projectile = null;
+
+    @Override
+    public void bind(@NotNull String key, @NotNull JsonParser jp) throws IOException {
+      if (FLD_DNAM.equals(key)) {
+        RecordProjection.readFields(
+            jp,
+            (field, value) -> {
+              if (FLD_PROJECTILE.equals(field)) {
+                projectile = RecordProjection.text(value);
+              }
+            });
+      }
+    }
+  }
 
   public AMMORecord(
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       ESMJsonParser.@NotNull ParserRegistrar registrar) {
     super(formId, editorId, signature, node, registrar);
   }
 
   public PROJRecord getPROJRecord() {
-    JsonNode dnam = node.get(FLD_DNAM);
+    Projection projection = getProjection(Projection.class);
+    if (null != projection) {
+      return resolve(LINK_PROJECTILE, projection.projectile, PROJRecord.class);
+    }
+    JsonNode dnam = getNode().get(FLD_DNAM);
     if (null == dnam) {
       return null;
     }
     JsonNode proj = dnam.get(FLD_PROJECTILE);
     return (null != proj && proj.isTextual())
-        ? parser.findRecordByFormId(proj.asText(), PROJRecord.class)
+        ? resolve(LINK_PROJECTILE, proj.asText(), PROJRecord.class)
         : null;
   }
 }
@@ -1,10 +1,15 @@
 package datamodel;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.UnaryOperator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
+import parser.LinkGraph;
+import parser.RecordProjection;
 import parser.Util;
 
 /**
@@ -19,6 +24,7 @@ public class COBJRecord extends Record {
   private static final String FLD_REQD_PERKS = "RQPK - Required Perks";
   private static final String FLD_REQUIRED_PERK_FMT = "Required Perk #%d";
   private static final String FLD_CREATED_OBJECT = "CNAM - Created Object";
+  private static final LinkGraph.Field LINK_CREATED_OBJECT = LinkGraph.field(FLD_CREATED_OBJECT);
   private static final String FLD_COST_DATA = "DATA - Value";
   private static final String FLD_RECIPE_FILTERS = "FNAM - Recipe Filters";
   private static final String FLD_KEYWORD = "Keyword";
@@ -69,11 +75,11 @@ public class COBJRecord extends Record {
 
     @Override
     public String toString() {
-      return "Condition:" + node;
+      return "Condition:" + getNode();
     }
 
     private @Nullable String getCTDAField(@NotNull String field) {
-      JsonNode ctda = node.get(FLD_CTDA);
+      JsonNode ctda = getNode().get(FLD_CTDA);
       JsonNode value = (null != ctda) ? ctda.get(field) : null;
       return (null != value && value.isTextual()) ? value.asText() : null;
     }
@@ -132,16 +138,18 @@ public class COBJRecord extends Record {
     private static final String FLD_PERK = "Perk";
     private static final String FLD_RANK = "Rank";
 
-    private final ESMJsonParser parser;
+    private final COBJRecord recipe;
+    private final LinkGraph.Field link;
 
-    private RequiredPerk(JsonNode node, ESMJsonParser parser) {
+    private RequiredPerk(JsonNode node, COBJRecord recipe, LinkGraph.Field link) {
       super(node);
-      this.parser = parser;
+      this.recipe = recipe;
+      this.link = link;
     }
 
     @Override
     public String toString() {
-      return "RequiredPerk:" + node;
+      return "RequiredPerk:" + getNode();
     }
 
     public String getPerkFormId() {
@@ -150,20 +158,65 @@ public class COBJRecord extends Record {
 
     public @Nullable PERKRecord getPerk() {
       String perkFormId = getPerkFormId();
-      return (null != perkFormId) ? parser.findRecordByFormId(perkFormId, PERKRecord.class) : null;
+      return recipe.resolve(link, perkFormId, PERKRecord.class);
     }
 
     public Integer getRank() {
-      JsonNode rank = node.get(FLD_RANK);
+      JsonNode rank = getNode().get(FLD_RANK);
       return Util.asInt(rank, null);
     }
   }
 
+  /**
+   * The fields of a COBJ record that the accessors read. The conditions and required perks are
+   * wrapped as {@link JsonNode}'s by their accessors, so those two fields are kept as small trees.
+   */
+  public static final class Projection implements RecordProjection {
+    private int cost = 0;
+    private JsonNode conditions = null;
+    private JsonNode requiredPerks = null;
+    private String createdObject = null;
+    private String categoryFormId = null;
+
+    @Override
+    public void bind(@NotNull String key, @NotNull JsonParser jp) throws IOException {
+      switch (key) {
+        case FLD_COST_DATA:
+          cost = Util.asInt(RecordProjection.text(jp), 0);
+          break;
+        case FLD_CONDITIONS:
+          conditions = jp.readValueAsTree();
+          break;
+        case FLD_REQD_PERKS:
+          requiredPerks = jp.readValueAsTree();
+          break;
+        case FLD_CREATED_OBJECT:
+          createdObject = RecordProjection.text(jp);
+          break;
+        case FLD_RECIPE_FILTERS:
+          RecordProjection.readFields(
+              jp,
+              (field, value) -> {
+                if (FLD_KEYWORD.equals(field)) {
+                  categoryFormId = RecordProjection.text(value);
+                }
+              });
+          break;
+      }
+    }
+
+    @Override
+    public void settle(@NotNull UnaryOperator<JsonNode> settler) {
+      conditions = (null != conditions) ? settler.apply(conditions) : null;
+      requiredPerks = (null != requiredPerks) ? settler.apply(requiredPerks) : null;
+    }
+  }
+
   public COBJRecord(
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       ESMJsonParser.@NotNull ParserRegistrar registrar) {
     super(formId, editorId, signature, node, registrar);
   }
@@ -172,7 +225,11 @@ public class COBJRecord extends Record {
    * @return The constructible object's cost
    */
   public int getCost() {
-    JsonNode cost = node.get(FLD_COST_DATA);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.cost;
+    }
+    JsonNode cost = getNode().get(FLD_COST_DATA);
     return Util.asInt(cost, 0);
   }
 
@@ -182,7 +239,8 @@ public class COBJRecord extends Record {
    * @return An {@link Iterator} for the enumerated {@link Condition}'s
    */
   public @NotNull Iterator<Condition> getConditions() {
-    JsonNode conditions = node.get(FLD_CONDITIONS);
+    Projection proj = getProjection(Projection.class);
+    JsonNode conditions = (null != proj) ? proj.conditions : getNode().get(FLD_CONDITIONS);
     if (null == conditions) {
       return Collections.emptyIterator();
     }
@@ -207,11 +265,11 @@ public class COBJRecord extends Record {
    * @return An {@link Iterator} for the enumerated {@link RequiredPerk}'s
    */
   public @NotNull Iterator<RequiredPerk> getRequiredPerks() {
-    final JsonNode perks = node.get(FLD_REQD_PERKS);
+    Projection proj = getProjection(Projection.class);
+    final JsonNode perks = (null != proj) ? proj.requiredPerks : getNode().get(FLD_REQD_PERKS);
     if (null == perks) {
       return Collections.emptyIterator();
     }
-    final ESMJsonParser thisParser = this.parser;
     return new Iterator<>() {
       private int idx = 0;
 
@@ -222,11 +280,13 @@ public class COBJRecord extends Record {
 
       @Override
       public RequiredPerk next() {
-        JsonNode perk = perks.get(String.format(FLD_REQUIRED_PERK_FMT, idx++));
+        String key = String.format(FLD_REQUIRED_PERK_FMT, idx++);
+        JsonNode perk = perks.get(key);
         if (null == perk) {
           throw new NoSuchElementException();
         }
-        return new RequiredPerk(perk, thisParser);
+        LinkGraph.Field link = LinkGraph.field(FLD_REQD_PERKS, key, RequiredPerk.FLD_PERK);
+        return new RequiredPerk(perk, COBJRecord.this, link);
       }
     };
   }
@@ -242,8 +302,15 @@ public class COBJRecord extends Record {
    */
   public <T extends Record> @Nullable T getCreatedObject(@NotNull Class<T> clazz) {
     // Find the FormID for the Created Object
-    JsonNode formId = node.get(FLD_CREATED_OBJECT);
-    if (null == formId || !formId.isTextual()) {
+    Projection proj = getProjection(Projection.class);
+    String createdObject;
+    if (null != proj) {
+      createdObject = proj.createdObject;
+    } else {
+      JsonNode formId = getNode().get(FLD_CREATED_OBJECT);
+      createdObject = (null != formId && formId.isTextual()) ? formId.asText() : null;
+    }
+    if (null == createdObject) {
       return null;
     }
 
@@ -255,22 +322,25 @@ public class COBJRecord extends Record {
     // should be identical (I'm assuming - I've not tried to verify this).
     // So if we find that we get an FLST record, we use the first GBFM from that FLST
     // Start by assuming that the reference points at an FLST record
-    String rawFormId = Util.toRaw(formId.asText());
-    FLSTRecord flst = parser.findRecordByFormId(rawFormId, FLSTRecord.class);
+    FLSTRecord flst = resolve(LINK_CREATED_OBJECT, createdObject, FLSTRecord.class);
     if (null != flst) {
       // Grab the first GBFM from the FLST
       return flst.at(0, clazz);
     }
 
     // Otherwise assume that it must be a direct reference
-    return parser.findRecordByFormId(rawFormId, clazz);
+    return resolve(LINK_CREATED_OBJECT, createdObject, clazz);
   }
 
   /**
    * @return The FormID for this COBJ's <i>category</i> keyword
    */
   public @Nullable String getCategoryFormId() {
-    JsonNode cat = node.get(FLD_RECIPE_FILTERS);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.categoryFormId;
+    }
+    JsonNode cat = getNode().get(FLD_RECIPE_FILTERS);
     if (null == cat) {
       return null;
     }
@@ -2,6 +2,7 @@ package datamodel;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
 
 /**
@@ -17,7 +18,7 @@ public class DMGTRecord extends Record {
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       ESMJsonParser.@NotNull ParserRegistrar registrar) {
     super(formId, editorId, signature, node, registrar);
   }
@@ -0,0 +1,76 @@
+package datamodel;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import parser.RecordProjection;
+import parser.Util;
+import util.ESMKeyValueMap;
+
+/**
+ * The projected <i>DAMA - Damage Types</i> field shared by the WEAP and EXPL records: the auxiliary
+ * damage of each damage type, in the order they appear in the record.
+ *
+ * @author Eric Karlson
+ */
+final class DamageTypes {
+  private static final String FLD_DAMAGE_TYPE = "Damage Type";
+  private static final String FLD_VALUE = "Value";
+
+  /** For records without a DAMA field */
+  static final DamageTypes NONE = new DamageTypes(new String[0], new int[0]);
+
+  private final String[] damageTypeFormIds;
+  private final int[] values;
+
+  private DamageTypes(@NotNull String[] damageTypeFormIds, @NotNull int[] values) {
+    this.damageTypeFormIds = damageTypeFormIds;
+    this.values = values;
+  }
+
+  /**
+   * @param jp The {@link JsonParser} positioned on the DAMA field's {@code START_OBJECT}
+   * @return The damage types read from the field
+   * @throws IOException If there is some problem reading the field
+   */
+  static @NotNull DamageTypes read(@NotNull JsonParser jp) throws IOException {
+    List<String> types = new ArrayList<>();
+    List<Integer> damage = new ArrayList<>();
+    RecordProjection.readFields(
+        jp,
+        (key, dmg) -> {
+          if (!ESMKeyValueMap.isOccurrenceOf(key, FLD_DAMAGE_TYPE)) {
+            return;
+          }
+          String[] entry = new String[2];
+          RecordProjection.readFields(
+              dmg,
+              (field, value) -> {
+                if (FLD_DAMAGE_TYPE.equals(field)) {
+                  entry[0] = RecordProjection.text(value);
+                } else if (FLD_VALUE.equals(field)) {
+                  entry[1] = RecordProjection.text(value);
+                }
+              });
+          types.add(entry[0]);
+          damage.add(Util.asInt(entry[1], 0));
+        });
+    return new DamageTypes(
+        types.toArray(new String[0]), damage.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  /**
+   * @param damageTypeFormId The Form ID of the DMGT of interest
+   * @return The auxiliary damage of this type, or 0 if there is none
+   */
+  int get(@NotNull String damageTypeFormId) {
+    for (int idx = 0; idx < damageTypeFormIds.length; idx++) {
+      if (damageTypeFormId.equals(damageTypeFormIds[idx])) {
+        return values[idx];
+      }
+    }
+    return 0;
+  }
+}
@@ -1,10 +1,13 @@
 package datamodel;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
+import parser.RecordProjection;
 import parser.Util;
-import util.ESMKeyValueMap;
 
 /**
  * Abstraction of the EXPL record type
@@ -19,17 +22,42 @@ public class EXPLRecord extends Record {
   private static final String FLD_DAMAGE_TYPE = "Damage Type";
   private static final String FLD_VALUE = "Value";
 
+  /** The fields of an EXPL record that the accessors read */
+  public static final class Projection implements RecordProjection {
+    private int physicalDamage = 0;
+    private DamageTypes damageTypes = DamageTypes.NONE;
+
+    @Override
+    public void bind(@NotNull String key, @NotNull JsonParser jp) throws IOException {
+      if (FLD_ENAM.equals(key)) {
+        RecordProjection.readFields(
+            jp,
+            (field, value) -> {
+              if (FLD_ATTACK_DAMAGE.equals(field)) {
+                physicalDamage = Util.asInt(RecordProjection.text(value), 0);
+              }
+            });
+      } else if (FLD_DAMA.equals(key)) {
+        damageTypes = DamageTypes.read(jp);
+      }
+    }
+  }
+
   public EXPLRecord(
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       ESMJsonParser.@NotNull ParserRegistrar registrar) {
     super(formId, editorId, signature, node, registrar);
   }
 
   public int getPhysicalDamage() {
-    JsonNode enam = node.get(FLD_ENAM);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.physicalDamage;
+    }
+    JsonNode enam = getNode().get(FLD_ENAM);
     if (null == enam) {
       return 0;
     }
@@ -38,18 +66,18 @@ public class EXPLRecord extends Record {
   }
 
   public int getAuxDamage(@NotNull String damageTypeFormId) {
-    JsonNode dama = node.get(FLD_DAMA);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.damageTypes.get(damageTypeFormId);
+    }
+    JsonNode dama = getNode().get(FLD_DAMA);
     if (null == dama) {
       return 0;
     }
 
     // This is another example of where the serialize-command-json script generates JSON
-    // Objects that have repeating property names.  Use our disambiguation logic to access
-    // each repeated property with a unique name.
-    JsonNode dmg;
-    for (int idx = 1;
-        null != (dmg = dama.get(ESMKeyValueMap.generateRepeatedKey(FLD_DAMAGE_TYPE, idx)));
-        idx++) {
+    // Objects that have repeating property names.  Enumerate every occurrence of it.
+    for (JsonNode dmg : Util.occurrences(dama, FLD_DAMAGE_TYPE)) {
       JsonNode dtype = dmg.get(FLD_DAMAGE_TYPE);
       if (null != dtype && damageTypeFormId.equals(dtype.asText())) {
         JsonNode value = dmg.get(FLD_VALUE);
@@ -2,8 +2,8 @@ package datamodel;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
-import parser.Util;
 
 /**
  * Abstraction for FLST records
@@ -19,7 +19,7 @@ public class FLSTRecord extends Record {
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       ESMJsonParser.@NotNull ParserRegistrar registrar) {
     super(formId, editorId, signature, node, registrar);
   }
@@ -34,7 +34,7 @@ public class FLSTRecord extends Record {
    * @param <T> The expected class of the referenced form
    */
   public <T extends Record> T at(int idx, Class<T> clazz) {
-    JsonNode forms = node.get(FLD_FORM_IDS);
+    JsonNode forms = getNode().get(FLD_FORM_IDS);
     if (null == forms) {
       return null;
     }
@@ -46,6 +46,6 @@ public class FLSTRecord extends Record {
     if (null == lnam || !lnam.isTextual()) {
       return null;
     }
-    return parser.findRecordByFormId(Util.toRaw(lnam.asText()), clazz);
+    return parser.findRecordByReference(lnam.asText(), clazz);
   }
 }
@@ -4,9 +4,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
+import parser.LinkGraph;
 import parser.Util;
 import util.Assert;
-import util.ESMKeyValueMap;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -28,6 +28,14 @@ public class GBFMRecord extends Record {
     private static final String COMP_TYPE_LINKED_FORMS = "BGSFormLinkData_Component";
     private static final String COMP_TYPE_KEYWORDS = "BGSKeywordForm_Component";
     private static final String COMP_TYPE_TES_FULL_NAME = "TESFullName_Component";
+    private static final LinkGraph.Field LINK_LINKED_FORM =
+            LinkGraph.field(
+                    FLD_COMPONENTS,
+                    FLD_COMPONENT,
+                    Component.FLD_COMPONENT_DATA_FORM_LINKS,
+                    Component.FLD_LINKED_FORMS,
+                    Component.FLD_LINKED_FORM,
+                    Component.FLD_FORM_LINK_FORM_ID);
 
     /**
      * Encapsulates a <i>PropertySheet</i> found in a BGSPropertySheet_Component component. A
@@ -46,15 +54,10 @@ public class GBFMRecord extends Record {
 
             // Extract all the properties and store them in a map for easy access
             // This is another one of those cases where the 'serialize-command-json'
-            // script generates JSON object with repeated property name, so use the
-            // name-uniquifier logic from ESMKeyValueMap to enumerate all the repeated
-            // properties.
+            // script generates JSON object with repeated property name, so enumerate
+            // every occurrence of the repeated property.
             JsonNode properties = node.get(FLD_PROPERTIES);
-            JsonNode property;
-            for (int idx = 1;
-                 null
-                         != (property = properties.get(ESMKeyValueMap.generateRepeatedKey(FLD_PROPERTY, idx)));
-                 idx++) {
+            for (JsonNode property : Util.occurrences(properties, FLD_PROPERTY)) {
                 propertyMap.put(getPropertyKey(property), getPropertyValue(property));
             }
         }
@@ -153,7 +156,7 @@ public class GBFMRecord extends Record {
          * @return This Component's {@link PropertySheet} or {@code null} if there is none
          */
         public @Nullable PropertySheet getPropertySheet() {
-            JsonNode propertySheet = node.get(FLD_COMPONENT_DATA_PROPERTY_SHEET);
+            JsonNode propertySheet = getNode().get(FLD_COMPONENT_DATA_PROPERTY_SHEET);
             return (null != propertySheet) ? new PropertySheet(propertySheet, parser) : null;
         }
 
@@ -165,8 +168,18 @@ public class GBFMRecord extends Record {
          * @return The Form ID of the linked form, or {@code null} if there is no such link
          */
         public @Nullable String getLinkedFormId(@NotNull String keywordFormId) {
+            String linkedForm = getLinkedForm(keywordFormId);
+            return (null != linkedForm) ? Util.toRaw(linkedForm) : null;
+        }
+
+        /**
+         * @param keywordFormId The Form ID of the KEYW that identifies the linked form of interest
+         * @return The reference to the linked form, exactly as the component holds it, or {@code
+         *     null} if there is no such link
+         */
+        private @Nullable String getLinkedForm(@NotNull String keywordFormId) {
             // Does this component have linked form data?
-            JsonNode formLinks = node.get(FLD_COMPONENT_DATA_FORM_LINKS);
+            JsonNode formLinks = getNode().get(FLD_COMPONENT_DATA_FORM_LINKS);
             if (null == formLinks) {
                 return null;
             }
@@ -179,10 +192,10 @@ public class GBFMRecord extends Record {
                 JsonNode linkedFormRecord = iter.next().get(FLD_LINKED_FORM);
                 if (null != linkedFormRecord) {
                     JsonNode key = linkedFormRecord.get(FLD_FORM_LINK_KEY);
-                    if (null != key && key.isTextual() && Util.toRaw(key.asText()).equals(keywordFormId)) {
+                    if (null != key && key.isTextual() && Util.isReferenceTo(key.asText(), keywordFormId)) {
                         JsonNode linkedForm = linkedFormRecord.get(FLD_FORM_LINK_FORM_ID);
                         return (null != linkedForm && linkedForm.isTextual())
-                                ? Util.toRaw(linkedForm.asText())
+                                ? linkedForm.asText()
                                 : null;
                     }
                 }
@@ -200,7 +213,7 @@ public class GBFMRecord extends Record {
          * @return The first tagged KEYW that satisfies the predicate, or {@code null}
          */
         public KYWDRecord getKeywordTag(Predicate<KYWDRecord> predicate) {
-            JsonNode data = node.get(FLD_COMPONENT_DATA_KEYWORDS);
+            JsonNode data = getNode().get(FLD_COMPONENT_DATA_KEYWORDS);
             if (null == data) {
                 return null;
             }
@@ -214,12 +227,8 @@ public class GBFMRecord extends Record {
             }
 
             // This is another case where the serialize-command-json generates a JSON Object
-            // with repeated property names.  Use our key disambiguation logic to access each
-            // renamed property that was created during parsing.
-            JsonNode keywFormId;
-            for (int idx = 1;
-                 null != (keywFormId = keywdata.get(ESMKeyValueMap.generateRepeatedKey(FLD_KEYWORD, idx)));
-                 idx++) {
+            // with repeated property names.  Enumerate every occurrence of the keyword.
+            for (JsonNode keywFormId : Util.occurrences(keywdata, FLD_KEYWORD)) {
                 Assert.assertTrue(keywFormId.isTextual(), "Unexpected value type for 'Keyword' property");
                 KYWDRecord kywd = parser.findRecordByFormId(keywFormId.asText(), KYWDRecord.class);
                 if (null != kywd && predicate.test(kywd)) {
@@ -238,7 +247,7 @@ public class GBFMRecord extends Record {
          * @return This Component's {@link FullNameDataBlock} or {@code null} if there is none
          */
         public @Nullable FullNameDataBlock getFullnameDataBlock() {
-            JsonNode data = node.get(FLD_COMPONENT_DATA_FULL_NAME);
+            JsonNode data = getNode().get(FLD_COMPONENT_DATA_FULL_NAME);
             return (null != data) ? new FullNameDataBlock(data) : null;
         }
     }
@@ -247,7 +256,7 @@ public class GBFMRecord extends Record {
             @NotNull String formId,
             @NotNull String editorId,
             @NotNull String signature,
-            @NotNull JsonNode node,
+            @Nullable JsonNode node,
             ESMJsonParser.@NotNull ParserRegistrar registrar) {
         super(formId, editorId, signature, node, registrar);
     }
@@ -289,8 +298,8 @@ public class GBFMRecord extends Record {
         if (null == comp) {
             return null;
         }
-        String weapFormId = comp.getLinkedFormId(KYWDRecord.SPACESHIP_PART_LINKED_WEAPON_FID);
-        return (null != weapFormId) ? parser.findRecordByFormId(weapFormId, WEAPRecord.class) : null;
+        String weapFormId = comp.getLinkedForm(KYWDRecord.SPACESHIP_PART_LINKED_WEAPON_FID);
+        return resolve(LINK_LINKED_FORM, weapFormId, WEAPRecord.class);
     }
 
     /**
@@ -327,7 +336,7 @@ public class GBFMRecord extends Record {
      * @return An {@link Iterator} for the enumerated {@link Component}'s
      */
     public Iterator<Component> getComponents() {
-        JsonNode components = node.get(FLD_COMPONENTS);
+        JsonNode components = getNode().get(FLD_COMPONENTS);
         final Iterator<JsonNode> iter =
                 (null != components) ? components.elements() : Collections.emptyIterator();
 
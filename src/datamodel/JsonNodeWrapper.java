@@ -11,12 +11,12 @@ import org.jetbrains.annotations.Nullable;
  * @author Eric Karlson
  */
 public class JsonNodeWrapper {
-  static final String FLD_FULL_NAME = "FULL - Name";
+  public static final String FLD_FULL_NAME = "FULL - Name";
 
-  /** The wrapped {@link JsonNode} */
-  protected final JsonNode node;
+  /** The wrapped {@link JsonNode}, or {@code null} while a lazily loaded {@link Record} is idle */
+  private volatile JsonNode node;
 
-  protected JsonNodeWrapper(@NotNull JsonNode node) {
+  protected JsonNodeWrapper(@Nullable JsonNode node) {
     this.node = node;
   }
 
@@ -27,6 +27,22 @@ public class JsonNodeWrapper {
     return node;
   }
 
+  /**
+   * @return The wrapped {@link JsonNode} if it is currently resident, without loading it
+   */
+  protected @Nullable JsonNode peekNode() {
+    return node;
+  }
+
+  /**
+   * Replaces the wrapped {@link JsonNode}
+   *
+   * @param node The new {@link JsonNode}, or {@code null} to drop the current one
+   */
+  protected void setNode(@Nullable JsonNode node) {
+    this.node = node;
+  }
+
   /**
    * Retrieve the value of a simple, scalar String property
    *
@@ -35,7 +51,7 @@ public class JsonNodeWrapper {
    *     String value, {@code null} otherwise
    */
   protected @Nullable String getPropertyAsString(@NotNull String propName) {
-    JsonNode value = node.get(propName);
+    JsonNode value = getNode().get(propName);
     return (null != value) ? value.asText() : null;
   }
 
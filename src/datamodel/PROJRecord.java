@@ -1,9 +1,13 @@
 package datamodel;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
+import parser.LinkGraph;
+import parser.RecordProjection;
 import parser.Util;
 
 /**
@@ -17,18 +21,57 @@ public class PROJRecord extends Record {
   private static final String FLD_FLAGS = "Flags";
   private static final String FLD_SPEED = "Speed";
   private static final String FLD_EXPLOSION = "Explosion";
+  private static final LinkGraph.Field LINK_EXPLOSION = LinkGraph.field(FLD_PROD, FLD_EXPLOSION);
+
+  /** The fields of a PROJ record that the accessors read */
+  public static final class Projection implements RecordProjection {
+    private int speed = 0;
+    private boolean explosionFlag = false;
+    private String explosion = null;
+
+    @Override
+    public void bind(@NotNull String key, @NotNull JsonParser jp) throws IOException {
+      if (FLD_PROD.equals(key)) {
+        RecordProjection.readFields(
+            jp,
+            (field, value) -> {
+              switch (field) {
+                case FLD_SPEED:
+                  speed = Util.asInt(RecordProjection.text(value), 0);
+                  break;
+                case FLD_FLAGS:
+                  RecordProjection.readFields(
+                      value,
+                      (flag, set) -> {
+                        if (FLD_EXPLOSION.equals(flag)) {
+                          explosionFlag = 0 != Util.asInt(RecordProjection.text(set), 0);
+                        }
+                      });
+                  break;
+                case FLD_EXPLOSION:
+                  explosion = RecordProjection.text(value);
+                  break;
+              }
+            });
+      }
+    }
+  }
 
   public PROJRecord(
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       ESMJsonParser.@NotNull ParserRegistrar registrar) {
     super(formId, editorId, signature, node, registrar);
   }
 
   public int getSpeed() {
-    JsonNode prod = node.get(FLD_PROD);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.speed;
+    }
+    JsonNode prod = getNode().get(FLD_PROD);
     if (null == prod) {
       return 0;
     }
@@ -37,7 +80,11 @@ public class PROJRecord extends Record {
   }
 
   public @Nullable EXPLRecord getEXPLRecord() {
-    JsonNode prod = node.get(FLD_PROD);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.explosionFlag ? resolve(LINK_EXPLOSION, proj.explosion, EXPLRecord.class) : null;
+    }
+    JsonNode prod = getNode().get(FLD_PROD);
     if (null == prod) {
       return null;
     }
@@ -57,7 +104,7 @@ public class PROJRecord extends Record {
     // We need to apply the explosion effect
     JsonNode expl = prod.get(FLD_EXPLOSION);
     return (null != expl && expl.isTextual())
-        ? parser.findRecordByFormId(expl.asText(), EXPLRecord.class)
+        ? resolve(LINK_EXPLOSION, expl.asText(), EXPLRecord.class)
         : null;
   }
 }
@@ -2,7 +2,12 @@ package datamodel;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
+import parser.LinkGraph;
+import parser.RecordProjection;
+import parser.RecordSource;
+import parser.Util;
 
 /**
  * Encapsulates properties that are common across all ESM Record Objects
@@ -20,11 +25,31 @@ public class Record extends JsonNodeWrapper {
   protected final String signature;
   protected final ESMJsonParser parser;
 
+  /** Where the {@link JsonNode} is (re)loaded from, or {@code null} if it is always resident */
+  private RecordSource source = null;
+
+  /** The typed copy of the fields the accessors read, or {@code null} if they read the tree */
+  private RecordProjection projection = null;
+
+  /** The resolved references of this record, or {@code null} if it hasn't been linked */
+  private volatile LinkGraph.Links links = null;
+
+  /** Set whenever a lazily loaded {@link JsonNode} is used, cleared by {@link #evictIfIdle()} */
+  private volatile boolean accessed = false;
+
+  /**
+   * @param formId The Form ID that uniquely identifies this record
+   * @param editorId The Editor ID for this record
+   * @param signature The Signature that identifies this record's type
+   * @param node The {@link JsonNode} holding the record's data, or {@code null} if it will be loaded
+   *     lazily from a {@link RecordSource} (see {@link #attachSource(RecordSource)})
+   * @param registrar The {@link ESMJsonParser.ParserRegistrar} to use for registration
+   */
   public Record(
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       @NotNull ESMJsonParser.ParserRegistrar registrar) {
     super(node);
     this.formId = formId;
@@ -36,6 +61,117 @@ public class Record extends JsonNodeWrapper {
     registrar.register(this);
   }
 
+  /**
+   * Makes this record lazily loaded: its {@link JsonNode} is parsed from the source the first time
+   * it is needed, and may later be dropped again by {@link #evictIfIdle()}.
+   *
+   * @param source Where to load this record's {@link JsonNode} from
+   */
+  public void attachSource(@NotNull RecordSource source) {
+    this.source = source;
+  }
+
+  /**
+   * Makes the accessors of this record read from a projection rather than from its {@link
+   * JsonNode}, which then only holds the <i>Record Header</i>, the EditorID and the name.
+   *
+   * @param projection The record's projection (see {@link parser.RecordProjection})
+   */
+  public void attachProjection(@NotNull RecordProjection projection) {
+    this.projection = projection;
+  }
+
+  /**
+   * Gives this record the references that the link phase resolved for it (see {@link LinkGraph})
+   *
+   * @param links The record's edges
+   */
+  public void attachLinks(@NotNull LinkGraph.Links links) {
+    this.links = links;
+  }
+
+  /**
+   * @return The references resolved for this record by the link phase, or {@code null} if it
+   *     hasn't been linked
+   */
+  public @Nullable LinkGraph.Links getLinks() {
+    return links;
+  }
+
+  /**
+   * Follows a reference held by this record, through its resolved links if it has been linked
+   *
+   * @param field The field that holds the reference (see {@link LinkGraph#field(String...)})
+   * @param reference A raw or decorated FormID, exactly as the field holds it, or {@code null}
+   * @param clazz The expected {@link Class} of the referenced record
+   * @param <T> The expected class of the referenced record
+   * @return The referenced record, or {@code null} if there is none
+   */
+  protected <T extends Record> @Nullable T resolve(
+      @NotNull LinkGraph.Field field, @Nullable String reference, @NotNull Class<T> clazz) {
+    return (null != reference) ? parser.findLinkedRecord(this, field, reference, clazz) : null;
+  }
+
+  /**
+   * @param clazz The projection class of this record type
+   * @param <P> The projection class of this record type
+   * @return This record's projection, or {@code null} if the record was loaded as a full tree
+   */
+  protected <P extends RecordProjection> @Nullable P getProjection(@NotNull Class<P> clazz) {
+    return Util.cast(projection, clazz);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>For a lazily loaded record the node is parsed from its {@link RecordSource} if it is not
+   * currently resident.
+   */
+  @Override
+  public @NotNull JsonNode getNode() {
+    JsonNode resident = peekNode();
+    if (null == source) {
+      return resident;
+    }
+    accessed = true;
+    return (null != resident) ? resident : load();
+  }
+
+  private synchronized @NotNull JsonNode load() {
+    JsonNode resident = peekNode();
+    if (null == resident) {
+      resident = source.load(this);
+      setNode(resident);
+    }
+    return resident;
+  }
+
+  /**
+   * @return {@code true} if this record's {@link JsonNode} is currently held in memory
+   */
+  public boolean isResident() {
+    return null != peekNode();
+  }
+
+  /**
+   * Called by the parser's node cache to reclaim memory. Drops the {@link JsonNode} of a lazily
+   * loaded record, unless it has been used since the previous call, in which case the record is
+   * just marked as idle (i.e. "second chance" eviction).
+   *
+   * @return {@code true} if the node was dropped
+   */
+  public boolean evictIfIdle() {
+    if (null == source) {
+      return false;
+    }
+    if (accessed) {
+      accessed = false;
+      return false;
+    }
+    setNode(null);
+    return true;
+  }
+
   @Override
   public String toString() {
     return String.format("%s [%s:%s]", getEditorId(), getSignature(), getFormId());
@@ -1,10 +1,14 @@
 package datamodel;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
 import java.util.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import parser.ESMJsonParser;
+import parser.LinkGraph;
+import parser.RecordProjection;
 import parser.Util;
 import util.Assert;
 import util.ESMKeyValueMap;
@@ -33,6 +37,7 @@ public class WEAPRecord extends Record {
   private static final String FLD_WAM2 = "WAM2 - Ammunition";
   private static final String FLD_AMMO_CAPACITY = "Ammo Capacity";
   private static final String FLD_AMMO_TYPE = "Ammo Type";
+  private static final LinkGraph.Field LINK_AMMO_TYPE = LinkGraph.field(FLD_WAM2, FLD_AMMO_TYPE);
   private static final String FLD_WFIR = "WFIR - Firing";
   private static final String FLD_SHOTS_PER_SECOND = "Shots Per Second";
   private static final String FLD_BURST_COUNT = "Burst count";
@@ -48,11 +53,113 @@ public class WEAPRecord extends Record {
     SHIP_CLASS_KEYW_FORMID_TO_READABLE.put(KYWDRecord.SPACESHIP_PARTICLE_WEAPON_FID, "Particle");
   }
 
+  /** The fields of a WEAP record that the accessors read */
+  public static final class Projection implements RecordProjection {
+    private String[] keywordFormIds = new String[0];
+    private int physicalDamage = 0;
+    private int minRange = 0;
+    private int maxRange = 0;
+    private double critDamageMult = 0.0;
+    private DamageTypes damageTypes = DamageTypes.NONE;
+    private boolean hasQnam = false;
+    private Double rechargeTime = null;
+    private Double rechargeDelay = null;
+    private int ammoCapacity = 0;
+    private String ammoType = null;
+    private double shotsPerSecond = 0.0;
+    private int burstCount = 1;
+
+    @Override
+    public void bind(@NotNull String key, @NotNull JsonParser jp) throws IOException {
+      switch (key) {
+        case FLD_KEYWORDS:
+          List<String> keywords = new ArrayList<>();
+          RecordProjection.readFields(
+              jp,
+              (field, kwda) -> {
+                if (FLD_KWDA.equals(field)) {
+                  RecordProjection.readFields(
+                      kwda,
+                      (keyword, value) -> {
+                        if (ESMKeyValueMap.isOccurrenceOf(keyword, FLD_KEYWORD)) {
+                          keywords.add(RecordProjection.text(value));
+                        }
+                      });
+                }
+              });
+          keywordFormIds = keywords.toArray(new String[0]);
+          break;
+        case FLD_WDMG:
+          critDamageMult = 1.0;
+          RecordProjection.readFields(
+              jp,
+              (field, value) -> {
+                switch (field) {
+                  case FLD_BASE_DAMAGE:
+                    physicalDamage = Util.asInt(RecordProjection.text(value), 0);
+                    break;
+                  case FLD_MIN_RANGE:
+                    minRange = Util.asInt(RecordProjection.text(value), 0);
+                    break;
+                  case FLD_MAX_RANGE:
+                    maxRange = Util.asInt(RecordProjection.text(value), 0);
+                    break;
+                  case FLD_CRIT_DAMAGE_MULT:
+                    critDamageMult = asDouble(RecordProjection.text(value), 1.0);
+                    break;
+                }
+              });
+          break;
+        case FLD_DAMA:
+          damageTypes = DamageTypes.read(jp);
+          break;
+        case FLD_QNAM:
+          hasQnam = true;
+          RecordProjection.readFields(
+              jp,
+              (field, value) -> {
+                if (FLD_RECHARGE_TIME.equals(field)) {
+                  rechargeTime = asDouble(RecordProjection.text(value), 0.0);
+                } else if (FLD_RECHARGE_DELAY.equals(field)) {
+                  rechargeDelay = asDouble(RecordProjection.text(value), 0.0);
+                }
+              });
+          break;
+        case FLD_WAM2:
+          RecordProjection.readFields(
+              jp,
+              (field, value) -> {
+                if (FLD_AMMO_CAPACITY.equals(field)) {
+                  ammoCapacity = Util.asInt(RecordProjection.text(value), 0);
+                } else if (FLD_AMMO_TYPE.equals(field)) {
+                  ammoType = RecordProjection.text(value);
+                }
+              });
+          break;
+        case FLD_WFIR:
+          RecordProjection.readFields(
+              jp,
+              (field, value) -> {
+                if (FLD_SHOTS_PER_SECOND.equals(field)) {
+                  shotsPerSecond = asDouble(RecordProjection.text(value), 0.0);
+                } else if (FLD_BURST_COUNT.equals(field)) {
+                  burstCount = Util.asInt(RecordProjection.text(value), 1);
+                }
+              });
+          break;
+      }
+    }
+
+    private static double asDouble(@Nullable String value, double dflt) {
+      return (null != value) ? Double.parseDouble(value) : dflt;
+    }
+  }
+
   public WEAPRecord(
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       ESMJsonParser.@NotNull ParserRegistrar registrar) {
     super(formId, editorId, signature, node, registrar);
   }
@@ -63,7 +170,11 @@ public class WEAPRecord extends Record {
    * @return An {@link Iterator} for the enumerated form ids
    */
   public @NotNull Iterator<String> getKeywordFormIds() {
-    JsonNode keywords = node.get(FLD_KEYWORDS);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return Arrays.asList(proj.keywordFormIds).iterator();
+    }
+    JsonNode keywords = getNode().get(FLD_KEYWORDS);
     if (null == keywords) {
       return Collections.emptyIterator();
     }
@@ -73,22 +184,17 @@ public class WEAPRecord extends Record {
     }
 
     // This is another example of where serialize-command-json creates a JSON Objcct
-    // with repeating property names.  Make use of the implicit disambiguation logic
-    // that replaces replicated property names with generated names that are unique
+    // with repeating property names.  Enumerate every occurrence of the repeated property
+    final Iterator<JsonNode> iter = Util.occurrences(kwda, FLD_KEYWORD).iterator();
     return new Iterator<>() {
-      private int idx = 1;
-
       @Override
       public boolean hasNext() {
-        return null != kwda.get(ESMKeyValueMap.generateRepeatedKey(FLD_KEYWORD, idx));
+        return iter.hasNext();
       }
 
       @Override
       public String next() {
-        JsonNode value = kwda.get(ESMKeyValueMap.generateRepeatedKey(FLD_KEYWORD, idx++));
-        if (null == value) {
-          throw new NoSuchElementException();
-        }
+        JsonNode value = iter.next();
         return (value.isTextual()) ? value.asText() : null;
       }
     };
@@ -130,7 +236,11 @@ public class WEAPRecord extends Record {
   }
 
   public int getPhysicalDamage() {
-    JsonNode wdmg = node.get(FLD_WDMG);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.physicalDamage;
+    }
+    JsonNode wdmg = getNode().get(FLD_WDMG);
     if (null == wdmg) {
       return 0;
     }
@@ -139,7 +249,11 @@ public class WEAPRecord extends Record {
   }
 
   public int getMinRange() {
-    JsonNode wdmg = node.get(FLD_WDMG);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.minRange;
+    }
+    JsonNode wdmg = getNode().get(FLD_WDMG);
     if (null == wdmg) {
       return 0;
     }
@@ -148,7 +262,11 @@ public class WEAPRecord extends Record {
   }
 
   public int getMaxRange() {
-    JsonNode wdmg = node.get(FLD_WDMG);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.maxRange;
+    }
+    JsonNode wdmg = getNode().get(FLD_WDMG);
     if (null == wdmg) {
       return 0;
     }
@@ -157,7 +275,11 @@ public class WEAPRecord extends Record {
   }
 
   public double getCriticalDamageMultiplier() {
-    JsonNode wdmg = node.get(FLD_WDMG);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.critDamageMult;
+    }
+    JsonNode wdmg = getNode().get(FLD_WDMG);
     if (null == wdmg) {
       return 0;
     }
@@ -166,18 +288,18 @@ public class WEAPRecord extends Record {
   }
 
   public int getAuxDamage(@NotNull String damageTypeFormId) {
-    JsonNode dama = node.get(FLD_DAMA);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.damageTypes.get(damageTypeFormId);
+    }
+    JsonNode dama = getNode().get(FLD_DAMA);
     if (null == dama) {
       return 0;
     }
 
     // This is another example of where the serialize-command-json script generates JSON
-    // Objects that have repeating property names.  Use our disambiguaton logic to access
-    // each repeated property with a unique name.
-    JsonNode dmg;
-    for (int idx = 1;
-        null != (dmg = dama.get(ESMKeyValueMap.generateRepeatedKey(FLD_DAMAGE_TYPE, idx)));
-        idx++) {
+    // Objects that have repeating property names.  Enumerate every occurrence of it.
+    for (JsonNode dmg : Util.occurrences(dama, FLD_DAMAGE_TYPE)) {
       JsonNode dtype = dmg.get(FLD_DAMAGE_TYPE);
       if (null != dtype && damageTypeFormId.equals(dtype.asText())) {
         JsonNode value = dmg.get(FLD_VALUE);
@@ -190,21 +312,35 @@ public class WEAPRecord extends Record {
   }
 
   public double getRechargeDelay() {
-    JsonNode qnam = Assert.assertNotNull(node.get(FLD_QNAM), "Missing QNAM in " + this);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      Assert.assertTrue(proj.hasQnam, "Missing QNAM in " + this);
+      return Assert.assertNotNull(proj.rechargeDelay, "Missing Recharge Delay in " + this);
+    }
+    JsonNode qnam = Assert.assertNotNull(getNode().get(FLD_QNAM), "Missing QNAM in " + this);
     JsonNode delay =
         Assert.assertNotNull(qnam.get(FLD_RECHARGE_DELAY), "Missing Recharge Delay in " + this);
     return Util.asDouble(delay, 0.0);
   }
 
   public double getRechargeTime() {
-    JsonNode qnam = Assert.assertNotNull(node.get(FLD_QNAM), "Missing QNAM in " + this);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      Assert.assertTrue(proj.hasQnam, "Missing QNAM in " + this);
+      return Assert.assertNotNull(proj.rechargeTime, "Missing Recharge Time in " + this);
+    }
+    JsonNode qnam = Assert.assertNotNull(getNode().get(FLD_QNAM), "Missing QNAM in " + this);
     JsonNode delay =
         Assert.assertNotNull(qnam.get(FLD_RECHARGE_TIME), "Missing Recharge Time in " + this);
     return Util.asDouble(delay, 0.0);
   }
 
   public int getAmmoCapacity() {
-    JsonNode wam2 = node.get(FLD_WAM2);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.ammoCapacity;
+    }
+    JsonNode wam2 = getNode().get(FLD_WAM2);
     if (null == wam2) {
       return 0;
     }
@@ -213,7 +349,11 @@ public class WEAPRecord extends Record {
   }
 
   public double getShotsPerSecond() {
-    JsonNode wfir = node.get(FLD_WFIR);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return proj.shotsPerSecond;
+    }
+    JsonNode wfir = getNode().get(FLD_WFIR);
     if (null == wfir) {
       return 0.0;
     }
@@ -222,12 +362,18 @@ public class WEAPRecord extends Record {
   }
 
   public int getBurstCount() {
-    JsonNode wfir = node.get(FLD_WFIR);
-    if (null == wfir) {
-      return 1;
+    int cnt;
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      cnt = proj.burstCount;
+    } else {
+      JsonNode wfir = getNode().get(FLD_WFIR);
+      if (null == wfir) {
+        return 1;
+      }
+      JsonNode burst = wfir.get(FLD_BURST_COUNT);
+      cnt = Util.asInt(burst, 1);
     }
-    JsonNode burst = wfir.get(FLD_BURST_COUNT);
-    int cnt = Util.asInt(burst, 1);
 
     // For some reason, many GBFM's have an explicit 'Burst Count' of '0' - not sure why.
     // Maybe in the engine a count of '0' is different than '1', but I'm not sure how it
@@ -237,13 +383,17 @@ public class WEAPRecord extends Record {
   }
 
   public @Nullable AMMORecord getAMMORecord() {
-    JsonNode wam2 = node.get(FLD_WAM2);
+    Projection proj = getProjection(Projection.class);
+    if (null != proj) {
+      return resolve(LINK_AMMO_TYPE, proj.ammoType, AMMORecord.class);
+    }
+    JsonNode wam2 = getNode().get(FLD_WAM2);
     if (null == wam2) {
       return null;
     }
     JsonNode ammo = wam2.get(FLD_AMMO_TYPE);
     return (null != ammo && ammo.isTextual())
-        ? parser.findRecordByFormId(ammo.asText(), AMMORecord.class)
+        ? resolve(LINK_AMMO_TYPE, ammo.asText(), AMMORecord.class)
         : null;
   }
 }
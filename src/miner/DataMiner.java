@@ -13,4 +13,11 @@ import java.lang.annotation.*;
 public @interface DataMiner {
   /** The name that identifies this data miner in the StarfieldMiner command line arguments */
   String value();
+
+  /**
+   * The signatures of the record groups this data miner needs. Only these records are loaded when
+   * the miner is run (see {@link parser.ESMJsonParser#setSignatureFilter(java.util.Collection)}).
+   * An empty list means that every record is loaded.
+   */
+  String[] signatures() default {};
 }
@@ -1,6 +1,7 @@
 package miner;
 
 import java.io.PrintStream;
+import java.util.Set;
 import org.jetbrains.annotations.NotNull;
 import parser.ESMJsonParser;
 
@@ -17,4 +18,13 @@ public interface IDataMiner {
    * @param output A {@link PrintStream} to use for exporting the mined data
    */
   void run(@NotNull ESMJsonParser parser, @NotNull PrintStream output);
+
+  /**
+   * @return The signatures of the record groups this data miner needs, as declared by its {@link
+   *     DataMiner} annotation, or an empty set if it needs every record
+   */
+  default @NotNull Set<String> getRequiredSignatures() {
+    DataMiner miner = getClass().getAnnotation(DataMiner.class);
+    return (null != miner) ? Set.of(miner.signatures()) : Set.of();
+  }
 }
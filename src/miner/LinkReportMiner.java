@@ -0,0 +1,33 @@
+package miner;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import parser.ESMJsonParser;
+import parser.LinkGraph;
+
+/**
+ * Instrumentation rather than a true data miner: runs the link phase over the loaded data model
+ * (see {@link LinkGraph}), and reports every reference that doesn't resolve, by the signature of
+ * the record that holds it and by field. The report is exported as JSON, and a summary is also
+ * printed on {@code System.err}. Every record group is loaded for it.
+ */
+@DataMiner("LinkReport")
+public class LinkReportMiner implements IDataMiner {
+  /** The number of dangling references listed for each field in the summary */
+  private static final int EXAMPLES_PER_FIELD = 3;
+
+  /** {@inheritDoc} */
+  @Override
+  public void run(@NotNull ESMJsonParser parser, @NotNull PrintStream output) {
+    LinkGraph links = parser.link(Runtime.getRuntime().availableProcessors());
+    links.printDangling(System.err, EXAMPLES_PER_FIELD);
+    try {
+      links.writeJson(output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    output.println();
+  }
+}
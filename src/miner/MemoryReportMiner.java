@@ -0,0 +1,33 @@
+package miner;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import org.jetbrains.annotations.NotNull;
+import parser.ESMJsonParser;
+import parser.MemoryReport;
+
+/**
+ * Instrumentation rather than a true data miner: reports how much heap the loaded data model takes
+ * (see {@link MemoryReport}), by signature, by top-level field, and how much of it is spent on the
+ * property maps rather than on the values they hold. The report is exported as JSON, and also
+ * printed as a table on {@code System.err}. Every record group is loaded for it.
+ */
+@DataMiner("MemoryReport")
+public class MemoryReportMiner implements IDataMiner {
+  /** The number of fields listed for each signature in the table */
+  private static final int FIELDS_PER_SIGNATURE = 5;
+
+  /** {@inheritDoc} */
+  @Override
+  public void run(@NotNull ESMJsonParser parser, @NotNull PrintStream output) {
+    MemoryReport report = MemoryReport.of(parser);
+    report.printTable(System.err, FIELDS_PER_SIGNATURE);
+    try {
+      report.writeJson(output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    output.println();
+  }
+}
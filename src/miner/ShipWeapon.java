@@ -177,15 +177,23 @@ public class ShipWeapon {
     this.emDmg = partialEmDmg;
   }
 
+  /**
+   * @param cobj The {@link COBJRecord} of interest
+   * @return {@code true} if the COBJ record is for a Ship Weapon
+   */
+  public static boolean isShipWeapon(COBJRecord cobj) {
+    return KYWDRecord.CATEGORY_SHIPMOD_WEAPON_FID.equals(cobj.getCategoryFormId());
+  }
+
   public static ShipWeapon fromCOBJRecord(COBJRecord cobj) {
     // Ensure that this is a Ship Weapon COBJ
-    if (KYWDRecord.CATEGORY_SHIPMOD_WEAPON_FID.equals(cobj.getCategoryFormId())) {
+    if (isShipWeapon(cobj)) {
       // Generate the ship data metrics
       try {
         return new ShipWeapon(cobj);
       } catch (Throwable e) {
         // Output warning and then fall through to ignore this COBJ
-        System.err.println("Malformed data associated with " + cobj + "details->" + e.getMessage());
+        reportMalformed(cobj, e);
       }
     }
 
@@ -193,6 +201,16 @@ public class ShipWeapon {
     return null;
   }
 
+  /**
+   * Reports a Ship Weapon COBJ record whose data could not be mined
+   *
+   * @param cobj The {@link COBJRecord} being mined
+   * @param e What went wrong
+   */
+  static void reportMalformed(COBJRecord cobj, Throwable e) {
+    System.err.println("Malformed data associated with " + cobj + "details->" + e.getMessage());
+  }
+
   public static void emitHeaders(PrintStream output) {
     output.println(
         "Make|Model|Class|Category|Magazine|Volley|Is Turret|Cost|Hull|Mass|Health|Crew Capacity|Max Power|"
@@ -3,14 +3,15 @@ package miner;
 import datamodel.COBJRecord;
 import datamodel.Record;
 import java.io.PrintStream;
-import java.util.List;
+import java.util.*;
 import org.jetbrains.annotations.NotNull;
 import parser.ESMJsonParser;
 import util.Holder;
 
 /**
  * Data Miner for extracting all information on ship weapons. Requires that the {@link
- * parser.ESMJsonParser} contains all records for the following groups: *
+ * parser.ESMJsonParser} contains all records for the following groups (as declared by {@link
+ * DataMiner#signatures()}):
  *
  * <ul>
  *   <li>AMMO - <i>Ammunition</i>
@@ -25,8 +26,15 @@ import util.Holder;
  *   <li>PROJ - <i>Projectile</i>
  *   <li>WEAP - <i>Weapon</i>
  * </ul>
+ *
+ * <p>The miner can also run while the dumps are being loaded (see {@link #stream(ESMJsonParser,
+ * PrintStream)}).
  */
-@DataMiner("ShipWeapon")
+@DataMiner(
+    value = "ShipWeapon",
+    signatures = {
+      "AMMO", "AVIF", "COBJ", "DMGT", "EXPL", "FLST", "GBFM", "KYWD", "PERK", "PROJ", "WEAP"
+    })
 public class ShipWeaponMiner implements IDataMiner {
   /** {@inheritDoc} */
   @Override
@@ -46,4 +54,142 @@ public class ShipWeaponMiner implements IDataMiner {
             });
     System.err.println("Emitted " + cnt.get() + " records");
   }
+
+  /**
+   * Starts mining in streaming mode, in which each Ship Weapon is emitted as soon as every record
+   * it references has been registered, rather than once all the dumps are loaded. Call this before
+   * loading the dumps, and {@link Streaming#finish()} once they are loaded. A COBJ whose
+   * references are not all registered yet waits on the missing FormID's, and is mined again as each
+   * of them arrives. Only the waiting COBJ records are held on to, so with lazy loading (see {@link
+   * ESMJsonParser#setLazyLoading(boolean)}) and a node cache limit the dumps need not fit in
+   * memory.
+   *
+   * <p>Rows are emitted in the order they become complete, rather than in COBJ order. Each FormID
+   * is assumed to be defined only once; a row is not emitted again if one of its records is later
+   * overridden.
+   *
+   * @param parser The {@link ESMJsonParser} that the dumps will be loaded into
+   * @param output A {@link PrintStream} to use for exporting the mined data
+   * @return The running miner
+   */
+  public @NotNull Streaming stream(@NotNull ESMJsonParser parser, @NotNull PrintStream output) {
+    ShipWeapon.emitHeaders(output);
+    Streaming streaming = new Streaming(parser, output);
+    parser.setRegistrationListener(streaming::registered);
+    return streaming;
+  }
+
+  /** A {@link ShipWeaponMiner} running in streaming mode */
+  public static class Streaming {
+    private final ESMJsonParser parser;
+    private final PrintStream output;
+
+    /** COBJ records waiting for a record, by the record's FormID */
+    private final Map<String, List<COBJRecord>> waiting = new HashMap<>();
+
+    /** COBJ records that are waiting for at least one record */
+    private final Set<COBJRecord> parked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** COBJ records that have been emitted, or are known not to produce a row */
+    private final Set<COBJRecord> done = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** Records registered while an earlier one is still being handled */
+    private final Deque<Record> arrivals = new ArrayDeque<>();
+
+    private boolean handling = false;
+    private int emitted = 0;
+
+    private Streaming(@NotNull ESMJsonParser parser, @NotNull PrintStream output) {
+      this.parser = parser;
+      this.output = output;
+    }
+
+    /**
+     * Called by the parser, with the parser locked, as each record is registered
+     *
+     * @param rec The newly registered {@link Record}
+     */
+    private void registered(@NotNull Record rec) {
+      // Mining a row may register records (e.g. from an attached dump), so handle those after it
+      arrivals.add(rec);
+      if (handling) {
+        return;
+      }
+      handling = true;
+      try {
+        for (Record next; null != (next = arrivals.poll()); ) {
+          List<COBJRecord> woken = waiting.remove(next.getFormId());
+          if (null != woken) {
+            for (COBJRecord cobj : woken) {
+              if (parked.remove(cobj)) {
+                mine(cobj);
+              }
+            }
+          }
+          if (next instanceof COBJRecord) {
+            mine((COBJRecord) next);
+          }
+        }
+      } finally {
+        handling = false;
+      }
+    }
+
+    /**
+     * Mines a COBJ record, or parks it on the FormID's of the records it references that have not
+     * been registered yet
+     */
+    private void mine(@NotNull COBJRecord cobj) {
+      Set<String> missing = new HashSet<>();
+      Throwable failure = null;
+      ShipWeapon shipWeapon = null;
+      try {
+        // A malformed COBJ must not abort the load that is registering it
+        if (!ShipWeapon.isShipWeapon(cobj)) {
+          done.add(cobj);
+          return;
+        }
+        shipWeapon = parser.trackMissingFormIds(missing, () -> new ShipWeapon(cobj));
+      } catch (Throwable e) {
+        failure = e;
+      }
+
+      if (!missing.isEmpty()) {
+        // Some of the records may simply not exist, in which case finish() settles the row
+        parked.add(cobj);
+        for (String formId : missing) {
+          waiting.computeIfAbsent(formId, k -> new ArrayList<>()).add(cobj);
+        }
+        return;
+      }
+      done.add(cobj);
+      if (null != failure) {
+        ShipWeapon.reportMalformed(cobj, failure);
+      } else {
+        shipWeapon.emitAsCSV(output);
+        emitted++;
+      }
+    }
+
+    /**
+     * Stops listening to the parser, and mines every COBJ record that has not been emitted yet,
+     * including those still waiting on records that were never loaded. Call this once the dumps are
+     * loaded.
+     */
+    public void finish() {
+      parser.setRegistrationListener(null);
+      waiting.clear();
+      parked.clear();
+      for (Record r : parser.getGroup(COBJRecord.class)) {
+        if (done.add((COBJRecord) r)) {
+          ShipWeapon shipWeapon = ShipWeapon.fromCOBJRecord((COBJRecord) r);
+          if (null != shipWeapon) {
+            shipWeapon.emitAsCSV(output);
+            emitted++;
+          }
+        }
+      }
+      System.err.println("Emitted " + emitted + " records");
+    }
+  }
 }
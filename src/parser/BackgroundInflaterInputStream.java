@@ -0,0 +1,128 @@
+package parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link InputStream} whose contents are decompressed on a separate thread. The inflater thread
+ * reads ahead into a bounded queue of chunks, so decompressing a dump overlaps with parsing it and
+ * the total time approaches the slower of the two rather than their sum. The queue bounds the
+ * read-ahead, so the inflater never runs more than a few chunks ahead of the parser.
+ *
+ * @author Eric Karlson
+ */
+class BackgroundInflaterInputStream extends InputStream {
+  private static final int CHUNK_SIZE = 1 << 16;
+  private static final int QUEUE_CHUNKS = 16;
+
+  /** Queued by the inflater thread once it has no more data */
+  private static final byte[] END = new byte[0];
+
+  private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+  private final Thread inflater;
+
+  /** Set by the inflater thread if decompression fails, for whatever reason */
+  private volatile Throwable failure = null;
+
+  private byte[] chunk = null;
+  private int chunkIdx = 0;
+
+  /**
+   * Starts decompressing straight away
+   *
+   * @param source The decompressing stream to read from; it is closed once it has been read
+   * @param name Identifies the stream in the inflater thread's name
+   */
+  BackgroundInflaterInputStream(@NotNull InputStream source, @NotNull String name) {
+    inflater = new Thread(() -> inflate(source), "inflate " + name);
+    inflater.setDaemon(true);
+    inflater.start();
+  }
+
+  private void inflate(@NotNull InputStream source) {
+    try (InputStream in = source) {
+      while (true) {
+        byte[] buf = new byte[CHUNK_SIZE];
+        int len = in.readNBytes(buf, 0, CHUNK_SIZE);
+        if (len < CHUNK_SIZE) {
+          if (len > 0) {
+            queue.put(Arrays.copyOf(buf, len));
+          }
+          break;
+        }
+        queue.put(buf);
+      }
+    } catch (InterruptedException e) {
+      // The reader has closed the stream
+      return;
+    } catch (Throwable e) {
+      // Anything else still ends the stream, so that the reader never waits for it forever
+      failure = e;
+    }
+
+    try {
+      queue.put(END);
+    } catch (InterruptedException e) {
+      // The reader has closed the stream
+    }
+  }
+
+  /**
+   * @return {@code false} once the end of the stream has been reached
+   * @throws IOException If decompression failed, or the reader was interrupted. A failure is
+   *     thrown again by every later read, rather than the stream appearing to end.
+   */
+  private boolean nextChunk() throws IOException {
+    if (END != chunk) {
+      try {
+        chunk = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for " + inflater.getName(), e);
+      }
+      chunkIdx = 0;
+      if (END != chunk) {
+        return true;
+      }
+    }
+
+    Throwable cause = failure;
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    } else if (null != cause) {
+      throw new IOException("Unable to decompress in " + inflater.getName(), cause);
+    }
+    return false;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    return (-1 == read(b, 0, 1)) ? -1 : (b[0] & 0xFF);
+  }
+
+  @Override
+  public int read(byte @NotNull [] out, int off, int len) throws IOException {
+    if (0 == len) {
+      return 0;
+    }
+    if ((null == chunk || chunkIdx == chunk.length) && !nextChunk()) {
+      return -1;
+    }
+    int n = Math.min(len, chunk.length - chunkIdx);
+    System.arraycopy(chunk, chunkIdx, out, off, n);
+    chunkIdx += n;
+    return n;
+  }
+
+  @Override
+  public void close() {
+    inflater.interrupt();
+    queue.clear();
+    chunk = END;
+  }
+}
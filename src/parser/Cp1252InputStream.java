@@ -0,0 +1,104 @@
+package parser;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link InputStream} that transcodes cp1252 bytes held in a {@link ByteBuffer} into UTF-8, so
+ * that Jackson can parse an ESM Json Dump File directly from (memory-mapped) bytes instead of going
+ * through a {@link java.io.Reader}. The dumps are almost entirely ASCII, which is passed through in
+ * bulk; only the bytes above {@code 0x7F} are translated, via a lookup table. Bytes that have no
+ * cp1252 mapping are dropped, the same as a decoder using {@link CodingErrorAction#IGNORE}.
+ *
+ * @author Eric Karlson
+ */
+class Cp1252InputStream extends InputStream {
+  /** UTF-8 encodings of the cp1252 bytes 0x80 - 0xFF (empty for the unmapped bytes) */
+  private static final byte[][] HIGH_BYTES_TO_UTF8 = new byte[128][];
+
+  static {
+    CharsetDecoder decoder = Charset.forName("cp1252").newDecoder();
+    for (int idx = 0; idx < HIGH_BYTES_TO_UTF8.length; idx++) {
+      try {
+        CharBuffer ch = decoder.decode(ByteBuffer.wrap(new byte[] {(byte) (0x80 + idx)}));
+        HIGH_BYTES_TO_UTF8[idx] = ch.toString().getBytes(StandardCharsets.UTF_8);
+      } catch (CharacterCodingException e) {
+        HIGH_BYTES_TO_UTF8[idx] = new byte[0];
+      }
+    }
+  }
+
+  private final ByteBuffer src;
+
+  /** The remainder of a multibyte sequence that did not fit in the caller's buffer */
+  private byte[] pending = null;
+
+  private int pendingIdx = 0;
+
+  /**
+   * @param src The cp1252 bytes to transcode, between the buffer's position and limit. The buffer's
+   *     position is advanced as the stream is read.
+   */
+  Cp1252InputStream(@NotNull ByteBuffer src) {
+    this.src = src;
+  }
+
+  @Override
+  public int read() {
+    byte[] b = new byte[1];
+    return (-1 == read(b, 0, 1)) ? -1 : (b[0] & 0xFF);
+  }
+
+  @Override
+  public int read(byte @NotNull [] out, int off, int len) {
+    if (0 == len) {
+      return 0;
+    }
+    int start = off;
+    int end = off + len;
+
+    // Finish off any multibyte sequence left over from the last read
+    while (null != pending && off < end) {
+      out[off++] = pending[pendingIdx++];
+      if (pendingIdx == pending.length) {
+        pending = null;
+      }
+    }
+
+    while (off < end && src.hasRemaining()) {
+      // Bulk copy, then look for the first non-ASCII byte in what was copied
+      int pos = src.position();
+      int n = Math.min(end - off, src.remaining());
+      src.get(out, off, n);
+      int ascii = 0;
+      while (ascii < n && out[off + ascii] >= 0) {
+        ascii++;
+      }
+      off += ascii;
+      if (ascii == n) {
+        continue;
+      }
+
+      // Rewind to just past the non-ASCII byte and substitute its UTF-8 encoding
+      src.position(pos + ascii + 1);
+      byte[] utf8 = HIGH_BYTES_TO_UTF8[out[off] & 0x7F];
+      int fit = Math.min(utf8.length, end - off);
+      System.arraycopy(utf8, 0, out, off, fit);
+      off += fit;
+      if (fit < utf8.length) {
+        pending = utf8;
+        pendingIdx = fit;
+      }
+    }
+
+    return (off == start) ? -1 : off - start;
+  }
+
+  @Override
+  public int available() {
+    return src.remaining();
+  }
+}
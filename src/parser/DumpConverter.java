@@ -0,0 +1,119 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import java.io.*;
+import org.jetbrains.annotations.NotNull;
+import util.Assert;
+
+/**
+ * Rewrites ESM Json Dump Files into the line-delimited format (see {@link
+ * DumpFile#isLineDelimited(String)}): one record object per line, in UTF-8. The records are copied
+ * token by token, so repeated property keys are written out exactly as they appear in the source
+ * and are disambiguated by {@link ESMObjectNode} when the converted file is parsed, just as they
+ * are for the original dump.
+ *
+ * <p>Usage: {@code DumpConverter [-append] <dump file> [<line-delimited file>]}
+ *
+ * @author Eric Karlson
+ */
+public class DumpConverter {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  public static void main(String[] args) {
+    int arg = 0;
+    boolean append = (args.length > arg) && "-append".equals(args[arg]);
+    if (append) {
+      arg++;
+    }
+    if (args.length <= arg) {
+      System.err.println("Usage: DumpConverter [-append] <dump file> [<line-delimited file>]");
+      System.exit(1);
+    }
+    String source = args[arg];
+    String target = (args.length > arg + 1) ? args[arg + 1] : toLineDelimitedName(source);
+
+    try {
+      int count = toLineDelimited(source, target, append);
+      System.err.printf("Wrote %d records from %s to %s%n", count, source, target);
+    } catch (IOException e) {
+      System.err.println("DumpConverter " + source + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * @param source The name of an ESM Json Dump File
+   * @return The default name for the line-delimited version of the dump file
+   */
+  public static @NotNull String toLineDelimitedName(@NotNull String source) {
+    source = DumpFile.stripCompression(source);
+    int dot = source.lastIndexOf('.');
+    int sep = Math.max(source.lastIndexOf('/'), source.lastIndexOf('\\'));
+    String base = (dot > sep) ? source.substring(0, dot) : source;
+    return base + DumpFile.LINE_DELIMITED_SUFFIX;
+  }
+
+  /**
+   * Converts an ESM Json Dump File into the line-delimited format. The source may itself be a
+   * line-delimited dump, which allows records to be appended from one such file to another.
+   *
+   * @param source The name of the dump file to convert
+   * @param target The name of the line-delimited file to write
+   * @param append {@code true} to append the records to the target, {@code false} to replace it
+   * @return The number of records written
+   * @throws IOException If there is some problem reading the source or writing the target
+   */
+  public static int toLineDelimited(@NotNull String source, @NotNull String target, boolean append)
+      throws IOException {
+    try (JsonParser jp = openSource(source);
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(target, append));
+        JsonGenerator gen = FACTORY.createGenerator(os, JsonEncoding.UTF8)) {
+      // Separate the records by newlines, with no other whitespace
+      gen.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+
+      int count = 0;
+      if (DumpFile.isLineDelimited(source)) {
+        for (JsonToken tok = jp.nextToken(); null != tok; tok = jp.nextToken()) {
+          gen.copyCurrentStructure(jp);
+          count++;
+        }
+      } else {
+        Assert.assertTrue(
+            JsonToken.START_OBJECT == jp.nextToken(),
+            "ESM Dump File must be an OBJECT of record objects");
+        while (JsonToken.FIELD_NAME == jp.nextToken()) {
+          // The key is the record's FormID, which its Record Header repeats
+          jp.nextToken();
+          gen.copyCurrentStructure(jp);
+          count++;
+        }
+      }
+      if (count > 0) {
+        gen.writeRaw('\n');
+      }
+      return count;
+    }
+  }
+
+  /**
+   * @param source The name of the dump file to read
+   * @return A {@link JsonParser} over the dump file's contents, transcoded to UTF-8 as needed
+   * @throws IOException If the dump file cannot be opened
+   */
+  private static @NotNull JsonParser openSource(@NotNull String source) throws IOException {
+    if (DumpFile.isMappable(source)) {
+      return FACTORY.createParser(DumpFile.open(source, true).open());
+    }
+    InputStream is = DumpFile.openStream(source);
+    if (DumpFile.isLineDelimited(source)) {
+      return FACTORY.createParser(is);
+    }
+    return FACTORY.createParser(
+        new BufferedReader(new InputStreamReader(is, ESMJsonParser.newDecoder())));
+  }
+}
@@ -0,0 +1,234 @@
+package parser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The raw bytes of an ESM Json Dump File, normally memory-mapped. Provides UTF-8 views (see {@link
+ * Cp1252InputStream}) of the whole file, or of the byte range of a single record, that Jackson can
+ * parse directly.
+ *
+ * <p>Two formats are supported: the cp1252 encoded output of the xEdit "serialize-command-json"
+ * script, which is a single object keyed by FormID, and a line-delimited format (see {@link
+ * #isLineDelimited(String)}) written by the {@link DumpConverter}. Either may also be compressed
+ * (see {@link #isCompressed(String)}), in which case it can only be streamed (see {@link
+ * #openStream(String)}).
+ *
+ * @author Eric Karlson
+ */
+class DumpFile {
+  /** The file suffix of line-delimited dumps */
+  static final String LINE_DELIMITED_SUFFIX = ".ndjson";
+
+  /** The file suffix of gzip compressed dumps */
+  static final String GZIP_SUFFIX = ".gz";
+
+  /** The file suffix of raw deflate compressed dumps (i.e. deflate data with no zlib header) */
+  static final String DEFLATE_SUFFIX = ".deflate";
+
+  private static final int INFLATE_BUFFER_SIZE = 1 << 16;
+
+  private final String filename;
+  private final ByteBuffer data;
+  private final boolean lineDelimited;
+
+  private DumpFile(@NotNull String filename, @NotNull ByteBuffer data) {
+    this.filename = filename;
+    this.data = data;
+    this.lineDelimited = isLineDelimited(filename);
+  }
+
+  /**
+   * A line-delimited dump holds one record object per line, in UTF-8, rather than a single object
+   * of records. Such files can be split at any newline, and appended to without rewriting them.
+   *
+   * @param filename The name of the ESM Json Dump File
+   * @return {@code true} if the file is a line-delimited dump
+   */
+  static boolean isLineDelimited(@NotNull String filename) {
+    return stripCompression(filename).toLowerCase().endsWith(LINE_DELIMITED_SUFFIX);
+  }
+
+  /**
+   * @param filename The name of the ESM Json Dump File
+   * @return {@code true} if the file is gzip ({@code .gz}) or raw deflate ({@code .deflate})
+   *     compressed
+   */
+  static boolean isCompressed(@NotNull String filename) {
+    String name = filename.toLowerCase();
+    return name.endsWith(GZIP_SUFFIX) || name.endsWith(DEFLATE_SUFFIX);
+  }
+
+  /**
+   * @param filename The name of the ESM Json Dump File
+   * @return The file name without any compression suffix
+   */
+  static @NotNull String stripCompression(@NotNull String filename) {
+    String name = filename.toLowerCase();
+    if (name.endsWith(GZIP_SUFFIX)) {
+      return filename.substring(0, filename.length() - GZIP_SUFFIX.length());
+    }
+    if (name.endsWith(DEFLATE_SUFFIX)) {
+      return filename.substring(0, filename.length() - DEFLATE_SUFFIX.length());
+    }
+    return filename;
+  }
+
+  /**
+   * @param filename The name of the ESM Json Dump File
+   * @return {@code true} if the file is uncompressed and small enough to be mapped as a single
+   *     buffer
+   */
+  static boolean isMappable(@NotNull String filename) {
+    return !isCompressed(filename) && Paths.get(filename).toFile().length() <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Opens the indicated ESM Json Dump File for streaming. Compressed files are decompressed on a
+   * background thread (see {@link BackgroundInflaterInputStream}) so that decompression overlaps
+   * with parsing. The bytes are returned as stored, i.e. cp1252 unless the dump is line-delimited.
+   *
+   * @param filename The name of the ESM Json Dump File
+   * @return A stream of the (decompressed) contents of the file
+   * @throws IOException If the file cannot be opened
+   */
+  static @NotNull InputStream openStream(@NotNull String filename) throws IOException {
+    InputStream file = new FileInputStream(filename);
+    try {
+      String name = filename.toLowerCase();
+      if (name.endsWith(GZIP_SUFFIX)) {
+        // Concatenated gzip members are read back-to-back
+        return new BackgroundInflaterInputStream(
+            new GZIPInputStream(file, INFLATE_BUFFER_SIZE), filename);
+      }
+      if (name.endsWith(DEFLATE_SUFFIX)) {
+        return new BackgroundInflaterInputStream(
+            new InflaterInputStream(file, new Inflater(true), INFLATE_BUFFER_SIZE), filename);
+      }
+      return new BufferedInputStream(file);
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens the indicated ESM Json Dump File. A memory mapping stays valid after this returns, for as
+   * long as the {@link DumpFile} is reachable.
+   *
+   * @param filename The name of the ESM Json Dump File
+   * @param mapped {@code true} to memory-map the file, {@code false} to read it onto the heap
+   * @return The opened file
+   * @throws IOException If the file cannot be mapped or read
+   */
+  static @NotNull DumpFile open(@NotNull String filename, boolean mapped) throws IOException {
+    Path path = Paths.get(filename);
+    if (!mapped) {
+      return new DumpFile(filename, ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new DumpFile(filename, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  @NotNull
+  String getFilename() {
+    return filename;
+  }
+
+  boolean isLineDelimited() {
+    return lineDelimited;
+  }
+
+  /**
+   * @return The byte ranges of the records in the file, in file order
+   */
+  @NotNull
+  RecordBoundaryScanner.Spans findRecords() {
+    return lineDelimited
+        ? RecordBoundaryScanner.scanLines(getData())
+        : RecordBoundaryScanner.scan(getData());
+  }
+
+  /**
+   * @return A view of the raw (cp1252) bytes of the whole file
+   */
+  @NotNull
+  ByteBuffer getData() {
+    return data.duplicate();
+  }
+
+  /**
+   * @return A UTF-8 stream of the whole file
+   */
+  @NotNull
+  InputStream open() {
+    return toUtf8(getData());
+  }
+
+  /**
+   * @param offset The offset of the first byte of interest
+   * @param length The number of bytes of interest
+   * @return A UTF-8 stream of the indicated byte range
+   */
+  @NotNull
+  InputStream open(int offset, int length) {
+    ByteBuffer bytes = getData();
+    bytes.limit(offset + length).position(offset);
+    return toUtf8(bytes);
+  }
+
+  private @NotNull InputStream toUtf8(@NotNull ByteBuffer bytes) {
+    return toUtf8(bytes, lineDelimited);
+  }
+
+  /**
+   * @param bytes The raw bytes of (part of) a dump, between the buffer's position and limit
+   * @param lineDelimited {@code true} if the dump is line-delimited, so already UTF-8
+   * @return A UTF-8 stream of the bytes, transcoded as they are read
+   */
+  static @NotNull InputStream toUtf8(@NotNull ByteBuffer bytes, boolean lineDelimited) {
+    return lineDelimited ? new Utf8InputStream(bytes) : new Cp1252InputStream(bytes);
+  }
+
+  /** An {@link InputStream} over bytes that are already UTF-8 */
+  private static class Utf8InputStream extends InputStream {
+    private final ByteBuffer src;
+
+    private Utf8InputStream(@NotNull ByteBuffer src) {
+      this.src = src;
+    }
+
+    @Override
+    public int read() {
+      return src.hasRemaining() ? (src.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte @NotNull [] out, int off, int len) {
+      if (0 == len) {
+        return 0;
+      }
+      if (!src.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, src.remaining());
+      src.get(out, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return src.remaining();
+    }
+  }
+}
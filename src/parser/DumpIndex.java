@@ -0,0 +1,277 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import org.jetbrains.annotations.NotNull;
+import util.Assert;
+
+/**
+ * A compact index of the records in an ESM Json Dump File, mapping each FormID to the record's
+ * byte range, Signature and EditorID. The index is normally persisted as a sidecar file next to the
+ * dump (with an {@code .idx} suffix) and is only rebuilt when the dump's size or modification time
+ * changes. The sidecar is memory-mapped and searched in place, so looking up a handful of records
+ * does not require reading the whole index, let alone parsing the dump.
+ *
+ * <p>Layout of the index (all integers big-endian):
+ *
+ * <ul>
+ *   <li>Header - magic, version, dump size, dump mtime, record count, string pool offset
+ *   <li>Entries - one per record, sorted by FormID then offset: FormID, EditorID and Signature
+ *       references into the string pool, followed by the record's offset and length in the dump
+ *   <li>EditorID order - the entry numbers sorted by EditorID then offset
+ *   <li>String pool - each string as an unsigned 16-bit length followed by its UTF-8 bytes
+ * </ul>
+ *
+ * @author Eric Karlson
+ */
+class DumpIndex {
+  static final String SUFFIX = ".idx";
+
+  /** "ESMIDX01" */
+  private static final long MAGIC = 0x45534D4944583031L;
+
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8 + 4 + 8 + 8 + 4 + 4;
+  private static final int ENTRY_SIZE = 5 * 4;
+
+  private final ByteBuffer data;
+  private final int count;
+  private final int poolOffset;
+
+  private DumpIndex(@NotNull ByteBuffer data) {
+    this.data = data;
+    this.count = data.getInt(8 + 4 + 8 + 8);
+    this.poolOffset = data.getInt(8 + 4 + 8 + 8 + 4);
+  }
+
+  /**
+   * Opens the index for a dump, reusing its sidecar file if that is still current, and otherwise
+   * building the index by scanning the dump.
+   *
+   * @param dump The dump file to index
+   * @param factory The {@link JsonFactory} to use for scanning the dump
+   * @param persist {@code true} to write a newly built index out as a sidecar file
+   * @return The dump's index
+   * @throws IOException If there is some problem reading the dump
+   */
+  static @NotNull DumpIndex open(
+      @NotNull DumpFile dump, @NotNull JsonFactory factory, boolean persist) throws IOException {
+    File dumpFile = new File(dump.getFilename());
+    Path sidecar = Paths.get(dump.getFilename() + SUFFIX);
+    if (Files.isRegularFile(sidecar)) {
+      try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (data.limit() >= HEADER_SIZE
+            && MAGIC == data.getLong(0)
+            && VERSION == data.getInt(8)
+            && dumpFile.length() == data.getLong(12)
+            && dumpFile.lastModified() == data.getLong(20)) {
+          return new DumpIndex(data);
+        }
+      }
+    }
+
+    DumpIndex index = build(dump, factory, dumpFile.length(), dumpFile.lastModified());
+    if (persist) {
+      try {
+        Files.write(sidecar, Arrays.copyOf(index.data.array(), index.data.limit()));
+      } catch (IOException e) {
+        System.err.println("WARN: unable to write index " + sidecar + ": " + e.getMessage());
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Builds the index for a dump by scanning the header of each of its records
+   *
+   * @return The (heap-based) index
+   */
+  private static @NotNull DumpIndex build(
+      @NotNull DumpFile dump, @NotNull JsonFactory factory, long dumpSize, long dumpMtime)
+      throws IOException {
+    // Find and scan every record in the dump
+    RecordBoundaryScanner.Spans spans = dump.findRecords();
+    int count = spans.size();
+    RecordHeader[] headers = new RecordHeader[count];
+    for (int idx = 0; idx < count; idx++) {
+      try (JsonParser jp =
+          factory.createParser(dump.open(spans.getOffset(idx), spans.getLength(idx)))) {
+        jp.nextToken();
+        headers[idx] = RecordHeader.scan(jp);
+      }
+    }
+
+    // Record numbers sorted by FormID, and by EditorID (ties broken by file order)
+    Integer[] byFormId = new Integer[count];
+    Integer[] byEditorId = new Integer[count];
+    for (int idx = 0; idx < count; idx++) {
+      byFormId[idx] = idx;
+      byEditorId[idx] = idx;
+    }
+    Arrays.sort(
+        byFormId, Comparator.comparing((Integer i) -> headers[i].formId).thenComparing(i -> i));
+    Arrays.sort(
+        byEditorId, Comparator.comparing((Integer i) -> headers[i].editorId).thenComparing(i -> i));
+
+    // Lay out the string pool, sharing repeated strings (e.g. signatures)
+    Map<String, Integer> poolRefs = new HashMap<>();
+    List<byte[]> pool = new ArrayList<>();
+    int[] poolSize = {0};
+    int[][] refs = new int[count][];
+    for (int idx = 0; idx < count; idx++) {
+      RecordHeader hdr = headers[idx];
+      refs[idx] = new int[3];
+      int field = 0;
+      for (String str : new String[] {hdr.formId, hdr.editorId, hdr.signature}) {
+        refs[idx][field++] =
+            poolRefs.computeIfAbsent(
+                str,
+                s -> {
+                  byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                  Assert.assertTrue(bytes.length <= 0xFFFF, "Index string too long: " + s);
+                  pool.add(bytes);
+                  int ref = poolSize[0];
+                  poolSize[0] += 2 + bytes.length;
+                  return ref;
+                });
+      }
+    }
+
+    // Now write out the index
+    int poolOffset = HEADER_SIZE + count * ENTRY_SIZE + count * 4;
+    ByteBuffer data = ByteBuffer.allocate(poolOffset + poolSize[0]);
+    data.putLong(MAGIC).putInt(VERSION).putLong(dumpSize).putLong(dumpMtime);
+    data.putInt(count).putInt(poolOffset);
+    int[] entryOfRecord = new int[count];
+    for (int entry = 0; entry < count; entry++) {
+      int idx = byFormId[entry];
+      entryOfRecord[idx] = entry;
+      data.putInt(refs[idx][0]).putInt(refs[idx][1]).putInt(refs[idx][2]);
+      data.putInt(spans.getOffset(idx)).putInt(spans.getLength(idx));
+    }
+    for (int idx : byEditorId) {
+      data.putInt(entryOfRecord[idx]);
+    }
+    for (byte[] bytes : pool) {
+      data.putShort((short) bytes.length).put(bytes);
+    }
+    data.flip();
+    return new DumpIndex(data);
+  }
+
+  /**
+   * @return The number of records in the index
+   */
+  int size() {
+    return count;
+  }
+
+  @NotNull
+  String getFormId(int entry) {
+    return getString(data.getInt(HEADER_SIZE + entry * ENTRY_SIZE));
+  }
+
+  @NotNull
+  String getEditorId(int entry) {
+    return getString(data.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 4));
+  }
+
+  @NotNull
+  String getSignature(int entry) {
+    return getString(data.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 8));
+  }
+
+  int getOffset(int entry) {
+    return data.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 12);
+  }
+
+  int getLength(int entry) {
+    return data.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 16);
+  }
+
+  /**
+   * @return The entry numbers, in the order the records appear in the dump
+   */
+  int @NotNull [] entriesInFileOrder() {
+    Integer[] entries = new Integer[count];
+    for (int entry = 0; entry < count; entry++) {
+      entries[entry] = entry;
+    }
+    Arrays.sort(entries, Comparator.comparingInt(this::getOffset));
+    return Arrays.stream(entries).mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Finds a record by its FormID. If the dump holds several records with the same FormID, the last
+   * one in the dump is found (matching the "last one wins" behavior of a full parse).
+   *
+   * @param formId The FormID of interest
+   * @return The entry number of the record, or {@code -1} if there is no such record
+   */
+  int findByFormId(@NotNull String formId) {
+    return findLast(formId, entry -> entry, this::getFormId);
+  }
+
+  /**
+   * Finds a record by its EditorID. If the dump holds several records with the same EditorID, the
+   * last one in the dump is found.
+   *
+   * @param editorId The EditorID of interest
+   * @return The entry number of the record, or {@code -1} if there is no such record
+   */
+  int findByEditorId(@NotNull String editorId) {
+    return findLast(
+        editorId,
+        pos -> data.getInt(HEADER_SIZE + count * ENTRY_SIZE + pos * 4),
+        this::getEditorId);
+  }
+
+  private interface EntryAt {
+    int entry(int pos);
+  }
+
+  private interface KeyOf {
+    String key(int entry);
+  }
+
+  /** Binary search for the last position in a sorted order whose key equals the given key */
+  private int findLast(@NotNull String key, @NotNull EntryAt order, @NotNull KeyOf keyOf) {
+    int lo = 0;
+    int hi = count - 1;
+    int found = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = keyOf.key(order.entry(mid)).compareTo(key);
+      if (cmp <= 0) {
+        if (0 == cmp) {
+          found = mid;
+        }
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return (-1 == found) ? -1 : order.entry(found);
+  }
+
+  private @NotNull String getString(int ref) {
+    int pos = poolOffset + ref;
+    int len = data.getShort(pos) & 0xFFFF;
+    byte[] bytes = new byte[len];
+    ByteBuffer str = data.duplicate();
+    str.position(pos + 2);
+    str.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
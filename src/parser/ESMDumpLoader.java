@@ -0,0 +1,186 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import util.Holder;
+
+/**
+ * Loads a set of ESM Json Dump Files into an {@link ESMJsonParser} concurrently. Each file is
+ * parsed on its own worker thread into a deferred {@link ESMJsonParser.ParserRegistrar}, and the
+ * results are then committed to the parser in discovery order, so the resulting data model is
+ * identical to calling {@link ESMJsonParser#parse(String, Holder)} on each file in turn. Files that
+ * make up a large share of the total bytes are additionally split into chunks that are parsed on
+ * several threads (see {@link ESMJsonParser#parse(String, int, Holder)}). A file only starts once
+ * its share of the threads is free, so the files being parsed never use more threads between them
+ * than the loader was given.
+ *
+ * @author Eric Karlson
+ */
+public class ESMDumpLoader {
+  private static final String DUMP_FILE_GLOB =
+      "*.{json,ndjson,json.gz,ndjson.gz,json.deflate,ndjson.deflate}";
+
+  private final ESMJsonParser parser;
+  private final int threads;
+  private boolean pipelined = false;
+
+  /**
+   * @param parser The {@link ESMJsonParser} to load the dump files into
+   * @param threads The number of threads to parse the dump files with
+   */
+  public ESMDumpLoader(@NotNull ESMJsonParser parser, int threads) {
+    this.parser = parser;
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Loads the dump files through a staged {@link IngestPipeline} rather than file by file. The
+   * loader's threads are split between the pipeline's tokenizers and factories, three to one, and
+   * the statistics of each stage are reported on {@code System.err} once the files are loaded.
+   * The pipeline cannot load records lazily (see {@link ESMJsonParser#setLazyLoading(boolean)}) or
+   * read binary plugins.
+   *
+   * @param pipelined {@code true} to load the files through an {@link IngestPipeline}
+   */
+  public void setPipelined(boolean pipelined) {
+    this.pipelined = pipelined;
+  }
+
+  /**
+   * Discovers the ESM Json Dump Files to load. The source may either be a directory, in which case
+   * all {@code *.json} and {@code *.ndjson} files (optionally gzip or deflate compressed) in it are
+   * returned, or a glob such as {@code C:\dumps\W*.json} which is matched against the file names in
+   * its parent directory. Where a dump has been converted to the line-delimited format (see {@link
+   * DumpConverter}) and both versions match, only the line-delimited one is returned.
+   *
+   * @param source A directory or a file name glob
+   * @return The matching dump files, sorted by name
+   * @throws IOException If the directory cannot be read
+   */
+  public static @NotNull List<String> discover(@NotNull String source) throws IOException {
+    Path dir;
+    String glob;
+    if (new File(source).isDirectory()) {
+      dir = Paths.get(source);
+      glob = DUMP_FILE_GLOB;
+    } else {
+      Path path = Paths.get(source);
+      dir = (null != path.getParent()) ? path.getParent() : Paths.get(".");
+      glob = path.getFileName().toString();
+    }
+
+    PathMatcher matcher = dir.getFileSystem().getPathMatcher("glob:" + glob);
+    List<String> found;
+    try (Stream<Path> files = Files.list(dir)) {
+      found =
+          files
+              .filter(f -> Files.isRegularFile(f) && matcher.matches(f.getFileName()))
+              .map(Path::toString)
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    Set<String> converted = new HashSet<>(found);
+    found.removeIf(
+        f ->
+            !DumpFile.isLineDelimited(f)
+                && converted.contains(DumpConverter.toLineDelimitedName(f)));
+    return found;
+  }
+
+  /**
+   * Parses all the indicated files and registers their records with the parser, through an {@link
+   * IngestPipeline} if {@link #setPipelined(boolean)}. The per-file wall time, or the statistics
+   * of the pipeline's stages, are reported on {@code System.err}.
+   *
+   * @param filenames The dump files to load, in the order their records should be registered
+   * @param current Set to the name of the offending file if loading fails
+   * @throws IOException If there is some problem reading one of the files
+   */
+  public void load(@NotNull List<String> filenames, @NotNull Holder<String> current)
+      throws IOException {
+    if (pipelined) {
+      long start = System.nanoTime();
+      int tokenizers = Math.max(1, threads * 3 / 4);
+      IngestPipeline pipeline = new IngestPipeline(tokenizers, Math.max(1, threads - tokenizers));
+      parser.parse(filenames, pipeline, current);
+      pipeline.printStats(System.err);
+      System.err.printf(
+          "Loaded %d files in %d ms%n", filenames.size(), (System.nanoTime() - start) / 1000000);
+      return;
+    }
+
+    // Start the biggest files first so that the total wall time approaches that of the largest
+    List<String> bySize = new ArrayList<>(filenames);
+    bySize.sort(Comparator.comparingLong((String f) -> new File(f).length()).reversed());
+
+    long totalBytes = Math.max(1, filenames.stream().mapToLong(f -> new File(f).length()).sum());
+
+    long start = System.nanoTime();
+    ExecutorService pool =
+        Executors.newFixedThreadPool(Math.max(1, Math.min(threads, filenames.size())));
+    Semaphore budget = new Semaphore(threads, true);
+    try {
+      Map<String, Future<ESMJsonParser.ParserRegistrar>> results = new HashMap<>();
+      for (String filename : bySize) {
+        // Give each file a share of the threads proportional to its share of the bytes
+        long share = Math.round((double) threads * new File(filename).length() / totalBytes);
+        int fileThreads = (int) Math.min(threads, Math.max(1, share));
+        results.put(
+            filename,
+            pool.submit(
+                () -> {
+                  budget.acquire(fileThreads);
+                  try {
+                    return parseFile(filename, fileThreads);
+                  } finally {
+                    budget.release(fileThreads);
+                  }
+                }));
+      }
+
+      // Commit each file's records in the requested order
+      for (String filename : filenames) {
+        current.set(filename);
+        results.get(filename).get().commit();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading " + current.get(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      pool.shutdownNow();
+    }
+    System.err.printf(
+        "Loaded %d files in %d ms%n", filenames.size(), (System.nanoTime() - start) / 1000000);
+  }
+
+  /**
+   * Parses a single dump file into a deferred registrar and reports how long it took
+   *
+   * @param filename The dump file to parse
+   * @param fileThreads The number of threads to split the file across
+   * @return The deferred {@link ESMJsonParser.ParserRegistrar} holding the file's records
+   * @throws IOException If there is some problem reading the file
+   */
+  private ESMJsonParser.ParserRegistrar parseFile(@NotNull String filename, int fileThreads)
+      throws IOException {
+    long start = System.nanoTime();
+    ESMJsonParser.ParserRegistrar registrar = parser.newDeferredRegistrar();
+    parser.parse(filename, fileThreads, registrar);
+    System.err.printf(
+        "Parsed %s: %d records in %d ms%n",
+        filename, registrar.getDeferredCount(), (System.nanoTime() - start) / 1000000);
+    return registrar;
+  }
+}
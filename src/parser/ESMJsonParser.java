@@ -1,7 +1,11 @@
 package parser;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import datamodel.ESMGroup;
 import datamodel.Record;
 import java.io.*;
@@ -9,6 +13,13 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import util.Assert;
@@ -20,9 +31,59 @@ import util.Holder;
  * @author Eric Karlson
  */
 public class ESMJsonParser {
+  /** How many chunks to split a dump into, per thread, when parsing a single file in parallel */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /** Builds record trees using our {@link ESMNodeFactory} */
+  private final ObjectMapper mapper = newMapper();
+
+  /** Whether dump files are memory-mapped and parsed as bytes, rather than read via a Reader */
+  private boolean memoryMapped = true;
+
+  /** Whether records only parse their {@link JsonNode} when it is first needed */
+  private boolean lazyLoading = false;
+
+  /** Tracks the resident nodes of lazily loaded records */
+  private final NodeCache nodeCache = new NodeCache();
+
+  /** Whether sidecar indexes are written and reused when loading lazily */
+  private boolean sidecarIndexing = false;
+
+  /** The signatures of the records to load, or {@code null} to load every record */
+  private Set<String> signatureFilter = null;
+
+  /** Whether the records of signatures with a {@link RecordProjection} are bound to it */
+  private boolean projectionBinding = false;
+
+  /** Whether each record's tree is frozen once it is parsed */
+  private boolean frozenTrees = false;
+
+  /** Whether structurally equal subtrees are shared between the frozen trees */
+  private boolean sharedSubtrees = false;
+
+  /** Freezes each record's tree once it is parsed, or {@code null} to keep the parsed tree */
+  private NodeFreezer freezer = null;
+
+  /** Holds the trees of parsed records off the heap, or {@code null} to keep them on the heap */
+  private volatile OffHeapCorpus corpus = null;
+
+  /** Dumps whose records are only materialized on demand, via their index */
+  private final List<AttachedDump> attached = new ArrayList<>();
+
+  /** The plugin layers stacked above the records registered by {@link #parse(String, Holder)} */
+  private volatile LoadOrder loadOrder = new LoadOrder(List.of());
+
+  /** The references resolved by the last link phase, or {@code null} if they aren't current */
+  private volatile LinkGraph linkGraph = null;
+
+  /** Told about each record as it is registered, if set */
+  private volatile Consumer<Record> registrationListener = null;
+
+  /** Collects the FormID's that lookups on this thread fail to find, while being tracked */
+  private final ThreadLocal<Set<String>> missingFormIds = new ThreadLocal<>();
 
   /** Maps FormID's to {@link Record}'s */
-  private final Map<String, Record> recordsByFormId = new HashMap<>();
+  private final FormIdTable recordsByFormId = new FormIdTable();
 
   /** Maps Editor ID's to {@link Record}'s */
   private final Map<String, Record> recordsByEditorId = new HashMap<>();
@@ -32,22 +93,79 @@ public class ESMJsonParser {
 
   /**
    * A callback class passed to the {@link Record}'s constructor to register the new {@link Record}
-   * with the {@link ESMJsonParser} that created it *
+   * with the {@link ESMJsonParser} that created it. A registrar may also be <i>deferred</i>, in
+   * which case it holds on to the new {@link Record}'s until {@link #commit()} is called, which
+   * allows several dump files to be parsed concurrently and still be registered in a fixed order.
    */
   public static class ParserRegistrar {
     private final ESMJsonParser parser;
 
+    /** {@link Record}'s awaiting {@link #commit()}, or {@code null} to register immediately */
+    private final List<Record> deferred;
+
     private ParserRegistrar(@NotNull ESMJsonParser parser) {
+      this(parser, false);
+    }
+
+    private ParserRegistrar(@NotNull ESMJsonParser parser, boolean defer) {
       this.parser = parser;
+      this.deferred = defer ? new ArrayList<>() : null;
     }
 
     public void register(@NotNull Record record) {
-      parser.registerRecord(record);
+      if (null != deferred) {
+        deferred.add(record);
+      } else {
+        parser.registerRecord(record);
+      }
     }
 
     public ESMJsonParser getParser() {
       return parser;
     }
+
+    /**
+     * @return The number of {@link Record}'s waiting to be committed
+     */
+    int getDeferredCount() {
+      return (null != deferred) ? deferred.size() : 0;
+    }
+
+    /** Registers all deferred {@link Record}'s with the parser, in the order they were created */
+    void commit() {
+      if (null != deferred) {
+        synchronized (parser) {
+          deferred.forEach(parser::registerRecord);
+        }
+        deferred.clear();
+      }
+    }
+
+    /**
+     * Takes all deferred {@link Record}'s, without registering them with the parser
+     *
+     * @return The deferred {@link Record}'s, in the order they were created
+     */
+    @NotNull
+    List<Record> drain() {
+      List<Record> records = (null != deferred) ? new ArrayList<>(deferred) : List.of();
+      if (null != deferred) {
+        deferred.clear();
+      }
+      return records;
+    }
+
+    /**
+     * Hands all deferred {@link Record}'s to another registrar, in the order they were created
+     *
+     * @param target The {@link ParserRegistrar} to pass the {@link Record}'s on to
+     */
+    void commit(@NotNull ParserRegistrar target) {
+      if (null != deferred) {
+        deferred.forEach(target::register);
+        deferred.clear();
+      }
+    }
   }
 
   /**
@@ -61,39 +179,953 @@ public class ESMJsonParser {
    */
   public ESMJsonParser() {}
 
+  /**
+   * Controls how dump files are read. When memory-mapped (the default) Jackson parses the file's
+   * bytes directly, with only the rare non-ASCII cp1252 bytes being translated; otherwise the file
+   * is decoded through a {@link Reader}. Files too large to map are always read via a {@link
+   * Reader}.
+   *
+   * @param memoryMapped {@code true} to memory-map dump files
+   */
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
+  boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
+  /**
+   * Controls whether records are loaded lazily. A lazily loaded record only keeps its FormID,
+   * EditorID, Signature and the byte range of its JSON at load time; its {@link JsonNode} is parsed
+   * the first time it is needed, and may be evicted again (see {@link #setNodeCacheLimit(long)}).
+   * This requires that the dump file can be mapped (see {@link #setMemoryMapped(boolean)}); larger
+   * files are always loaded eagerly.
+   *
+   * @param lazyLoading {@code true} to load records lazily
+   */
+  public void setLazyLoading(boolean lazyLoading) {
+    this.lazyLoading = lazyLoading;
+  }
+
+  /**
+   * Limits the memory used by lazily loaded records. Once the combined JSON size of the resident
+   * records goes over the limit, the least recently used ones have their {@link JsonNode} dropped,
+   * to be parsed again if they are needed later.
+   *
+   * @param bytes The limit, in bytes of JSON, or {@code 0} for no limit
+   */
+  public void setNodeCacheLimit(long bytes) {
+    nodeCache.setLimit(bytes);
+  }
+
+  /**
+   * Controls whether a sidecar index (see {@link DumpIndex}) is written next to each dump that is
+   * loaded lazily, and reused on later loads to register the records without scanning the dump.
+   *
+   * @param sidecarIndexing {@code true} to write and reuse sidecar indexes
+   */
+  public void setSidecarIndexing(boolean sidecarIndexing) {
+    this.sidecarIndexing = sidecarIndexing;
+  }
+
+  /**
+   * Restricts loading to the records with the given signatures, typically those a data miner
+   * declares it needs (see {@link miner.IDataMiner#getRequiredSignatures()}). Unwanted records are
+   * skipped at the token level: no {@link JsonNode}'s or {@link Record}'s are built for them.
+   *
+   * @param signatures The signatures to load, or an empty collection to load every record
+   */
+  public void setSignatureFilter(@NotNull Collection<String> signatures) {
+    this.signatureFilter = signatures.isEmpty() ? null : new HashSet<>(signatures);
+  }
+
+  /**
+   * @return The signatures of the records to load, or an empty set if every record is loaded
+   */
+  public @NotNull Set<String> getSignatureFilter() {
+    return (null != signatureFilter) ? Collections.unmodifiableSet(signatureFilter) : Set.of();
+  }
+
+  /**
+   * Controls whether records are bound to typed projections. For the signatures that have one (see
+   * {@link RecordProjection}), the few fields the data model reads are streamed straight into the
+   * projection and the rest of the record is skipped, so the record's {@link JsonNode} only holds
+   * its <i>Record Header</i>, EditorID and name. Records of every other signature, and records
+   * that are loaded lazily or from a plugin or snapshot, are unaffected. Since the full trees are
+   * not kept, a model loaded this way cannot be written to a snapshot.
+   *
+   * @param projectionBinding {@code true} to bind records to projections
+   */
+  public void setProjectionBinding(boolean projectionBinding) {
+    this.projectionBinding = projectionBinding;
+  }
+
+  /**
+   * Controls whether each record's tree is frozen once it has been parsed (see {@link
+   * FrozenObjectNode}). A frozen tree is read-only, and holds its objects' values in arrays whose
+   * keys are shared by every object with the same keys, which takes far less heap than the hash
+   * maps of the parsed tree. This applies to records parsed from dumps, whether eagerly or lazily,
+   * and to records loaded from a snapshot.
+   *
+   * @param frozenTrees {@code true} to freeze the records' trees
+   */
+  public void setFrozenTrees(boolean frozenTrees) {
+    this.frozenTrees = frozenTrees;
+    updateFreezer();
+  }
+
+  /**
+   * Controls whether structurally equal subtrees are shared between the records' trees (see {@link
+   * NodeFreezer}). Many records hold identical fragments, such as their conditions or damage
+   * types, and with sharing each distinct fragment is only held once, which further reduces the
+   * heap taken by the data model. Only frozen trees can be shared, so this implies {@link
+   * #setFrozenTrees(boolean)}. Records, their equality and their accessors are unaffected.
+   *
+   * @param sharedSubtrees {@code true} to share structurally equal subtrees
+   */
+  public void setSharedSubtrees(boolean sharedSubtrees) {
+    this.sharedSubtrees = sharedSubtrees;
+    updateFreezer();
+  }
+
+  /**
+   * Controls whether short text values, such as FormID's, references and damage types, are shared
+   * between the records' trees through the {@link SymbolTable} of this parser's {@link
+   * ESMNodeFactory}, so that each distinct value is only held once. Property keys are always
+   * shared.
+   *
+   * @param internedValues {@code true} to share short text values
+   */
+  public void setInternedValues(boolean internedValues) {
+    ((ESMNodeFactory) mapper.getNodeFactory()).setInternedValues(internedValues);
+  }
+
+  /**
+   * Controls whether reference values are reduced to their canonical raw FormID's as the records
+   * are parsed (see {@link Util#canonicalReference(String)}). The dumps write some references as
+   * <i>Decorated Form ID</i>'s, such as {@code SpaceshipPartLinkedWeapon [KYWD:000179DD]}, which
+   * accessors otherwise have to take apart every time they follow them. Accessors work the same
+   * either way, but any output that shows the references will show the raw FormID's.
+   *
+   * @param canonicalReferences {@code true} to reduce references to raw FormID's
+   */
+  public void setCanonicalReferences(boolean canonicalReferences) {
+    ((ESMNodeFactory) mapper.getNodeFactory()).setCanonicalReferences(canonicalReferences);
+  }
+
+  /**
+   * Controls whether the trees of parsed records are held off the Java heap (see {@link
+   * OffHeapCorpus}). Each record's tree is encoded into a memory-mapped temporary file as soon as
+   * it is parsed, and only decoded again while the record is in use, so the heap only holds the
+   * {@link Record}'s themselves and their resident trees, which are limited by {@link
+   * #setNodeCacheLimit(long)} (in bytes of the encoded trees). This applies to records parsed
+   * eagerly from dumps, other than those bound to projections; records loaded lazily, or from a
+   * plugin or snapshot, are unaffected. Lookups and accessors work exactly as before.
+   *
+   * @param offHeap {@code true} to hold the trees of parsed records off the heap
+   * @throws IOException If the temporary file cannot be created
+   */
+  public void setOffHeapStorage(boolean offHeap) throws IOException {
+    this.corpus =
+        offHeap ? new OffHeapCorpus(mapper.getNodeFactory(), this::settle, nodeCache) : null;
+  }
+
+  private void updateFreezer() {
+    this.freezer =
+        (frozenTrees || sharedSubtrees)
+            ? new NodeFreezer(mapper.getNodeFactory(), sharedSubtrees)
+            : null;
+  }
+
+  /**
+   * @param node A record's newly parsed tree
+   * @return The tree to keep for the record, which is frozen if {@link #setFrozenTrees(boolean)}
+   */
+  private @NotNull JsonNode settle(@NotNull JsonNode node) {
+    NodeFreezer nf = freezer;
+    return (null != nf) ? nf.freeze(node) : node;
+  }
+
+  /**
+   * @param signature The signature of a record
+   * @return {@code true} if records with this signature should be loaded
+   */
+  private boolean isWanted(@NotNull String signature) {
+    return (null == signatureFilter) || signatureFilter.contains(signature);
+  }
+
+  /** A dump whose records are materialized from its {@link DumpIndex} when first looked up */
+  private static class AttachedDump {
+    private final DumpFile dump;
+    private final DumpIndex index;
+
+    /** The index entries that have already been materialized */
+    private final BitSet materialized = new BitSet();
+
+    /** The signatures whose records have all been materialized */
+    private final Set<String> materializedGroups = new HashSet<>();
+
+    private AttachedDump(@NotNull DumpFile dump, @NotNull DumpIndex index) {
+      this.dump = dump;
+      this.index = index;
+    }
+  }
+
+  /** A {@link RecordSource} that parses a record from its byte range in a {@link DumpFile} */
+  private class DumpRecordSource implements RecordSource {
+    private final DumpFile dump;
+    private final int offset;
+    private final int length;
+
+    private DumpRecordSource(@NotNull DumpFile dump, int offset, int length) {
+      this.dump = dump;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public @NotNull JsonNode load(@NotNull Record record) {
+      try {
+        JsonNode node = read();
+        nodeCache.admit(record, length);
+        return node;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * @return The record's tree, parsed from its byte range
+     * @throws IOException If there is some problem parsing the record
+     */
+    private @NotNull JsonNode read() throws IOException {
+      try (JsonParser jp = mapper.getFactory().createParser(dump.open(offset, length))) {
+        jp.nextToken();
+        return settle(mapper.readTree(jp));
+      }
+    }
+  }
+
   /**
    * Parses the indicated ESM Json Dump File and adds all discovered records into this parser's data
-   * model.
+   * model. The dump is streamed one record at a time, so only the subtree of the record currently
+   * being processed is held in memory, rather than a DOM of the entire file. Gzip ({@code .gz})
+   * and raw deflate ({@code .deflate}) compressed dumps are decompressed on a separate thread while
+   * they are parsed.
    *
    * @param filename The name of the ESM Json Dump File to read
    * @throws IOException If there is some problem reading the file
    */
   public void parse(@NotNull String filename, @NotNull Holder<String> current) throws IOException {
     current.set(filename);
+    parse(filename, 1, new ParserRegistrar(this));
+  }
+
+  /**
+   * Streams the indicated ESM Json Dump File, handing each discovered record to the given
+   * registrar.
+   *
+   * @param filename The name of the ESM Json Dump File to read
+   * @param registrar The {@link ParserRegistrar} to use for {@link Record} registration
+   * @throws IOException If there is some problem reading the file
+   */
+  private void stream(@NotNull String filename, @NotNull ParserRegistrar registrar)
+      throws IOException {
+    try (JsonParser jp = openDump(filename)) {
+      parseRecords(jp, DumpFile.isLineDelimited(filename), registrar);
+    }
+  }
+
+  /**
+   * Opens the indicated ESM Json Dump File for streaming. A mappable file is memory-mapped (see
+   * {@link #setMemoryMapped(boolean)}); otherwise it is read, and decompressed, as a stream.
+   *
+   * @param filename The name of the ESM Json Dump File to read
+   * @return A {@link JsonParser} over the whole file, which closes the file when it is closed
+   * @throws IOException If the file cannot be opened
+   */
+  @NotNull
+  JsonParser openDump(@NotNull String filename) throws IOException {
+    if (memoryMapped && DumpFile.isMappable(filename)) {
+      return mapper.getFactory().createParser(DumpFile.open(filename, true).open());
+    }
+
+    InputStream is = DumpFile.openStream(filename);
+    if (DumpFile.isLineDelimited(filename)) {
+      // Already UTF-8, so Jackson can read the bytes directly
+      return mapper.getFactory().createParser(is);
+    }
+
+    // Otherwise decode the cp1252, ignoring malformed characters
+    return mapper
+        .getFactory()
+        .createParser(new BufferedReader(new InputStreamReader(is, newDecoder())));
+  }
+
+  /**
+   * Attaches the indicated ESM Json Dump File without parsing it. The dump's sidecar index (see
+   * {@link DumpIndex}) is opened, or built and written if it is missing or out of date, and records
+   * are only parsed when they are looked up by {@link #findRecordByFormId(String, Class)}, {@link
+   * #findRecordByEditorId(String, Class)} or {@link #getGroup(Class)}.
+   *
+   * @param filename The name of the ESM Json Dump File to attach
+   * @param current Set to the name of the file being attached
+   * @throws IOException If there is some problem reading the file or its index
+   */
+  public void attach(@NotNull String filename, @NotNull Holder<String> current)
+      throws IOException {
+    current.set(filename);
+    Assert.assertTrue(DumpFile.isMappable(filename), "Dump file is too large to attach");
+    DumpFile dump = DumpFile.open(filename, memoryMapped);
+    DumpIndex index = DumpIndex.open(dump, mapper.getFactory(), true);
+    synchronized (this) {
+      attached.add(new AttachedDump(dump, index));
+    }
+  }
+
+  /**
+   * Loads the dump files of a single plugin into a {@link RecordLayer} of their own. The records
+   * are not registered with this parser directly; they only become visible once the layer is made
+   * part of the load order (see {@link #setLoadOrder(List)}). Each plugin only needs to be loaded
+   * once, however many load orders it takes part in.
+   *
+   * @param name The name of the plugin
+   * @param pluginIndex The plugin-index byte of the FormID's of the records the plugin defines
+   * @param filenames The plugin's dump files, in the order their records should be registered
+   * @param threads The number of threads to parse each file with
+   * @return The plugin's layer
+   * @throws IOException If there is some problem reading one of the files
+   */
+  public @NotNull RecordLayer loadLayer(
+      @NotNull String name, int pluginIndex, @NotNull List<String> filenames, int threads)
+      throws IOException {
+    ParserRegistrar registrar = newDeferredRegistrar();
+    for (String filename : filenames) {
+      parse(filename, threads, registrar);
+    }
+    return new RecordLayer(name, pluginIndex, this, registrar.drain());
+  }
+
+  /**
+   * Stacks plugin layers above the records registered by {@link #parse(String, Holder)}. Lookups
+   * then resolve each FormID to its winning override in this load order, with the parsed records
+   * acting as a layer beneath all of the plugins. Switching to another load order just replaces
+   * the view; no records are reloaded or copied.
+   *
+   * @param layers The plugin layers, in load order (masters first), all loaded by this parser
+   */
+  public void setLoadOrder(@NotNull List<RecordLayer> layers) {
+    for (RecordLayer layer : layers) {
+      Assert.assertTrue(this == layer.getParser(), "Layer " + layer + " belongs to another parser");
+    }
+    loadOrder = new LoadOrder(layers);
+    dropLinks();
+  }
+
+  /**
+   * @return The plugin layers currently stacked above the parsed records, in load order
+   */
+  public @NotNull List<RecordLayer> getLoadOrder() {
+    return loadOrder.getLayers();
+  }
+
+  /**
+   * Writes the loaded data model to a snapshot file (see {@link ModelSnapshot}), so that later
+   * runs can {@link #loadSnapshot(String, List)} it instead of parsing the dump files again. Any
+   * attached dumps (see {@link #attach(String, Holder)}) are fully materialized first.
+   *
+   * @param filename The name of the snapshot file
+   * @param sources The dump files the model was loaded from
+   * @throws IOException If the snapshot cannot be written
+   */
+  public synchronized void writeSnapshot(@NotNull String filename, @NotNull List<String> sources)
+      throws IOException {
+    Assert.assertTrue(
+        !projectionBinding, "Snapshots cannot be written from records bound to projections");
+    materializeAttached();
+
+    Iterator<Record> records =
+        recordsBySignature.values().stream().flatMap(List::stream).iterator();
+    ModelSnapshot.write(
+        filename,
+        sources,
+        getSignatureFilter(),
+        new Iterator<ModelSnapshot.Entry>() {
+          @Override
+          public boolean hasNext() {
+            return records.hasNext();
+          }
+
+          @Override
+          public ModelSnapshot.Entry next() {
+            Record rec = records.next();
+            int flags = 0;
+            if (rec == recordsByFormId.get(rec.getFormId())) {
+              flags |= ModelSnapshot.FLAG_FORM_ID;
+            }
+            if (rec == recordsByEditorId.get(rec.getEditorId())) {
+              flags |= ModelSnapshot.FLAG_EDITOR_ID;
+            }
+            return new ModelSnapshot.Entry(
+                rec.getFormId(), rec.getEditorId(), rec.getSignature(), flags, rec.getNode());
+          }
+        });
+  }
+
+  /**
+   * Loads the data model from a snapshot file written by {@link #writeSnapshot(String, List)},
+   * provided that it was written from the same dump files, none of them have changed since, and it
+   * holds the records wanted by the signature filter (see {@link #setSignatureFilter(Collection)}).
+   * The snapshot is memory-mapped and every record is loaded lazily from it, regardless of {@link
+   * #setLazyLoading(boolean)}, so only the records that are actually used are ever decoded.
+   *
+   * @param filename The name of the snapshot file
+   * @param sources The dump files the model is loaded from
+   * @return {@code true} if the snapshot was loaded, {@code false} if it is missing or out of date
+   * @throws IOException If the snapshot cannot be read
+   */
+  public synchronized boolean loadSnapshot(
+      @NotNull String filename, @NotNull List<String> sources) throws IOException {
+    ModelSnapshot snapshot = ModelSnapshot.open(filename, sources, getSignatureFilter());
+    if (null == snapshot) {
+      return false;
+    }
+
+    // The snapshot says which records hold the FormID and EditorID registries, so the records are
+    // collected rather than registered as they are created
+    ParserRegistrar registrar = new ParserRegistrar(this, true);
+    for (int entry = 0; entry < snapshot.size(); entry++) {
+      if (!isWanted(snapshot.getSignature(entry))) {
+        continue;
+      }
+      Record rec =
+          RecordFactory.createLazyRecord(
+              snapshot.getFormId(entry),
+              snapshot.getEditorId(entry),
+              snapshot.getSignature(entry),
+              new SnapshotRecordSource(snapshot, entry),
+              registrar);
+      int flags = snapshot.getFlags(entry);
+      if (0 != (flags & ModelSnapshot.FLAG_FORM_ID)) {
+        recordsByFormId.put(rec.getFormId(), rec);
+      }
+      if (0 != (flags & ModelSnapshot.FLAG_EDITOR_ID)) {
+        recordsByEditorId.put(rec.getEditorId(), rec);
+      }
+      recordsBySignature.computeIfAbsent(rec.getSignature(), k -> new ArrayList<>()).add(rec);
+    }
+    return true;
+  }
+
+  /**
+   * Parses the indicated ESM Json Dump File using several threads. The file is first pre-scanned
+   * at the byte level to find the boundaries of each top-level record, and the records are then
+   * split into chunks that are parsed concurrently. The records are registered in file order, so
+   * the result is identical to {@link #parse(String, Holder)}. Binary plugins ({@code .esm}, {@code
+   * .esp} and {@code .esl}) may also be given, and are read directly (see {@link ESMPluginReader}).
+   *
+   * @param filename The name of the ESM Json Dump File to read
+   * @param threads The number of threads to parse the file with
+   * @param current Set to the name of the file being parsed
+   * @throws IOException If there is some problem reading the file
+   */
+  public void parse(@NotNull String filename, int threads, @NotNull Holder<String> current)
+      throws IOException {
+    current.set(filename);
+    parse(filename, threads, new ParserRegistrar(this));
+  }
 
+  /**
+   * Loads the indicated ESM Json Dump Files through a staged {@link IngestPipeline}, which reads,
+   * tokenizes, constructs and registers records on separate threads. The records are registered in
+   * the order of the files, and of the records within them, so the result is identical to parsing
+   * the files one after the other. Records are always loaded eagerly, and binary plugins are not
+   * supported.
+   *
+   * @param filenames The names of the ESM Json Dump Files to read
+   * @param pipeline The {@link IngestPipeline} to load them with, which accumulates the statistics
+   *     of each stage
+   * @param current Set to the name of the file being read
+   * @throws IOException If there is some problem reading one of the files
+   */
+  public void parse(
+      @NotNull List<String> filenames,
+      @NotNull IngestPipeline pipeline,
+      @NotNull Holder<String> current)
+      throws IOException {
+    Assert.assertTrue(!lazyLoading, "The ingest pipeline cannot load records lazily");
+    for (String filename : filenames) {
+      Assert.assertTrue(
+          !ESMPluginReader.isPlugin(filename), "The ingest pipeline cannot read " + filename);
+    }
+    pipeline.run(this, filenames, current);
+  }
+
+  /**
+   * Parses the indicated ESM Json Dump File using several threads, handing each discovered record
+   * to the given registrar in file order. Safe to call concurrently from several threads provided
+   * each uses its own deferred registrar.
+   *
+   * @param filename The name of the ESM Json Dump File to read
+   * @param threads The number of threads to parse the file with
+   * @param registrar The {@link ParserRegistrar} to use for {@link Record} registration
+   * @throws IOException If there is some problem reading the file
+   */
+  void parse(@NotNull String filename, int threads, @NotNull ParserRegistrar registrar)
+      throws IOException {
+    if (ESMPluginReader.isPlugin(filename)) {
+      new ESMPluginReader(mapper.getNodeFactory(), this::isWanted)
+          .read(filename, threads, registrar, this::newDeferredRegistrar);
+      return;
+    }
+    if (!DumpFile.isMappable(filename) || (threads <= 1 && !lazyLoading)) {
+      stream(filename, registrar);
+      return;
+    }
+
+    DumpFile dump = DumpFile.open(filename, memoryMapped);
+    if (lazyLoading && sidecarIndexing) {
+      // Everything a lazy record needs is in the index
+      DumpIndex index = DumpIndex.open(dump, mapper.getFactory(), true);
+      for (int entry : index.entriesInFileOrder()) {
+        if (isWanted(index.getSignature(entry))) {
+          createIndexedRecord(dump, index, entry, registrar);
+        }
+      }
+      return;
+    }
+
+    RecordBoundaryScanner.Spans spans = dump.findRecords();
+    if (threads <= 1) {
+      parseSpans(dump, spans, 0, spans.size(), registrar);
+      return;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ParserRegistrar>> chunks = new ArrayList<>();
+      for (int[] chunk : spans.split(threads * CHUNKS_PER_THREAD)) {
+        chunks.add(
+            pool.submit(
+                () -> {
+                  ParserRegistrar chunkRegistrar = newDeferredRegistrar();
+                  parseSpans(dump, spans, chunk[0], chunk[1], chunkRegistrar);
+                  return chunkRegistrar;
+                }));
+      }
+
+      // Hand the records on in file order
+      for (Future<ParserRegistrar> chunk : chunks) {
+        chunk.get().commit(registrar);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while parsing " + filename, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Parses a run of records whose byte ranges were found by the {@link RecordBoundaryScanner}. When
+   * loading lazily, only each record's header is scanned.
+   *
+   * @param dump The dump file
+   * @param spans The byte ranges of the records in the dump
+   * @param from The index of the first record to parse
+   * @param to The index just past the last record to parse
+   * @param registrar The {@link ParserRegistrar} to use for {@link Record} registration
+   * @throws IOException If there is some problem parsing the records
+   */
+  private void parseSpans(
+      @NotNull DumpFile dump,
+      @NotNull RecordBoundaryScanner.Spans spans,
+      int from,
+      int to,
+      @NotNull ParserRegistrar registrar)
+      throws IOException {
+    for (int idx = from; idx < to; idx++) {
+      int offset = spans.getOffset(idx);
+      int length = spans.getLength(idx);
+      try (JsonParser jp = mapper.getFactory().createParser(dump.open(offset, length))) {
+        jp.nextToken();
+        if (lazyLoading) {
+          RecordHeader hdr = RecordHeader.scan(jp);
+          if (isWanted(hdr.signature)) {
+            RecordFactory.createLazyRecord(
+                hdr.formId,
+                hdr.editorId,
+                hdr.signature,
+                new DumpRecordSource(dump, offset, length),
+                registrar);
+          }
+        } else {
+          readRecord(jp, registrar);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates the {@link Record} for an entry in a {@link DumpIndex}, parsing it straight away unless
+   * loading lazily
+   *
+   * @param dump The dump file
+   * @param index The dump file's index
+   * @param entry The index entry for the record
+   * @param registrar The {@link ParserRegistrar} to use for {@link Record} registration
+   * @return The new {@link Record}
+   */
+  private @NotNull Record createIndexedRecord(
+      @NotNull DumpFile dump,
+      @NotNull DumpIndex index,
+      int entry,
+      @NotNull ParserRegistrar registrar) {
+    DumpRecordSource source =
+        new DumpRecordSource(dump, index.getOffset(entry), index.getLength(entry));
+    if (lazyLoading) {
+      return RecordFactory.createLazyRecord(
+          index.getFormId(entry),
+          index.getEditorId(entry),
+          index.getSignature(entry),
+          source,
+          registrar);
+    }
+    try {
+      return RecordFactory.fromESMJsonObject(source.read(), registrar);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Materializes a record from the attached dumps, if any of them has it. The last attached dump
+   * that has the record wins.
+   *
+   * @param finder Finds the index entry of the record of interest
+   * @return The materialized {@link Record}, or {@code null} if no attached dump has it
+   */
+  private synchronized @Nullable Record materialize(@NotNull ToIntFunction<DumpIndex> finder) {
+    for (int idx = attached.size() - 1; idx >= 0; idx--) {
+      AttachedDump dump = attached.get(idx);
+      int entry = finder.applyAsInt(dump.index);
+      if (entry >= 0) {
+        if (dump.materialized.get(entry)) {
+          // The newest copy is already registered, and an older one must never replace it
+          return null;
+        }
+        dump.materialized.set(entry);
+        return createIndexedRecord(dump.dump, dump.index, entry, new ParserRegistrar(this));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Materializes all records of a given signature from the attached dumps. As for {@link
+   * #materialize(ToIntFunction)}, the dumps are searched newest first, and only the newest copy of
+   * each FormID is ever registered.
+   *
+   * @param signature The signature of interest
+   */
+  private synchronized void materializeGroup(@NotNull String signature) {
+    ParserRegistrar registrar = new ParserRegistrar(this);
+    for (int idx = attached.size() - 1; idx >= 0; idx--) {
+      AttachedDump dump = attached.get(idx);
+      if (dump.materializedGroups.add(signature)) {
+        for (int entry : dump.index.entriesInFileOrder()) {
+          if (!dump.materialized.get(entry) && signature.equals(dump.index.getSignature(entry))) {
+            dump.materialized.set(entry);
+            if (!isSuppliedAfter(idx, dump.index.getFormId(entry))) {
+              createIndexedRecord(dump.dump, dump.index, entry, registrar);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** Materializes every record of the attached dumps, so that no lookup registers any more */
+  private synchronized void materializeAttached() {
+    for (AttachedDump dump : attached) {
+      Set<String> signatures = new HashSet<>();
+      for (int entry = 0; entry < dump.index.size(); entry++) {
+        signatures.add(dump.index.getSignature(entry));
+      }
+      signatures.forEach(this::materializeGroup);
+    }
+  }
+
+  /**
+   * @param idx The position of an attached dump
+   * @param formId A FormID in that dump
+   * @return {@code true} if a dump attached after it also has the FormID, so it has the newer copy
+   */
+  private boolean isSuppliedAfter(int idx, @NotNull String formId) {
+    for (int later = idx + 1; later < attached.size(); later++) {
+      if (attached.get(later).index.findByFormId(formId) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The {@link JsonFactory} whose parsers build their trees with our {@link ESMNodeFactory}
+   */
+  @NotNull
+  JsonFactory getJsonFactory() {
+    return mapper.getFactory();
+  }
+
+  /**
+   * @return An {@link ObjectMapper} that builds its trees with our {@link ESMNodeFactory}
+   */
+  private static @NotNull ObjectMapper newMapper() {
     // Customized JsonNodeFactory that replaces JsonObject with our specialized ESMObjectNode
     // which handles Json Objects with repeated property values (something that happens with
     // xEdit and the serialize-command-json scripts)
     ObjectMapper mapper = new ObjectMapper();
     mapper.setNodeFactory(new ESMNodeFactory());
+    return mapper;
+  }
 
-    // Customized CharsetDecoder which will ignore invalid character encodings
-    Charset charset = Charset.forName("cp1252");
-    CharsetDecoder decoder = charset.newDecoder();
+  /**
+   * @return A cp1252 {@link CharsetDecoder} that ignores invalid character encodings (including
+   *     the five bytes that cp1252 leaves unmapped), matching {@link Cp1252InputStream}
+   */
+  static @NotNull CharsetDecoder newDecoder() {
+    CharsetDecoder decoder = Charset.forName("cp1252").newDecoder();
     decoder.onMalformedInput(CodingErrorAction.IGNORE);
+    decoder.onUnmappableCharacter(CodingErrorAction.IGNORE);
+    return decoder;
+  }
 
-    // The registrar to use for Record self-registration
-    ParserRegistrar registrar = new ParserRegistrar(this);
+  /**
+   * @return A new deferred {@link ParserRegistrar} whose {@link Record}'s are only registered with
+   *     this parser once {@link ParserRegistrar#commit()} is called
+   */
+  ParserRegistrar newDeferredRegistrar() {
+    return new ParserRegistrar(this, true);
+  }
+
+  /** Called by {@link #forEachRecord(JsonParser, boolean, RecordVisitor)} for each record */
+  @FunctionalInterface
+  interface RecordVisitor {
+    /**
+     * @param jp The {@link JsonParser} positioned on the record's {@code START_OBJECT}, to be left
+     *     on its {@code END_OBJECT}
+     * @throws IOException If there is some problem reading the record
+     */
+    void visit(@NotNull JsonParser jp) throws IOException;
+  }
+
+  /**
+   * Walks the top-level object of an ESM Json Dump File, or the lines of a line-delimited dump, one
+   * record at a time. Each record is read (see {@link #readRecord(JsonParser, ParserRegistrar)})
+   * and handed to the {@link RecordFactory} before the next record is read.
+   *
+   * @param jp The {@link JsonParser} positioned before the top-level object or first line
+   * @param lineDelimited {@code true} if the dump holds one record object per line
+   * @param registrar The {@link ParserRegistrar} to use for {@link Record} registration
+   * @throws IOException If there is some problem reading the file
+   */
+  private void parseRecords(
+      @NotNull JsonParser jp, boolean lineDelimited, @NotNull ParserRegistrar registrar)
+      throws IOException {
+    forEachRecord(jp, lineDelimited, record -> readRecord(record, registrar));
+  }
+
+  /**
+   * Walks the top-level object of an ESM Json Dump File, or the lines of a line-delimited dump, one
+   * record at a time
+   *
+   * @param jp The {@link JsonParser} positioned before the top-level object or first line
+   * @param lineDelimited {@code true} if the dump holds one record object per line
+   * @param visitor Called for each record, before the next record is read
+   * @throws IOException If there is some problem reading the file
+   */
+  static void forEachRecord(
+      @NotNull JsonParser jp, boolean lineDelimited, @NotNull RecordVisitor visitor)
+      throws IOException {
+    if (lineDelimited) {
+      // Each line is a root-level value of its own
+      for (JsonToken tok = jp.nextToken(); null != tok; tok = jp.nextToken()) {
+        Assert.assertTrue(
+            JsonToken.START_OBJECT == tok, "Line-delimited dumps must hold one OBJECT per line");
+        visitor.visit(jp);
+      }
+      return;
+    }
+
+    Assert.assertTrue(
+        JsonToken.START_OBJECT == jp.nextToken(),
+        "ESM Dump File must be an OBJECT of record objects");
+    while (JsonToken.FIELD_NAME == jp.nextToken()) {
+      // Step onto the record's value and read just that record
+      jp.nextToken();
+      visitor.visit(jp);
+    }
+  }
+
+  /**
+   * Reads a single record (see {@link #tokenize(JsonParser)}) and creates its {@link Record}
+   *
+   * @param jp The {@link JsonParser} positioned on the record's {@code START_OBJECT}
+   * @param registrar The {@link ParserRegistrar} to use for {@link Record} registration
+   * @throws IOException If there is some problem reading the record
+   */
+  private void readRecord(@NotNull JsonParser jp, @NotNull ParserRegistrar registrar)
+      throws IOException {
+    ParsedRecord record = tokenize(jp);
+    if (null != record) {
+      record.create(registrar);
+    }
+  }
+
+  /** A record's subtree, and its projection if it has one, ready to become a {@link Record} */
+  static final class ParsedRecord {
+    private final JsonNode node;
+    private final RecordProjection projection;
+
+    /** Where the record's tree is to be stored, or {@code null} to keep it on the heap */
+    private final OffHeapCorpus corpus;
+
+    private ParsedRecord(
+        @NotNull JsonNode node,
+        @Nullable RecordProjection projection,
+        @Nullable OffHeapCorpus corpus) {
+      this.node = node;
+      this.projection = projection;
+      this.corpus = corpus;
+    }
+
+    /**
+     * @param registrar The {@link ParserRegistrar} to use for {@link Record} registration
+     * @return The new {@link Record}
+     */
+    @NotNull
+    Record create(@NotNull ParserRegistrar registrar) {
+      Record record = RecordFactory.fromESMJsonObject(node, projection, registrar);
+      if (null != corpus) {
+        // The tree is only held until the record has been created (and registered)
+        record.attachSource(corpus.store(node));
+        record.evictIfIdle();
+      }
+      return record;
+    }
+  }
 
-    // Now parse the dump file, ignoring malformed UTF-8
-    try (FileInputStream fis = new FileInputStream(filename);
-        InputStreamReader isr = new InputStreamReader(fis, decoder);
-        BufferedReader br = new BufferedReader(isr)) {
-      JsonNode dom = mapper.readValue(br, JsonNode.class);
+  /**
+   * @param node A record's newly parsed tree
+   * @param projection The record's projection, or {@code null} if the node is the full tree
+   * @return The record, ready to become a {@link Record}
+   */
+  private @NotNull ParsedRecord parsed(
+      @NotNull JsonNode node, @Nullable RecordProjection projection) {
+    OffHeapCorpus oh = corpus;
+    if (null != oh && null == projection) {
+      // The tree is settled when it is decoded from the corpus
+      return new ParsedRecord(node, null, oh);
+    }
+    if (null != projection) {
+      projection.settle(this::settle);
+    }
+    return new ParsedRecord(settle(node), projection, null);
+  }
 
-      // Traverse the resulting DOM and generate/register Record Objects for all discovered records
-      Assert.assertTrue(dom.isObject(), "ESM Dump File must be an OBJECT of record objects");
-      dom.elements().forEachRemaining(r -> RecordFactory.fromESMJsonObject(r, registrar));
+  /**
+   * Builds the subtree of a single record, via the mapper's {@link ESMNodeFactory}, unless its
+   * signature is filtered out (see {@link
+   * #setSignatureFilter(Collection)}). xEdit writes the <i>Record Header</i> first, so the header
+   * is built on its own and, if the record is unwanted, the rest of the record is skipped token by
+   * token without building any nodes. Likewise, if the record is bound to a projection (see {@link
+   * #setProjectionBinding(boolean)}), the rest of the record is streamed into the projection.
+   *
+   * @param jp The {@link JsonParser} positioned on the record's {@code START_OBJECT}
+   * @return The parsed record, or {@code null} if the record is unwanted
+   * @throws IOException If there is some problem reading the record
+   */
+  @Nullable
+  ParsedRecord tokenize(@NotNull JsonParser jp) throws IOException {
+    if (null == signatureFilter && !projectionBinding) {
+      return parsed(mapper.readTree(jp), null);
+    }
+
+    ObjectNode record = mapper.getNodeFactory().objectNode();
+    RecordProjection projection = null;
+    while (null == projection && JsonToken.FIELD_NAME == jp.nextToken()) {
+      String name = jp.getCurrentName();
+      jp.nextToken();
+      JsonNode value = mapper.readTree(jp);
+      record.set(name, value);
+      if (Record.FLD_RECORD_HDR.equals(name)) {
+        if (!isWantedHeader(value)) {
+          // Skip over the remaining fields of the record
+          while (JsonToken.FIELD_NAME == jp.nextToken()) {
+            jp.nextToken();
+            jp.skipChildren();
+          }
+          return null;
+        }
+        JsonNode signature = value.get(Record.FLD_SIGNATURE);
+        if (projectionBinding && null != signature) {
+          projection = RecordFactory.newProjection(signature.asText());
+        }
+      }
+    }
+
+    if (null != projection) {
+      // Only the fields read through the node itself are kept as a tree
+      final RecordProjection bound = projection;
+      RecordProjection.readRemainingFields(
+          jp,
+          (key, value) -> {
+            if (Record.FLD_EDITOR_ID.equals(key) || Record.FLD_FULL_NAME.equals(key)) {
+              record.set(key, mapper.readTree(value));
+            } else {
+              bound.bind(key, value);
+            }
+          });
+    }
+    return isWantedHeader(record.get(Record.FLD_RECORD_HDR))
+        ? parsed(record, projection)
+        : null;
+  }
+
+  /**
+   * @param header The <i>Record Header</i> of a record
+   * @return {@code true} if the record should be loaded; records without a recognizable header are
+   *     always loaded, so that the {@link RecordFactory} reports them
+   */
+  private boolean isWantedHeader(@Nullable JsonNode header) {
+    JsonNode signature = (null != header) ? header.get(Record.FLD_SIGNATURE) : null;
+    return (null == signature) || isWanted(signature.asText());
+  }
+
+  /** A {@link RecordSource} that decodes a record's tree from a {@link ModelSnapshot} */
+  private class SnapshotRecordSource implements RecordSource {
+    private final ModelSnapshot snapshot;
+    private final int entry;
+
+    private SnapshotRecordSource(@NotNull ModelSnapshot snapshot, int entry) {
+      this.snapshot = snapshot;
+      this.entry = entry;
+    }
+
+    @Override
+    public @NotNull JsonNode load(@NotNull Record record) {
+      JsonNode node =
+          settle(snapshot.decode(snapshot.getTreeOffset(entry), mapper.getNodeFactory()));
+      nodeCache.admit(record, snapshot.getTreeLength(entry));
+      return node;
     }
   }
 
@@ -102,12 +1134,83 @@ public class ESMJsonParser {
    *
    * @param rec The new {@link Record} to register
    */
-  private void registerRecord(@NotNull Record rec) {
+  private synchronized void registerRecord(@NotNull Record rec) {
+    if (null != linkGraph && null != recordsByFormId.get(rec.getFormId())) {
+      // The record replaces one that may have been linked to
+      dropLinks();
+    }
     recordsByFormId.put(rec.getFormId(), rec);
     recordsByEditorId.put(rec.getEditorId(), rec);
     List<Record> records =
         recordsBySignature.computeIfAbsent(rec.getSignature(), k -> new ArrayList<>());
     records.add(rec);
+
+    Consumer<Record> listener = registrationListener;
+    if (null != listener) {
+      listener.accept(rec);
+    }
+  }
+
+  /**
+   * Sets a listener that is told about each record as soon as it has been registered, which allows
+   * records to be consumed while the dumps are still being loaded. The listener is called with this
+   * parser locked, so it sees a consistent data model and its lookups cannot race with later
+   * registrations, but it holds up loading for as long as it runs. Records that are loaded from a
+   * snapshot, or into a {@link RecordLayer}, are not registered and so are not seen.
+   *
+   * @param listener The listener, or {@code null} to remove it
+   */
+  public void setRegistrationListener(@Nullable Consumer<Record> listener) {
+    this.registrationListener = listener;
+  }
+
+  /**
+   * Runs an action, collecting the FormID's that {@link #findRecordByFormId(String, Class)} fails
+   * to find on this thread while it runs. This tells a consumer of partially loaded data which
+   * records it is still waiting for (see {@link #setRegistrationListener(Consumer)}).
+   *
+   * @param missing Where to add the FormID's that could not be found
+   * @param action The action to run
+   * @param <T> The type of the action's result
+   * @return The action's result
+   */
+  public <T> T trackMissingFormIds(@NotNull Set<String> missing, @NotNull Supplier<T> action) {
+    Set<String> outer = missingFormIds.get();
+    missingFormIds.set(missing);
+    try {
+      return action.get();
+    } finally {
+      missingFormIds.set(outer);
+    }
+  }
+
+  /**
+   * @return A copy of the registered {@link Record}'s, by signature
+   */
+  synchronized @NotNull Map<String, List<Record>> getGroups() {
+    Map<String, List<Record>> groups = new TreeMap<>();
+    recordsBySignature.forEach((sig, records) -> groups.put(sig, new ArrayList<>(records)));
+    return groups;
+  }
+
+  /**
+   * @return The records of each signature as the current load order sees them: the parsed records
+   *     that no plugin overrides, followed by the winning override of every record in the plugin
+   *     layers (see {@link #getGroup(Class)})
+   */
+  private synchronized @NotNull Map<String, List<Record>> getEffectiveGroups() {
+    LoadOrder view = loadOrder;
+    if (view.isEmpty()) {
+      return getGroups();
+    }
+    Set<String> signatures = new TreeSet<>(recordsBySignature.keySet());
+    signatures.addAll(view.getSignatures());
+    Map<String, List<Record>> groups = new TreeMap<>();
+    for (String sig : signatures) {
+      List<Record> records = recordsBySignature.getOrDefault(sig, Collections.emptyList());
+      groups.put(sig, view.getGroup(sig, records));
+    }
+    return groups;
   }
 
   /**
@@ -121,7 +1224,17 @@ public class ESMJsonParser {
     ESMGroup group =
         Assert.assertNotNull(
             clazz.getAnnotation(ESMGroup.class), "class must have an @ESMGroup annotation");
-    return recordsBySignature.computeIfAbsent(group.value(), g -> Collections.emptyList());
+    if (!attached.isEmpty()) {
+      materializeGroup(group.value());
+    }
+    List<Record> records = recordsBySignature.getOrDefault(group.value(), Collections.emptyList());
+    LoadOrder view = loadOrder;
+    if (view.isEmpty()) {
+      return records;
+    }
+
+    // The parsed records lie beneath the plugin layers, unless a plugin overrides them
+    return view.getGroup(group.value(), records);
   }
 
   /**
@@ -136,7 +1249,202 @@ public class ESMJsonParser {
    */
   public <T extends Record> @Nullable T findRecordByFormId(
       @NotNull String formId, @NotNull Class<T> clazz) {
-    return Util.cast(recordsByFormId.get(formId), clazz);
+    long id = Util.parseFormId(formId);
+    return Util.cast((id >= 0) ? findByFormId((int) id, formId) : findByFormId(formId), clazz);
+  }
+
+  /**
+   * Finds a {@link Record} by the 32 bit value of its FormID (see {@link
+   * Util#parseFormId(CharSequence)}), without allocating or hashing any strings
+   *
+   * @param formId The FormID for the record of interest
+   * @param clazz The expected {@link Class} of the record, or {@code Record.class} for any type of
+   *     record
+   * @param <T> The expected class of the record
+   * @return The {@link Record} with the indicated FormID, or {@code null} if there is no such
+   *     record
+   */
+  public <T extends Record> @Nullable T findRecordByFormId(int formId, @NotNull Class<T> clazz) {
+    return Util.cast(findByFormId(formId, null), clazz);
+  }
+
+  /**
+   * Runs the link phase (see {@link LinkGraph}): every FormID held by the records that the current
+   * load order sees (see {@link #getGroup(Class)}) is resolved once, in parallel, and the resolved
+   * records are attached to the records that refer to them, for their accessors to follow without
+   * further lookups. This should be run once loading is complete, and again after the load order
+   * changes or a record is replaced, as the graph is then dropped.
+   * Any attached dumps (see {@link #attach(String, Holder)}) are fully materialized first, as the
+   * registries are read without locking while the references are resolved.
+   *
+   * @param threads The number of threads to resolve the references with
+   * @return The graph, which also reports the references that don't resolve
+   */
+  public @NotNull LinkGraph link(int threads) {
+    dropLinks();
+    materializeAttached();
+    LinkGraph graph = LinkGraph.build(this, getEffectiveGroups(), threads);
+    linkGraph = graph;
+    return graph;
+  }
+
+  /**
+   * @return The graph built by the last {@link #link(int)}, or {@code null} if there is none or it
+   *     is no longer current
+   */
+  public @Nullable LinkGraph getLinkGraph() {
+    return linkGraph;
+  }
+
+  private void dropLinks() {
+    LinkGraph graph = linkGraph;
+    if (null != graph) {
+      graph.invalidate();
+      linkGraph = null;
+    }
+  }
+
+  /**
+   * Finds the records that refer to a FormID, through the reverse index of the link phase (see
+   * {@link LinkGraph#getReferrers(int)}), without scanning any records. The records must have been
+   * linked by {@link #link(int)} since the load order last changed, or a record was last replaced.
+   *
+   * @param formId The FormID of interest
+   * @return The records that refer to the FormID, each with the field that holds the reference
+   */
+  public @NotNull List<LinkGraph.Referrer> findReferrers(int formId) {
+    LinkGraph graph =
+        Assert.assertNotNull(
+            linkGraph, "The records are not linked; link() must be run before finding referrers");
+    return graph.getReferrers(formId);
+  }
+
+  /**
+   * Finds the records that refer to a FormID (see {@link #findReferrers(int)})
+   *
+   * @param formId The FormID of interest, as 8 hex digits
+   * @return The records that refer to the FormID, each with the field that holds the reference
+   */
+  public @NotNull List<LinkGraph.Referrer> findReferrers(@NotNull String formId) {
+    long id = Util.parseFormId(formId);
+    return (id >= 0) ? findReferrers((int) id) : Collections.emptyList();
+  }
+
+  /**
+   * Finds the records of one type that refer to another record, such as the COBJ's that create a
+   * GBFM, or the WEAP's that use an AMMO (see {@link #findReferrers(int)})
+   *
+   * @param target The record of interest
+   * @param clazz The {@link Class} of the referring records
+   * @param <T> The class of the referring records
+   * @return Each record of the class that refers to the target, once, in the order of the index
+   */
+  public <T extends Record> @NotNull List<T> findReferringRecords(
+      @NotNull Record target, @NotNull Class<T> clazz) {
+    List<T> records = new ArrayList<>();
+    for (LinkGraph.Referrer referrer : findReferrers(target.getFormId())) {
+      T rec = Util.cast(referrer.getSource(), clazz);
+      if (null != rec && (records.isEmpty() || rec != records.get(records.size() - 1))) {
+        records.add(rec);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Follows a reference held by a record. If the record has been linked (see {@link #link(int)}),
+   * the referenced record is taken straight from the edge of the field that holds it, without
+   * parsing the reference; otherwise, or if the reference is dangling, it is looked up as by {@link
+   * #findRecordByReference(String, Class)}.
+   *
+   * @param source The record that holds the reference
+   * @param field The field that holds the reference (see {@link LinkGraph#field(String...)})
+   * @param reference A <i>Decorated Form ID</i>, or a raw FormID, exactly as the field holds it
+   * @param clazz The expected {@link Class} of the referenced record, or {@code Record.class} for
+   *     any type of record
+   * @param <T> The expected class of the referenced record
+   * @return The referenced record, or {@code null} if there is no such record
+   */
+  public <T extends Record> @Nullable T findLinkedRecord(
+      @NotNull Record source,
+      @NotNull LinkGraph.Field field,
+      @NotNull String reference,
+      @NotNull Class<T> clazz) {
+    LinkGraph.Links links = source.getLinks();
+    if (null != links && links.isCurrent()) {
+      int idx = links.indexOf(field, reference);
+      Record target = (idx >= 0) ? links.getTarget(idx) : null;
+      if (null != target) {
+        return Util.cast(target, clazz);
+      }
+    }
+    return findRecordByReference(reference, clazz);
+  }
+
+  /**
+   * Finds the {@link Record} that a reference value refers to. The FormID is parsed directly out of
+   * the reference, so a decorated reference costs no more to resolve than a raw FormID.
+   *
+   * @param reference A <i>Decorated Form ID</i> (see {@link Util#toRaw(String)}), or a raw FormID
+   * @param clazz The expected {@link Class} of the record, or {@code Record.class} for any type of
+   *     record
+   * @param <T> The expected class of the record
+   * @return The {@link Record} that is referred to, or {@code null} if there is no such record
+   */
+  public <T extends Record> @Nullable T findRecordByReference(
+      @NotNull String reference, @NotNull Class<T> clazz) {
+    long id = Util.parseReference(reference);
+    if (id >= 0) {
+      return findRecordByFormId((int) id, clazz);
+    }
+    return findRecordByFormId(
+        Util.isDecorated(reference) ? Util.toRaw(reference) : reference, clazz);
+  }
+
+  /**
+   * @param id The FormID of interest
+   * @param formId The text of the FormID, or {@code null} to format it only if it is needed
+   * @return The {@link Record} with the FormID, or {@code null} if there is no such record
+   */
+  private @Nullable Record findByFormId(int id, @Nullable String formId) {
+    LoadOrder view = loadOrder;
+    Record rec = view.isEmpty() ? null : view.findByFormId(id);
+    if (null == rec) {
+      rec = recordsByFormId.get(id);
+    }
+    if (null == rec && (!attached.isEmpty() || null != missingFormIds.get())) {
+      rec = findMissing((null != formId) ? formId : Util.formatFormId(id));
+    }
+    return rec;
+  }
+
+  /**
+   * @param formId The text of a FormID that is not 8 hex digits
+   * @return The {@link Record} registered with exactly this FormID, or {@code null} if none is
+   */
+  private @Nullable Record findByFormId(@NotNull String formId) {
+    LoadOrder view = loadOrder;
+    Record rec = view.isEmpty() ? null : view.findByFormId(formId);
+    if (null == rec) {
+      rec = recordsByFormId.get(formId);
+    }
+    return (null != rec) ? rec : findMissing(formId);
+  }
+
+  /**
+   * @param formId A FormID that the registered records and the plugin layers don't have
+   * @return The record materialized from an attached dump, if any of them has it; otherwise the
+   *     FormID is noted as missing (see {@link #trackMissingFormIds(Set, Supplier)})
+   */
+  private @Nullable Record findMissing(@NotNull String formId) {
+    Record rec = attached.isEmpty() ? null : materialize(index -> index.findByFormId(formId));
+    if (null == rec) {
+      Set<String> missing = missingFormIds.get();
+      if (null != missing) {
+        missing.add(formId);
+      }
+    }
+    return rec;
   }
 
   /**
@@ -151,6 +1459,14 @@ public class ESMJsonParser {
    */
   public <T extends Record> @Nullable T findRecordByEditorId(
       @NotNull String editorId, @NotNull Class<T> clazz) {
-    return Util.cast(recordsByEditorId.get(editorId), clazz);
+    LoadOrder view = loadOrder;
+    Record rec = view.isEmpty() ? null : view.findByEditorId(editorId);
+    if (null == rec) {
+      rec = recordsByEditorId.get(editorId);
+    }
+    if (null == rec && !attached.isEmpty()) {
+      rec = materialize(index -> index.findByEditorId(editorId));
+    }
+    return Util.cast(rec, clazz);
   }
 }
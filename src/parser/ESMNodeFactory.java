@@ -2,15 +2,28 @@ package parser;
 
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 
 /**
  * Overrides the standard {@link JsonNodeFactory} with our custom node factory that uses {@link
  * ESMObjectNode} instead of the standard {@link ObjectNode}. this allows the JSON parser to handle
  * the duplicate property keys emitted by the "serialize-command-json" xEdit script.
  *
+ * <p>Each factory also has a {@link SymbolTable}, through which the keys of every object it builds
+ * are shared, along with its short text values if {@link #setInternedValues(boolean)}, and it can
+ * reduce decorated references to their raw FormID's as they are parsed.
+ *
  * @author Eric Karlson
  */
 public class ESMNodeFactory extends JsonNodeFactory {
+  private final SymbolTable symbols = new SymbolTable();
+
+  /** Whether short text values are shared through the {@link SymbolTable} */
+  private volatile boolean internedValues = false;
+
+  /** Whether decorated references are reduced to their raw FormID's */
+  private volatile boolean canonicalReferences = false;
+
   /**
    * Return our customized {@link ESMObjectNode} to support the duplicate property names found in
    * the xEdit JSON export
@@ -22,4 +35,40 @@ public class ESMNodeFactory extends JsonNodeFactory {
     // Substitute our specialized ESMObjectNode for the standard ObjectNode
     return new ESMObjectNode(this);
   }
+
+  /**
+   * Reduces a decorated reference to its raw FormID, if {@link #setCanonicalReferences(boolean)},
+   * and shares the {@link TextNode}'s of short text values, if {@link
+   * #setInternedValues(boolean)}
+   *
+   * @param text The text value
+   * @return The {@link TextNode} for the value
+   */
+  @Override
+  public TextNode textNode(String text) {
+    if (canonicalReferences) {
+      text = Util.canonicalReference(text);
+    }
+    return (internedValues && null != text) ? symbols.textNode(text) : super.textNode(text);
+  }
+
+  /**
+   * @param internedValues {@code true} to share the {@link TextNode}'s of short text values, such
+   *     as FormID's and references, which the dumps repeat in many records
+   */
+  public void setInternedValues(boolean internedValues) {
+    this.internedValues = internedValues;
+  }
+
+  /**
+   * @param canonicalReferences {@code true} to replace each text value that is a <i>Decorated Form
+   *     ID</i> with its raw FormID (see {@link Util#canonicalReference(String)})
+   */
+  public void setCanonicalReferences(boolean canonicalReferences) {
+    this.canonicalReferences = canonicalReferences;
+  }
+
+  SymbolTable getSymbolTable() {
+    return symbols;
+  }
 }
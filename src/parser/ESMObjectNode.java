@@ -3,7 +3,12 @@ package parser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import util.ESMKeyValueMap;
 
 /**
@@ -18,12 +23,45 @@ public class ESMObjectNode extends ObjectNode {
   public ESMObjectNode(JsonNodeFactory nc) {
     // Override the internal HashMap to use our custom ESMKeyValueMap which handles
     // insertions of duplicate property keys
-    super(nc, new ESMKeyValueMap());
+    super(nc, new ESMKeyValueMap(keysOf(nc)));
   }
 
   public ESMObjectNode(JsonNodeFactory nc, Map<String, JsonNode> kids) {
     // Override the internal HashMap to use our custom ESMKeyValueMap which handles
     // insertions of duplicate property keys
-    super(nc, new ESMKeyValueMap(kids));
+    super(nc, new ESMKeyValueMap(keysOf(nc), kids));
+  }
+
+  /**
+   * @return Supplies the canonical instance of each key, from the factory's {@link SymbolTable}
+   */
+  private static @NotNull UnaryOperator<String> keysOf(JsonNodeFactory nc) {
+    return (nc instanceof ESMNodeFactory)
+        ? ((ESMNodeFactory) nc).getSymbolTable()
+        : UnaryOperator.identity();
+  }
+
+  /**
+   * @param key The property key
+   * @param n The occurrence of the key of interest (1-based)
+   * @return The value of the n'th occurrence of the key, or {@code null} if there are fewer
+   */
+  public @Nullable JsonNode getOccurrence(@NotNull String key, int n) {
+    return ((ESMKeyValueMap) _children).getOccurrence(key, n);
+  }
+
+  /**
+   * @param key The property key
+   * @return The values of every occurrence of the key, in the order they were parsed
+   */
+  public @NotNull List<JsonNode> occurrences(@NotNull String key) {
+    return ((ESMKeyValueMap) _children).occurrences(key);
+  }
+
+  /**
+   * @return Each distinct property key, regardless of how many times it occurs
+   */
+  public @NotNull Set<String> distinctKeys() {
+    return ((ESMKeyValueMap) _children).distinctKeys();
   }
 }
@@ -0,0 +1,869 @@
+package parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import datamodel.Record;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.jetbrains.annotations.NotNull;
+import util.Assert;
+
+/**
+ * Reads the records of a binary ESM/ESP/ESL plugin directly, without an xEdit JSON export. The
+ * plugin's GRUP's are walked using their size fields, so whole top-level groups whose signature is
+ * not wanted are skipped without being read. The wanted records are then decoded in parallel
+ * (including inflating the zlib compressed ones) into the same tree shape that the xEdit
+ * "serialize-command-json" script produces, and handed to the {@link RecordFactory} in file order.
+ *
+ * <p>Besides the record header, the common strings listed in {@link #SUBRECORD_NAMES} and the
+ * subrecords laid out in {@link #LAYOUTS} are decoded, nested under xEdit's names: the keyword
+ * list, conditions, FormID lists, the components of a GBFM and the members of the structured
+ * subrecords that the data model reads. Members after those the data model reads are left out.
+ * Decoding the rest needs xEdit's record definitions, so any other subrecord is kept as {@code
+ * "<SIG> - Unknown"} holding its bytes in hex, the same as xEdit shows undecoded data. The
+ * layouts follow xEdit's Fallout 4 definitions. They are unverified for Starfield: they have only
+ * been checked against synthetic plugins, never against a game plugin.
+ *
+ * @author Eric Karlson
+ */
+class ESMPluginReader {
+  /** The file suffixes of binary plugins */
+  private static final List<String> PLUGIN_SUFFIXES = List.of(".esm", ".esp", ".esl");
+
+  private static final int HEADER_SIZE = 24;
+  private static final String GRUP = "GRUP";
+  private static final String TES4 = "TES4";
+
+  /** The group type of the top-level groups, whose label is the signature of their records */
+  private static final int TOP_GROUP = 0;
+
+  private static final int FLAG_LOCALIZED = 0x00000080;
+  private static final int FLAG_COMPRESSED = 0x00040000;
+
+  /** How many records to decode per task when decoding in parallel */
+  private static final int RECORDS_PER_TASK = 256;
+
+  private static final Charset CP1252 = Charset.forName("cp1252");
+
+  /** The xEdit names of the subrecords decoded as (possibly localized) strings */
+  private static final Map<String, String> SUBRECORD_NAMES = new HashMap<>();
+
+  static {
+    SUBRECORD_NAMES.put("EDID", Record.FLD_EDITOR_ID);
+    SUBRECORD_NAMES.put("FULL", "FULL - Name");
+    SUBRECORD_NAMES.put("DESC", "DESC - Description");
+    SUBRECORD_NAMES.put("MODL", "MODL - Model FileName");
+  }
+
+  /** The xEdit names of the record flags that are shown in the <i>Record Header</i> */
+  private static final Map<Integer, String> RECORD_FLAG_NAMES = new LinkedHashMap<>();
+
+  static {
+    RECORD_FLAG_NAMES.put(0x00000001, "ESM");
+    RECORD_FLAG_NAMES.put(0x00000020, "Deleted");
+    RECORD_FLAG_NAMES.put(0x00000400, "Persistent");
+    RECORD_FLAG_NAMES.put(0x00000800, "Initially Disabled");
+    RECORD_FLAG_NAMES.put(0x00001000, "Ignored");
+  }
+
+  private static final String FLD_KEYWORDS = "Keywords";
+  private static final String FLD_KEYWORD = "Keyword";
+
+  private static final Member KEYWORD_LIST = array("KWDA - Keywords", idx -> formId(FLD_KEYWORD));
+
+  /** The flag of a condition's type that makes its comparison value a GLOB reference */
+  private static final int CTDA_USE_GLOBAL = 0x04;
+
+  /** The xEdit names of the condition functions the data model reads */
+  private static final Map<Integer, String> CONDITION_FUNCTIONS = new HashMap<>();
+
+  /** The condition functions whose first parameter is a form */
+  private static final Set<Integer> FORM_PARAMETER_FUNCTIONS = Set.of(74, 560);
+
+  static {
+    CONDITION_FUNCTIONS.put(74, "GetGlobalValue");
+    CONDITION_FUNCTIONS.put(80, "GetLevel");
+    CONDITION_FUNCTIONS.put(560, "HasKeyword");
+  }
+
+  /** The xEdit names of what a condition may run on, by value */
+  private static final List<String> CONDITION_RUN_ON =
+      List.of(
+          "Subject",
+          "Target",
+          "Reference",
+          "Combat Target",
+          "Linked Reference",
+          "Quest Alias",
+          "Package Data",
+          "Event Data");
+
+  /**
+   * The xEdit names of the keyword types, by value. The Starfield-only types are taken to follow
+   * Fallout 4's; their values have not been checked against a game plugin.
+   */
+  private static final List<String> KEYWORD_TYPES =
+      List.of(
+          "None",
+          "Component Tech Level",
+          "Attach Point",
+          "Component Property",
+          "Instantiation Filter",
+          "Mod Association",
+          "Sound",
+          "Anim Archetype",
+          "Function Call",
+          "Recipe Filter",
+          "Attraction Type",
+          "Dialogue Subtype",
+          "Quest Target",
+          "Anim Flavor",
+          "Anim Gender",
+          "Anim Face",
+          "Quest Group",
+          "Anim Injured",
+          "Dispel Effect",
+          "Manufacturer",
+          "Ship Module Class");
+
+  /** The xEdit names of the projectile flags, by bit */
+  private static final List<String> PROJECTILE_FLAGS =
+      List.of(
+          "Hitscan",
+          "Explosion",
+          "Explosion - Alt. Trigger",
+          "Muzzle Flash",
+          "Unknown 4",
+          "Can Be Disabled",
+          "Can Be Picked Up",
+          "Supersonic",
+          "Pins Limbs",
+          "Pass Through Small Transparent",
+          "Disable Combat Aim Correction",
+          "Penetrates Geometry",
+          "Continuous Update",
+          "Seeks Target");
+
+  /** The xEdit names of the data of the GBFM components, by component type */
+  private static final Map<String, String> COMPONENT_DATA_NAMES = new HashMap<>();
+
+  static {
+    COMPONENT_DATA_NAMES.put("TESFullName_Component", "Component Data - Fullname");
+    COMPONENT_DATA_NAMES.put("BGSKeywordForm_Component", "Component Data - Keywords");
+    COMPONENT_DATA_NAMES.put("BGSPropertySheet_Component", "Component Data - Property Sheet");
+    COMPONENT_DATA_NAMES.put("BGSFormLinkData_Component", "Component Data - Form Links");
+  }
+
+  /**
+   * The layouts of the structured subrecords that the data model reads, by the signatures of the
+   * record and the subrecord, e.g. {@code "WEAP/WDMG"}
+   */
+  private static final Map<String, Member> LAYOUTS = new HashMap<>();
+
+  static {
+    Member damageTypes =
+        array(
+            "DAMA - Damage Types",
+            idx ->
+                struct(
+                    "Damage Type", formId("Damage Type"), uint32("Value"), formId("Curve Table")));
+    LAYOUTS.put("AMMO/DNAM", struct("DNAM - DNAM", formId("Projectile")));
+    LAYOUTS.put("COBJ/CNAM", formId("CNAM - Created Object"));
+    LAYOUTS.put("COBJ/DATA", uint32("DATA - Value"));
+    LAYOUTS.put("COBJ/FNAM", array("FNAM - Recipe Filters", idx -> formId(FLD_KEYWORD)));
+    LAYOUTS.put(
+        "COBJ/RQPK",
+        array(
+            "RQPK - Required Perks",
+            idx -> struct("Required Perk #" + idx, formId("Perk"), uint8("Rank"))));
+    LAYOUTS.put("EXPL/DAMA", damageTypes);
+    LAYOUTS.put("EXPL/ENAM", struct("ENAM - Data", uint32("Unknown #1"), float32("Unknown #2")));
+    LAYOUTS.put(
+        "GBFM/PRPS",
+        array(
+            "PRPS - Properties",
+            idx ->
+                struct(
+                    "Property", formId("Actor Value"), float32("Value"), formId("Curve Table"))));
+    LAYOUTS.put("KYWD/TNAM", enum32("TNAM - Type", KEYWORD_TYPES));
+    LAYOUTS.put(
+        "PROJ/PROD",
+        struct(
+            "PROD - Data",
+            flags16("Flags", PROJECTILE_FLAGS),
+            uint16("Type"),
+            float32("Gravity"),
+            float32("Speed"),
+            float32("Range"),
+            formId("Light"),
+            formId("Muzzle Flash - Light"),
+            float32("Explosion - Alt. Trigger - Proximity"),
+            float32("Explosion - Alt. Trigger - Timer"),
+            formId("Explosion")));
+    LAYOUTS.put("WEAP/DAMA", damageTypes);
+    LAYOUTS.put(
+        "WEAP/QNAM", struct("QNAM - Power", float32("Recharge time"), float32("Recharge delay")));
+    LAYOUTS.put(
+        "WEAP/WAM2", struct("WAM2 - Ammunition", formId("Ammo Type"), uint32("Ammo Capacity")));
+    LAYOUTS.put(
+        "WEAP/WDMG",
+        struct(
+            "WDMG - Damage",
+            float32("Base Damage"),
+            float32("Range - Min"),
+            float32("Range - Max"),
+            float32("Out of Range Damage Mult"),
+            float32("Crit Damage Mult")));
+    LAYOUTS.put(
+        "WEAP/WFIR", struct("WFIR - Firing", float32("Shots Per Second"), uint8("Burst count")));
+  }
+
+  private final JsonNodeFactory factory;
+  private final Predicate<String> wanted;
+
+  /**
+   * @param factory The {@link JsonNodeFactory} to build the record trees with
+   * @param wanted Tests whether the records with a given signature should be read
+   */
+  ESMPluginReader(@NotNull JsonNodeFactory factory, @NotNull Predicate<String> wanted) {
+    this.factory = factory;
+    this.wanted = wanted;
+  }
+
+  /**
+   * @param filename The name of a file
+   * @return {@code true} if the file is a binary plugin (ESM, ESP or ESL)
+   */
+  static boolean isPlugin(@NotNull String filename) {
+    String name = filename.toLowerCase();
+    return PLUGIN_SUFFIXES.stream().anyMatch(name::endsWith);
+  }
+
+  /** The location of a wanted record in the plugin */
+  private static class RecordRef {
+    private final int offset;
+    private final String signature;
+
+    private RecordRef(int offset, @NotNull String signature) {
+      this.offset = offset;
+      this.signature = signature;
+    }
+  }
+
+  /**
+   * Reads the wanted records of a plugin, handing them to the registrar in file order
+   *
+   * @param filename The name of the plugin file
+   * @param threads The number of threads to decode the records with
+   * @param registrar The {@link ESMJsonParser.ParserRegistrar} to use for {@link Record}
+   *     registration
+   * @param newRegistrar Creates the deferred registrars used when decoding in parallel
+   * @throws IOException If there is some problem reading the plugin
+   */
+  void read(
+      @NotNull String filename,
+      int threads,
+      @NotNull ESMJsonParser.ParserRegistrar registrar,
+      @NotNull Supplier<ESMJsonParser.ParserRegistrar> newRegistrar)
+      throws IOException {
+    Assert.assertTrue(DumpFile.isMappable(filename), "Plugin file is too large: " + filename);
+    ByteBuffer data = DumpFile.open(filename, true).getData().order(ByteOrder.LITTLE_ENDIAN);
+
+    // The plugin header says whether the strings are held in separate string tables
+    Assert.assertTrue(
+        data.limit() >= HEADER_SIZE && TES4.equals(signatureAt(data, 0)),
+        "Not a plugin file: " + filename);
+    boolean localized = 0 != (data.getInt(8) & FLAG_LOCALIZED);
+
+    List<RecordRef> records = new ArrayList<>();
+    walk(data, HEADER_SIZE + data.getInt(4), data.limit(), records);
+
+    if (threads <= 1 || records.size() <= RECORDS_PER_TASK) {
+      decode(data, records, localized, registrar);
+      return;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ESMJsonParser.ParserRegistrar>> tasks = new ArrayList<>();
+      for (int from = 0; from < records.size(); from += RECORDS_PER_TASK) {
+        List<RecordRef> run =
+            records.subList(from, Math.min(records.size(), from + RECORDS_PER_TASK));
+        tasks.add(
+            pool.submit(
+                () -> {
+                  ESMJsonParser.ParserRegistrar taskRegistrar = newRegistrar.get();
+                  decode(data, run, localized, taskRegistrar);
+                  return taskRegistrar;
+                }));
+      }
+
+      // Hand the records on in file order
+      for (Future<ESMJsonParser.ParserRegistrar> task : tasks) {
+        task.get().commit(registrar);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + filename, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Walks a run of records and groups, noting where the wanted records are. Top-level groups of
+   * unwanted records are skipped as a whole, using their size.
+   *
+   * @param data The plugin's contents
+   * @param pos The offset of the first record or group
+   * @param end The offset just past the last record or group
+   * @param records Receives the wanted records, in file order
+   */
+  private void walk(@NotNull ByteBuffer data, int pos, int end, @NotNull List<RecordRef> records) {
+    while (pos < end) {
+      Assert.assertTrue(pos + HEADER_SIZE <= end, "Truncated record header at offset " + pos);
+      String signature = signatureAt(data, pos);
+      int size = data.getInt(pos + 4);
+      if (GRUP.equals(signature)) {
+        // A group's size includes its own header
+        Assert.assertTrue(size >= HEADER_SIZE && pos + size <= end, "Bad GRUP at offset " + pos);
+        boolean skip =
+            TOP_GROUP == data.getInt(pos + 12) && !wanted.test(signatureAt(data, pos + 8));
+        if (!skip) {
+          walk(data, pos + HEADER_SIZE, pos + size, records);
+        }
+        pos += size;
+      } else {
+        // A record's size excludes its header
+        Assert.assertTrue(pos + HEADER_SIZE + size <= end, "Bad record at offset " + pos);
+        if (wanted.test(signature)) {
+          records.add(new RecordRef(pos, signature));
+        }
+        pos += HEADER_SIZE + size;
+      }
+    }
+  }
+
+  /**
+   * Decodes a run of records and hands them to the {@link RecordFactory}
+   *
+   * @param data The plugin's contents
+   * @param records The records to decode
+   * @param localized {@code true} if the plugin's strings are held in string tables
+   * @param registrar The {@link ESMJsonParser.ParserRegistrar} to use for {@link Record}
+   *     registration
+   * @throws IOException If a compressed record cannot be inflated
+   */
+  private void decode(
+      @NotNull ByteBuffer data,
+      @NotNull List<RecordRef> records,
+      boolean localized,
+      @NotNull ESMJsonParser.ParserRegistrar registrar)
+      throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      for (RecordRef ref : records) {
+        RecordFactory.fromESMJsonObject(
+            decodeRecord(data, ref, localized, inflater), registrar);
+      }
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private @NotNull JsonNode decodeRecord(
+      @NotNull ByteBuffer data,
+      @NotNull RecordRef ref,
+      boolean localized,
+      @NotNull Inflater inflater)
+      throws IOException {
+    int size = data.getInt(ref.offset + 4);
+    int flags = data.getInt(ref.offset + 8);
+    int formId = data.getInt(ref.offset + 12);
+
+    ObjectNode record = factory.objectNode();
+    ObjectNode header = factory.objectNode();
+    header.put(Record.FLD_SIGNATURE, ref.signature);
+    ObjectNode recordFlags = factory.objectNode();
+    RECORD_FLAG_NAMES.forEach(
+        (flag, name) -> {
+          if (0 != (flags & flag)) {
+            recordFlags.put(name, "1");
+          }
+        });
+    header.set("Record Flags", recordFlags);
+    header.put(Record.FLD_FORM_ID, String.format("%08X", formId));
+    record.set(Record.FLD_RECORD_HDR, header);
+
+    ByteBuffer fields = slice(data, ref.offset + HEADER_SIZE, size);
+    if (0 != (flags & FLAG_COMPRESSED)) {
+      fields = inflate(fields, inflater, ref);
+    }
+    decodeSubrecords(fields, localized, new Target(ref.signature, record));
+    return record;
+  }
+
+  /**
+   * Inflates the data of a compressed record: the decompressed size followed by a zlib stream
+   *
+   * @return The decompressed subrecords
+   */
+  private static @NotNull ByteBuffer inflate(
+      @NotNull ByteBuffer fields, @NotNull Inflater inflater, @NotNull RecordRef ref)
+      throws IOException {
+    int length = fields.getInt(0);
+    byte[] compressed = new byte[fields.limit() - 4];
+    fields.position(4);
+    fields.get(compressed);
+    byte[] inflated = new byte[length];
+    inflater.reset();
+    inflater.setInput(compressed);
+    try {
+      int done = 0;
+      while (done < length && !inflater.finished()) {
+        int n = inflater.inflate(inflated, done, length - done);
+        if (0 == n && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        done += n;
+      }
+      if (done != length) {
+        throw new IOException(
+            String.format(
+                "Truncated compressed record %s at offset %d", ref.signature, ref.offset));
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(
+          String.format("Corrupt compressed record %s at offset %d", ref.signature, ref.offset), e);
+    }
+    return ByteBuffer.wrap(inflated).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Where the subrecords of a record are decoded to. Some subrecords belong together in xEdit's
+   * tree (a keyword count and its keywords, the conditions, the components of a GBFM), so this
+   * follows which of those the subrecords met so far have started.
+   */
+  private static final class Target {
+    private final String signature;
+    private final ObjectNode record;
+
+    /** The object that the subrecords go in: the record, or the data of a GBFM component */
+    private ObjectNode object;
+
+    private ObjectNode keywords;
+    private ArrayNode conditions;
+    private ArrayNode formIds;
+    private ArrayNode components;
+    private ArrayNode linkedForms;
+    private ObjectNode linkedForm;
+
+    private Target(@NotNull String signature, @NotNull ObjectNode record) {
+      this.signature = signature;
+      this.record = record;
+      this.object = record;
+    }
+
+    /** Makes the subrecords that follow go in another object */
+    private void enter(@NotNull ObjectNode object) {
+      this.object = object;
+      keywords = null;
+      linkedForms = null;
+      linkedForm = null;
+    }
+  }
+
+  /**
+   * Decodes the subrecords of a record into its tree. Repeated subrecords are disambiguated by the
+   * {@link ESMObjectNode}, just as repeated keys in a JSON dump are.
+   */
+  private void decodeSubrecords(
+      @NotNull ByteBuffer fields, boolean localized, @NotNull Target target) {
+    int pos = 0;
+    int end = fields.limit();
+    int nextSize = -1;
+    while (pos + 6 <= end) {
+      String signature = signatureAt(fields, pos);
+      int size = fields.getShort(pos + 4) & 0xFFFF;
+      pos += 6;
+      if (nextSize >= 0) {
+        // The size of this subrecord was given by the preceding XXXX subrecord
+        size = nextSize;
+        nextSize = -1;
+      }
+      Assert.assertTrue(pos + size <= end, "Truncated subrecord " + signature);
+      if ("XXXX".equals(signature)) {
+        nextSize = fields.getInt(pos);
+      } else {
+        ByteBuffer value = slice(fields, pos, size);
+        try {
+          decodeSubrecord(signature, value, localized, target);
+        } catch (IndexOutOfBoundsException e) {
+          // Shorter than its layout, so keep it the way xEdit shows data it cannot decode
+          target.object.put(signature + " - Unknown", hex(value));
+        }
+      }
+      pos += size;
+    }
+  }
+
+  /**
+   * Decodes one subrecord. Everything is read from the value before the tree is changed, so a
+   * value shorter than its layout leaves the tree as it was.
+   *
+   * @throws IndexOutOfBoundsException If the value is shorter than its layout
+   */
+  private void decodeSubrecord(
+      @NotNull String signature,
+      @NotNull ByteBuffer value,
+      boolean localized,
+      @NotNull Target target) {
+    String name = SUBRECORD_NAMES.get(signature);
+    if (null != name) {
+      boolean stringId = localized && !"EDID".equals(signature) && !"MODL".equals(signature);
+      target.object.put(
+          name,
+          (stringId && 4 == value.limit())
+              ? String.format("[%08X]", value.getInt(0))
+              : zstring(value));
+      return;
+    }
+
+    switch (signature) {
+      case "KSIZ":
+        String count = Integer.toUnsignedString(value.getInt(0));
+        target.keywords = target.object.putObject(FLD_KEYWORDS);
+        target.keywords.put("KSIZ - Keyword Count", count);
+        return;
+      case "KWDA":
+        Map.Entry<String, JsonNode> keywords = decode(KEYWORD_LIST, value);
+        if (null == target.keywords) {
+          target.keywords = target.object.putObject(FLD_KEYWORDS);
+        }
+        target.keywords.set(keywords.getKey(), keywords.getValue());
+        target.keywords = null;
+        return;
+      case "CTDA":
+        decodeCondition(value, target);
+        return;
+    }
+
+    if ("FLST".equals(target.signature) && "LNAM".equals(signature)) {
+      String form = formIdText(value.getInt(0));
+      if (null == target.formIds) {
+        target.formIds = target.object.putArray("FormIDs");
+      }
+      target.formIds.addObject().put("LNAM - FormID", form);
+      return;
+    }
+    if ("GBFM".equals(target.signature) && decodeComponent(signature, value, target)) {
+      return;
+    }
+
+    Member layout = LAYOUTS.get(target.signature + "/" + signature);
+    if (null == layout) {
+      target.object.put(signature + " - Unknown", hex(value));
+      return;
+    }
+    Map.Entry<String, JsonNode> field = decode(layout, value);
+    target.object.set(field.getKey(), field.getValue());
+  }
+
+  /**
+   * Decodes a whole subrecord apart from the tree, so that nothing is added if it is too short
+   *
+   * @return The name and value of the decoded subrecord
+   * @throws IndexOutOfBoundsException If the value is shorter than its layout
+   */
+  private @NotNull Map.Entry<String, JsonNode> decode(
+      @NotNull Member layout, @NotNull ByteBuffer value) {
+    ObjectNode decoded = factory.objectNode();
+    layout.decode(value, 0, decoded);
+    return decoded.fields().next();
+  }
+
+  /**
+   * Decodes a condition, using Fallout 4's layout of the CTDA subrecord. Only the functions in
+   * {@link #CONDITION_FUNCTIONS} have their name and first parameter decoded.
+   */
+  private static void decodeCondition(@NotNull ByteBuffer value, @NotNull Target target) {
+    int type = value.get(0) & 0xFF;
+    String comparison =
+        (0 != (type & CTDA_USE_GLOBAL))
+            ? formIdText(value.getInt(4))
+            : decimal(value.getFloat(4));
+    int function = value.getShort(8) & 0xFFFF;
+    int parameter = value.getInt(12);
+    int runOn = value.getInt(20);
+
+    String functionName = CONDITION_FUNCTIONS.get(function);
+    String parameterText;
+    if (null == functionName) {
+      parameterText = Integer.toString(parameter);
+    } else if (FORM_PARAMETER_FUNCTIONS.contains(function)) {
+      parameterText = formIdText(parameter);
+    } else {
+      // xEdit shows a parameter the function does not take as empty
+      parameterText = "null";
+    }
+
+    if (null == target.conditions) {
+      target.conditions = target.object.putArray("Conditions");
+    }
+    ObjectNode ctda = target.conditions.addObject().putObject("Condition").putObject("CTDA - CTDA");
+    ctda.put("Type", bits(type, 8));
+    ctda.put("Comparison Value", comparison);
+    ctda.put("Function", (null != functionName) ? functionName : Integer.toString(function));
+    ctda.put(
+        "Run On",
+        (runOn >= 0 && runOn < CONDITION_RUN_ON.size())
+            ? CONDITION_RUN_ON.get(runOn)
+            : Integer.toString(runOn));
+    ctda.put("Parameter #1", parameterText);
+  }
+
+  /**
+   * Decodes a subrecord that delimits a GBFM component or links forms from within one. A
+   * component's other subrecords go in the component's data object.
+   *
+   * @return {@code true} if the subrecord was one of those
+   */
+  private static boolean decodeComponent(
+      @NotNull String signature, @NotNull ByteBuffer value, @NotNull Target target) {
+    switch (signature) {
+      case "BFCB":
+        String type = zstring(value);
+        if (null == target.components) {
+          target.components = target.record.putArray("Base Form Components");
+        }
+        ObjectNode component = target.components.addObject().putObject("Component");
+        component.put("BFCB - Component Type", type);
+        String data = COMPONENT_DATA_NAMES.getOrDefault(type, "Component Data");
+        target.enter(component.putObject(data));
+        return true;
+      case "BFCE":
+        target.enter(target.record);
+        return true;
+      case "FLKW":
+      case "FLFM":
+        String key = "FLKW".equals(signature) ? "FLKW - Keyword" : "FLFM - Linked Form";
+        String form = formIdText(value.getInt(0));
+        if (null == target.linkedForms) {
+          target.linkedForms = target.object.putArray("Linked Forms");
+        }
+        if (null == target.linkedForm || target.linkedForm.has(key)) {
+          // Each keyword and form pair is a separate element
+          target.linkedForm = target.linkedForms.addObject().putObject("Linked Form");
+        }
+        target.linkedForm.put(key, form);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /** Decodes a value held in a subrecord, at an offset, into an object of the record's tree */
+  @FunctionalInterface
+  private interface Member {
+    /**
+     * @param value The subrecord's data
+     * @param pos The offset of the value
+     * @param parent The object to add the value to
+     * @return The number of bytes the value takes
+     * @throws IndexOutOfBoundsException If the value runs past the end of the subrecord
+     */
+    int decode(@NotNull ByteBuffer value, int pos, @NotNull ObjectNode parent);
+  }
+
+  private static @NotNull Member formId(@NotNull String name) {
+    return (value, pos, parent) -> {
+      parent.put(name, formIdText(value.getInt(pos)));
+      return 4;
+    };
+  }
+
+  private static @NotNull Member uint8(@NotNull String name) {
+    return (value, pos, parent) -> {
+      parent.put(name, Integer.toString(value.get(pos) & 0xFF));
+      return 1;
+    };
+  }
+
+  private static @NotNull Member uint16(@NotNull String name) {
+    return (value, pos, parent) -> {
+      parent.put(name, Integer.toString(value.getShort(pos) & 0xFFFF));
+      return 2;
+    };
+  }
+
+  private static @NotNull Member uint32(@NotNull String name) {
+    return (value, pos, parent) -> {
+      parent.put(name, Integer.toUnsignedString(value.getInt(pos)));
+      return 4;
+    };
+  }
+
+  private static @NotNull Member float32(@NotNull String name) {
+    return (value, pos, parent) -> {
+      parent.put(name, decimal(value.getFloat(pos)));
+      return 4;
+    };
+  }
+
+  /**
+   * @param names The names of the values, in order
+   */
+  private static @NotNull Member enum32(@NotNull String name, @NotNull List<String> names) {
+    return (value, pos, parent) -> {
+      int idx = value.getInt(pos);
+      parent.put(
+          name, (idx >= 0 && idx < names.size()) ? names.get(idx) : Integer.toUnsignedString(idx));
+      return 4;
+    };
+  }
+
+  /**
+   * @param names The names of the flags, by bit
+   * @return A member holding the flags that are set, each as {@code "1"}, as xEdit shows them
+   */
+  private static @NotNull Member flags16(@NotNull String name, @NotNull List<String> names) {
+    return (value, pos, parent) -> {
+      int flags = value.getShort(pos) & 0xFFFF;
+      ObjectNode set = parent.putObject(name);
+      for (int bit = 0; bit < 16; bit++) {
+        if (0 != (flags & (1 << bit))) {
+          set.put((bit < names.size()) ? names.get(bit) : "Unknown " + bit, "1");
+        }
+      }
+      return 2;
+    };
+  }
+
+  /**
+   * @return A member holding other members in turn. A subrecord may end before all of them, in
+   *     which case only those present are decoded.
+   */
+  private static @NotNull Member struct(@NotNull String name, @NotNull Member... members) {
+    return (value, pos, parent) -> {
+      ObjectNode struct = parent.putObject(name);
+      int at = pos;
+      for (Member member : members) {
+        if (at >= value.limit()) {
+          break;
+        }
+        at += member.decode(value, at, struct);
+      }
+      return at - pos;
+    };
+  }
+
+  /**
+   * @param element Gives the member for the element at an index
+   * @return A member holding elements up to the end of the subrecord
+   */
+  private static @NotNull Member array(
+      @NotNull String name, @NotNull IntFunction<Member> element) {
+    return (value, pos, parent) -> {
+      ObjectNode array = parent.putObject(name);
+      int at = pos;
+      for (int idx = 0; at < value.limit(); idx++) {
+        at += element.apply(idx).decode(value, at, array);
+      }
+      return at - pos;
+    };
+  }
+
+  /**
+   * @return The FormID as xEdit writes a reference: 8 hex digits, or {@code "000000"} for none
+   */
+  private static @NotNull String formIdText(int formId) {
+    return (0 == formId) ? "000000" : String.format("%08X", formId);
+  }
+
+  /**
+   * @return The value without trailing zeroes, e.g. {@code "1.5"} or {@code "2000"}
+   */
+  private static @NotNull String decimal(float value) {
+    return Float.isFinite(value)
+        ? new BigDecimal(Float.toString(value)).stripTrailingZeros().toPlainString()
+        : Float.toString(value);
+  }
+
+  /**
+   * @return The low bits of the value, lowest first, e.g. {@code "11000000"} for 3, the way xEdit
+   *     shows flags as a number
+   */
+  private static @NotNull String bits(int value, int count) {
+    StringBuilder sb = new StringBuilder(count);
+    for (int bit = 0; bit < count; bit++) {
+      sb.append((0 != (value & (1 << bit))) ? '1' : '0');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return A view of part of a buffer, in little-endian order
+   */
+  private static @NotNull ByteBuffer slice(@NotNull ByteBuffer data, int offset, int length) {
+    ByteBuffer view = data.duplicate();
+    view.limit(offset + length).position(offset);
+    return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static @NotNull String signatureAt(@NotNull ByteBuffer data, int pos) {
+    byte[] sig = new byte[4];
+    for (int idx = 0; idx < 4; idx++) {
+      sig[idx] = data.get(pos + idx);
+    }
+    return new String(sig, CP1252);
+  }
+
+  /**
+   * @return The zero-terminated cp1252 string held in the value
+   */
+  private static @NotNull String zstring(@NotNull ByteBuffer value) {
+    int len = 0;
+    while (len < value.limit() && 0 != value.get(len)) {
+      len++;
+    }
+    byte[] bytes = new byte[len];
+    value.get(bytes);
+    return new String(bytes, CP1252);
+  }
+
+  /**
+   * @return The bytes of the value in hex, e.g. {@code "00 1A FF"}, the way xEdit shows raw data
+   */
+  private static @NotNull String hex(@NotNull ByteBuffer value) {
+    StringBuilder sb = new StringBuilder(3 * value.limit());
+    for (int idx = 0; idx < value.limit(); idx++) {
+      if (idx > 0) {
+        sb.append(' ');
+      }
+      sb.append(Character.toUpperCase(Character.forDigit((value.get(idx) >> 4) & 0xF, 16)));
+      sb.append(Character.toUpperCase(Character.forDigit(value.get(idx) & 0xF, 16)));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,135 @@
+package parser;
+
+import datamodel.Record;
+import java.util.HashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maps FormID's to {@link Record}'s. A FormID is 32 bits: the plugin-index byte, followed by the
+ * plugin-local ID. FormID's are parsed once into that 32 bit value (see {@link
+ * Util#parseFormId(CharSequence)}), and held in an open-addressing table of primitive keys, so a
+ * lookup neither allocates nor hashes a string. The rare FormID that is not in the canonical 8 hex
+ * digit form is kept by its text instead, so that it is still found exactly as it was registered.
+ *
+ * <p>Like a {@link HashMap}, the table is not thread-safe, and adding a FormID that is already
+ * present replaces its record.
+ *
+ * @author Eric Karlson
+ */
+final class FormIdTable {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Keys, and the records they map to; a {@code null} record marks an empty slot */
+  private int[] keys = new int[INITIAL_CAPACITY];
+
+  private Record[] records = new Record[INITIAL_CAPACITY];
+
+  private int size = 0;
+
+  /** FormID's that aren't 8 hex digits, by their text */
+  private Map<String, Record> other = null;
+
+  /**
+   * @param formId A FormID (see {@link Util#parseFormId(CharSequence)})
+   * @return The record with the FormID, or {@code null} if there is none
+   */
+  @Nullable
+  Record get(int formId) {
+    int mask = records.length - 1;
+    for (int slot = slot(formId, mask); ; slot = (slot + 1) & mask) {
+      Record rec = records[slot];
+      if (null == rec || formId == keys[slot]) {
+        return rec;
+      }
+    }
+  }
+
+  /**
+   * @param formId The text of a FormID
+   * @return The record with the FormID, or {@code null} if there is none
+   */
+  @Nullable
+  Record get(@NotNull String formId) {
+    long id = Util.parseFormId(formId);
+    if (id >= 0) {
+      return get((int) id);
+    }
+    return (null != other) ? other.get(formId) : null;
+  }
+
+  /**
+   * @param formId The text of a FormID
+   * @param rec The record with the FormID
+   */
+  void put(@NotNull String formId, @NotNull Record rec) {
+    long id = Util.parseFormId(formId);
+    if (id >= 0) {
+      put((int) id, rec);
+    } else {
+      if (null == other) {
+        other = new HashMap<>();
+      }
+      other.put(formId, rec);
+    }
+  }
+
+  /**
+   * @param formId A FormID (see {@link Util#parseFormId(CharSequence)})
+   * @param rec The record with the FormID
+   */
+  void put(int formId, @NotNull Record rec) {
+    int mask = records.length - 1;
+    int slot = slot(formId, mask);
+    while (null != records[slot] && formId != keys[slot]) {
+      slot = (slot + 1) & mask;
+    }
+    if (null == records[slot]) {
+      if (3 * (size + 1) > 2 * records.length) {
+        grow();
+        put(formId, rec);
+        return;
+      }
+      size++;
+    }
+    keys[slot] = formId;
+    records[slot] = rec;
+  }
+
+  /**
+   * @return The number of distinct FormID's in the table
+   */
+  int size() {
+    return size + ((null != other) ? other.size() : 0);
+  }
+
+  private void grow() {
+    int[] oldKeys = keys;
+    Record[] oldRecords = records;
+    int[] grownKeys = new int[2 * oldKeys.length];
+    Record[] grownRecords = new Record[2 * oldRecords.length];
+    int mask = grownRecords.length - 1;
+    for (int idx = 0; idx < oldRecords.length; idx++) {
+      if (null != oldRecords[idx]) {
+        int slot = slot(oldKeys[idx], mask);
+        while (null != grownRecords[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        grownKeys[slot] = oldKeys[idx];
+        grownRecords[slot] = oldRecords[idx];
+      }
+    }
+    keys = grownKeys;
+    records = grownRecords;
+  }
+
+  /**
+   * Spreads FormID's across the table. The local ID's of a plugin are mostly sequential, and the
+   * plugin index is in the top byte, so the bits are mixed before taking the slot.
+   */
+  private static int slot(int formId, int mask) {
+    int h = formId * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
@@ -0,0 +1,260 @@
+package parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.ESMKeyValueMap;
+
+/**
+ * A read-only {@link ObjectNode} built by {@link NodeFreezer} once a record's tree has been parsed.
+ * Rather than a hash map per object, the values are held in a single array, and the keys in a
+ * {@link Shape} that is shared by every frozen object with the same keys. Repeated property keys
+ * keep all their occurrences, just as in an {@link ESMObjectNode}, and are presented the same way.
+ * Any attempt to modify the node throws an {@link UnsupportedOperationException}.
+ *
+ * @author Eric Karlson
+ */
+public final class FrozenObjectNode extends ObjectNode {
+  FrozenObjectNode(
+      @NotNull JsonNodeFactory nc, @NotNull Shape shape, @NotNull JsonNode[] values) {
+    super(nc, new Fields(shape, values));
+  }
+
+  /**
+   * @param key The property key
+   * @param n The occurrence of the key of interest (1-based)
+   * @return The value of the n'th occurrence of the key, or {@code null} if there are fewer
+   */
+  public @Nullable JsonNode getOccurrence(@NotNull String key, int n) {
+    return ((Fields) _children).getOccurrence(key, n);
+  }
+
+  /**
+   * @param key The property key
+   * @return The values of every occurrence of the key, in the order they were parsed
+   */
+  public @NotNull List<JsonNode> occurrences(@NotNull String key) {
+    return ((Fields) _children).occurrences(key);
+  }
+
+  /**
+   * @return The shape of this object
+   */
+  @NotNull
+  Shape getShape() {
+    return ((Fields) _children).shape;
+  }
+
+  /**
+   * The distinct keys of a frozen object, and how many times each one occurs. The values of each
+   * key's occurrences are adjacent in the object's value array.
+   */
+  static final class Shape {
+    /** Above this many keys, keys are found through a hash index rather than a linear search */
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    private final String[] keys;
+
+    /** The index of each key's first value; the last element is the number of values */
+    private final int[] starts;
+
+    private final Map<String, Integer> index;
+
+    private final int hash;
+
+    Shape(@NotNull String[] keys, @NotNull int[] starts) {
+      this.keys = keys;
+      this.starts = starts;
+      this.hash = 31 * Arrays.hashCode(keys) + Arrays.hashCode(starts);
+      if (keys.length > LINEAR_SEARCH_LIMIT) {
+        index = new HashMap<>(2 * keys.length);
+        for (int idx = 0; idx < keys.length; idx++) {
+          index.put(keys[idx], idx);
+        }
+      } else {
+        index = null;
+      }
+    }
+
+    /**
+     * @return The index of the key in {@link #keys}, or {@code -1} if the shape doesn't have it
+     */
+    private int indexOf(@NotNull String key) {
+      if (null != index) {
+        Integer idx = index.get(key);
+        return (null != idx) ? idx : -1;
+      }
+      // Keys are usually shared through the SymbolTable, so look for the same instance first
+      for (int idx = 0; idx < keys.length; idx++) {
+        if (keys[idx] == key) {
+          return idx;
+        }
+      }
+      for (int idx = 0; idx < keys.length; idx++) {
+        if (keys[idx].equals(key)) {
+          return idx;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return The number of distinct keys
+     */
+    int getKeyCount() {
+      return keys.length;
+    }
+
+    /**
+     * @return {@code true} if keys are found through a hash index
+     */
+    boolean isIndexed() {
+      return null != index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Shape)) {
+        return false;
+      }
+      Shape other = (Shape) o;
+      return hash == other.hash
+          && Arrays.equals(starts, other.starts)
+          && Arrays.equals(keys, other.keys);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** The read-only property map of a frozen object */
+  private static final class Fields extends AbstractMap<String, JsonNode> {
+    private final Shape shape;
+    private final JsonNode[] values;
+
+    /** The map's hash code, or 0 if it hasn't been computed yet */
+    private int hash = 0;
+
+    private Fields(@NotNull Shape shape, @NotNull JsonNode[] values) {
+      this.shape = shape;
+      this.values = values;
+    }
+
+    private @Nullable JsonNode getOccurrence(@NotNull String key, int n) {
+      int idx = shape.indexOf(key);
+      if (idx < 0 || n < 1 || n > shape.starts[idx + 1] - shape.starts[idx]) {
+        return null;
+      }
+      return values[shape.starts[idx] + n - 1];
+    }
+
+    private @NotNull List<JsonNode> occurrences(@NotNull String key) {
+      int idx = shape.indexOf(key);
+      if (idx < 0) {
+        return Collections.emptyList();
+      }
+      return Collections.unmodifiableList(
+          Arrays.asList(values).subList(shape.starts[idx], shape.starts[idx + 1]));
+    }
+
+    @Override
+    public JsonNode get(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      String name = (String) key;
+      int idx = shape.indexOf(name);
+      if (idx >= 0) {
+        return values[shape.starts[idx]];
+      }
+
+      // Otherwise it may be the fabricated key of a repeated occurrence
+      int n = ESMKeyValueMap.occurrenceOf(name);
+      return (n > 1) ? getOccurrence(ESMKeyValueMap.baseKeyOf(name), n) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return null != get(key);
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof Fields && shape == ((Fields) o).shape) {
+        return Arrays.equals(values, ((Fields) o).values);
+      }
+      return super.equals(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Since the map cannot change, its hash code is only computed once, so that hashing a tree
+     * of frozen nodes from the bottom up costs no more than a single pass over the tree.
+     */
+    @Override
+    public int hashCode() {
+      int h = hash;
+      if (0 == h) {
+        h = super.hashCode();
+        hash = h;
+      }
+      return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>As for {@link ESMKeyValueMap#entrySet()}, the second and later occurrences of a repeated
+     * key appear under their fabricated keys.
+     */
+    @Override
+    public @NotNull Set<Entry<String, JsonNode>> entrySet() {
+      return new AbstractSet<>() {
+        @Override
+        public int size() {
+          return values.length;
+        }
+
+        @Override
+        public @NotNull Iterator<Entry<String, JsonNode>> iterator() {
+          return new Iterator<>() {
+            private int key = 0;
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+              return next < values.length;
+            }
+
+            @Override
+            public Entry<String, JsonNode> next() {
+              if (next >= values.length) {
+                throw new NoSuchElementException();
+              }
+              while (next >= shape.starts[key + 1]) {
+                key++;
+              }
+              int n = next - shape.starts[key] + 1;
+              return new SimpleImmutableEntry<>(
+                  ESMKeyValueMap.generateRepeatedKey(shape.keys[key], n), values[next++]);
+            }
+          };
+        }
+      };
+    }
+  }
+}
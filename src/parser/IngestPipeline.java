@@ -0,0 +1,479 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Assert;
+import util.Holder;
+
+/**
+ * Loads ESM Json Dump Files through a pipeline of four stages, each running on threads of its own
+ * and connected to the next by a bounded queue:
+ *
+ * <ol>
+ *   <li><b>reader</b> - maps each file, or streams and decompresses it if it cannot be mapped,
+ *       finds its record boundaries and hands the records' raw bytes on in batches
+ *   <li><b>tokenizer</b> - decodes each record and builds its tree, or projection (see {@link
+ *       ESMJsonParser#setProjectionBinding(boolean)})
+ *   <li><b>factory</b> - constructs the {@link datamodel.Record}'s via the {@link RecordFactory}
+ *   <li><b>writer</b> - registers the records with the {@link ESMJsonParser}, in file order
+ * </ol>
+ *
+ * A full queue blocks the stage feeding it, so a slow stage throttles the ones before it rather
+ * than letting batches pile up in memory. Each stage keeps statistics (see {@link #getStages()})
+ * of its throughput, of how long it spent waiting for input or blocked on a full output queue,
+ * and of the depth of its input queue, which show which stage is the bottleneck. The number of
+ * tokenizer and factory threads can then be sized independently.
+ *
+ * @author Eric Karlson
+ */
+public class IngestPipeline {
+  /** The number of records handed from one stage to the next at a time */
+  private static final int BATCH_SIZE = 256;
+
+  /** The default capacity of each queue, in batches */
+  private static final int DEFAULT_QUEUE_BATCHES = 16;
+
+  private final int queueBatches;
+  private final Stage reader;
+  private final Stage tokenizer;
+  private final Stage factory;
+  private final Stage writer;
+
+  /** The statistics of one stage of the pipeline, accumulated over every run */
+  public static final class Stage {
+    private final String name;
+    private final int threads;
+
+    /** The capacity of the stage's input queue, or {@code 0} for the reader */
+    private final int queueCapacity;
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong idleNanos = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong depthSamples = new AtomicLong();
+    private final AtomicLong depthTotal = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    private Stage(@NotNull String name, int threads, int queueCapacity) {
+      Assert.assertTrue(threads > 0, "Each stage needs at least one thread");
+      this.name = name;
+      this.threads = threads;
+      this.queueCapacity = queueCapacity;
+    }
+
+    public @NotNull String getName() {
+      return name;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    /**
+     * @return The number of records the stage has handled
+     */
+    public long getRecords() {
+      return records.get();
+    }
+
+    /**
+     * @return The time spent working, summed over the stage's threads
+     */
+    public long getBusyMillis() {
+      return busyNanos.get() / 1_000_000;
+    }
+
+    /**
+     * @return The time spent waiting for input, summed over the stage's threads
+     */
+    public long getIdleMillis() {
+      return idleNanos.get() / 1_000_000;
+    }
+
+    /**
+     * @return The time spent blocked on a full output queue, summed over the stage's threads
+     */
+    public long getBlockedMillis() {
+      return blockedNanos.get() / 1_000_000;
+    }
+
+    /**
+     * @return The number of records per second the stage can handle with all of its threads busy,
+     *     i.e. the most it could sustain if it were never starved or blocked
+     */
+    public double getRecordsPerSecond() {
+      long busy = busyNanos.get();
+      return (0 == busy) ? 0.0 : records.get() * threads * 1e9 / busy;
+    }
+
+    /**
+     * @return The average number of batches in the stage's input queue, sampled each time one is
+     *     taken
+     */
+    public double getAverageQueueDepth() {
+      long samples = depthSamples.get();
+      return (0 == samples) ? 0.0 : (double) depthTotal.get() / samples;
+    }
+
+    public int getMaxQueueDepth() {
+      return maxDepth.get();
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%-9s %7d %9d %9d %9d %10d %12.0f %6.1f/%d/%d",
+          name,
+          threads,
+          getRecords(),
+          getBusyMillis(),
+          getIdleMillis(),
+          getBlockedMillis(),
+          getRecordsPerSecond(),
+          getAverageQueueDepth(),
+          getMaxQueueDepth(),
+          getQueueCapacity());
+    }
+
+    private void sampleDepth(int depth) {
+      depthSamples.incrementAndGet();
+      depthTotal.addAndGet(depth);
+      maxDepth.accumulateAndGet(depth, Math::max);
+    }
+  }
+
+  /**
+   * A run of consecutive records passing through the pipeline. A batch with no payload marks the
+   * end of the input.
+   */
+  private static final class Batch<T> {
+    private final long seq;
+    private final int records;
+    private final T payload;
+
+    private Batch(long seq, int records, @Nullable T payload) {
+      this.seq = seq;
+      this.records = records;
+      this.payload = payload;
+    }
+
+    private boolean isEnd() {
+      return null == payload;
+    }
+  }
+
+  /** The body of a stage's thread */
+  @FunctionalInterface
+  private interface StageBody {
+    void run() throws IOException, InterruptedException;
+  }
+
+  /**
+   * @param tokenizers The number of threads that build record trees
+   * @param factories The number of threads that construct {@link datamodel.Record}'s
+   */
+  public IngestPipeline(int tokenizers, int factories) {
+    this(tokenizers, factories, DEFAULT_QUEUE_BATCHES);
+  }
+
+  /**
+   * @param tokenizers The number of threads that build record trees
+   * @param factories The number of threads that construct {@link datamodel.Record}'s
+   * @param queueBatches The capacity of each queue, in batches of records
+   */
+  public IngestPipeline(int tokenizers, int factories, int queueBatches) {
+    Assert.assertTrue(queueBatches > 0, "Queues must have room for at least one batch");
+    this.queueBatches = queueBatches;
+    this.reader = new Stage("reader", 1, 0);
+    this.tokenizer = new Stage("tokenizer", tokenizers, queueBatches);
+    this.factory = new Stage("factory", factories, queueBatches);
+    this.writer = new Stage("writer", 1, queueBatches);
+  }
+
+  /**
+   * @return The statistics of each stage, in pipeline order
+   */
+  public @NotNull List<Stage> getStages() {
+    return List.of(reader, tokenizer, factory, writer);
+  }
+
+  /**
+   * Prints the statistics of each stage as a table
+   *
+   * @param out Where to print the table
+   */
+  public void printStats(@NotNull PrintStream out) {
+    out.printf(
+        "%-9s %7s %9s %9s %9s %10s %12s %s%n",
+        "Stage",
+        "Threads",
+        "Records",
+        "Busy ms",
+        "Idle ms",
+        "Blocked ms",
+        "Records/sec",
+        "Queue avg/max/cap");
+    getStages().forEach(out::println);
+  }
+
+  /**
+   * Loads the indicated dump files, registering their records with the parser in the order of the
+   * files and of the records within them, just as parsing them one after the other would.
+   *
+   * @param parser The {@link ESMJsonParser} to load the records into
+   * @param filenames The ESM Json Dump Files to load
+   * @param current Set to the name of the file being read
+   * @throws IOException If there is some problem reading one of the files
+   */
+  void run(
+      @NotNull ESMJsonParser parser,
+      @NotNull List<String> filenames,
+      @NotNull Holder<String> current)
+      throws IOException {
+    BlockingQueue<Batch<List<InputStream>>> raw = new ArrayBlockingQueue<>(queueBatches);
+    BlockingQueue<Batch<List<ESMJsonParser.ParsedRecord>>> parsed =
+        new ArrayBlockingQueue<>(queueBatches);
+    BlockingQueue<Batch<ESMJsonParser.ParserRegistrar>> built =
+        new ArrayBlockingQueue<>(queueBatches);
+    AtomicInteger liveTokenizers = new AtomicInteger(tokenizer.threads);
+    AtomicInteger liveFactories = new AtomicInteger(factory.threads);
+
+    List<Thread> threads = new ArrayList<>();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    start(
+        threads,
+        failure,
+        "ingest reader",
+        () -> {
+          Reader fileReader = new Reader(parser, raw);
+          for (String filename : filenames) {
+            current.set(filename);
+            fileReader.read(filename);
+          }
+          fileReader.flush();
+          for (int idx = 0; idx < tokenizer.threads; idx++) {
+            put(reader, raw, new Batch<>(-1, 0, null));
+          }
+        });
+    for (int thread = 0; thread < tokenizer.threads; thread++) {
+      start(
+          threads,
+          failure,
+          "ingest tokenizer " + thread,
+          () -> {
+            for (Batch<List<InputStream>> batch; !(batch = take(tokenizer, raw)).isEnd(); ) {
+              long start = System.nanoTime();
+              List<ESMJsonParser.ParsedRecord> records = new ArrayList<>(batch.records);
+              for (InputStream is : batch.payload) {
+                try (JsonParser jp = parser.getJsonFactory().createParser(is)) {
+                  jp.nextToken();
+                  ESMJsonParser.ParsedRecord record = parser.tokenize(jp);
+                  if (null != record) {
+                    records.add(record);
+                  }
+                }
+              }
+              done(tokenizer, batch, start);
+              put(tokenizer, parsed, new Batch<>(batch.seq, records.size(), records));
+            }
+            if (0 == liveTokenizers.decrementAndGet()) {
+              for (int idx = 0; idx < factory.threads; idx++) {
+                put(tokenizer, parsed, new Batch<>(-1, 0, null));
+              }
+            }
+          });
+    }
+    for (int thread = 0; thread < factory.threads; thread++) {
+      start(
+          threads,
+          failure,
+          "ingest factory " + thread,
+          () -> {
+            for (Batch<List<ESMJsonParser.ParsedRecord>> batch;
+                !(batch = take(factory, parsed)).isEnd(); ) {
+              long start = System.nanoTime();
+              ESMJsonParser.ParserRegistrar registrar = parser.newDeferredRegistrar();
+              batch.payload.forEach(record -> record.create(registrar));
+              done(factory, batch, start);
+              put(factory, built, new Batch<>(batch.seq, batch.records, registrar));
+            }
+            if (0 == liveFactories.decrementAndGet()) {
+              put(factory, built, new Batch<>(-1, 0, null));
+            }
+          });
+    }
+    start(
+        threads,
+        failure,
+        "ingest writer",
+        () -> {
+          // Batches arrive out of order from the concurrent stages, so hold on to them until
+          // every earlier batch has been registered
+          Map<Long, Batch<ESMJsonParser.ParserRegistrar>> pending = new HashMap<>();
+          long next = 0;
+          Batch<ESMJsonParser.ParserRegistrar> batch;
+          while (!(batch = take(writer, built)).isEnd()) {
+            pending.put(batch.seq, batch);
+            for (Batch<ESMJsonParser.ParserRegistrar> ready;
+                null != (ready = pending.remove(next));
+                next++) {
+              long start = System.nanoTime();
+              ready.payload.commit();
+              done(writer, ready, start);
+            }
+          }
+          Assert.assertTrue(pending.isEmpty(), "Ingest pipeline lost a batch of records");
+        });
+
+    threads.forEach(Thread::start);
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      threads.forEach(Thread::interrupt);
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading " + filenames, e);
+    }
+
+    Throwable cause = failure.get();
+    if (cause instanceof IOException) {
+      throw (IOException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (null != cause) {
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * The reader stage: hands the records of each file on in batches. Mappable files are scanned
+   * for their record boundaries, and each record is then read straight from the mapping; any other
+   * file is scanned as it is streamed (see {@link RecordBoundaryScanner#scan(InputStream, boolean,
+   * RecordBoundaryScanner.RecordVisitor)}), and each record is read from the chunk that holds it.
+   * Either way, the records are handed on as undecoded bytes.
+   */
+  private final class Reader {
+    private final ESMJsonParser parser;
+    private final BlockingQueue<Batch<List<InputStream>>> raw;
+    private long seq = 0;
+    private long start = System.nanoTime();
+    private List<InputStream> records = new ArrayList<>(BATCH_SIZE);
+
+    private Reader(
+        @NotNull ESMJsonParser parser, @NotNull BlockingQueue<Batch<List<InputStream>>> raw) {
+      this.parser = parser;
+      this.raw = raw;
+    }
+
+    private void read(@NotNull String filename) throws IOException {
+      if (parser.isMemoryMapped() && DumpFile.isMappable(filename)) {
+        DumpFile dump = DumpFile.open(filename, true);
+        RecordBoundaryScanner.Spans spans = dump.findRecords();
+        for (int idx = 0; idx < spans.size(); idx++) {
+          add(dump.open(spans.getOffset(idx), spans.getLength(idx)));
+        }
+        return;
+      }
+
+      // Only decompressed here; each record is decoded by the tokenizer that parses it
+      boolean lineDelimited = DumpFile.isLineDelimited(filename);
+      try (InputStream is = DumpFile.openStream(filename)) {
+        RecordBoundaryScanner.scan(
+            is, lineDelimited, record -> add(DumpFile.toUtf8(record, lineDelimited)));
+      }
+    }
+
+    private void add(@NotNull InputStream record) throws IOException {
+      records.add(record);
+      if (BATCH_SIZE == records.size()) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      if (records.isEmpty()) {
+        return;
+      }
+      Batch<List<InputStream>> batch = new Batch<>(seq++, records.size(), records);
+      done(reader, batch, start);
+      try {
+        put(reader, raw, batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading", e);
+      }
+      records = new ArrayList<>(BATCH_SIZE);
+      start = System.nanoTime();
+    }
+  }
+
+  /**
+   * Creates one of the stage threads. If any stage fails, every thread is interrupted so that the
+   * whole pipeline shuts down, and the first failure is kept. Interrupting a thread that has not
+   * started yet has no effect, so a thread that starts after a failure stops straight away.
+   */
+  private static void start(
+      @NotNull List<Thread> threads,
+      @NotNull AtomicReference<Throwable> failure,
+      @NotNull String name,
+      @NotNull StageBody body) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                if (null == failure.get()) {
+                  body.run();
+                }
+              } catch (InterruptedException e) {
+                // Another stage has failed
+              } catch (Throwable t) {
+                if (failure.compareAndSet(null, t)) {
+                  threads.forEach(Thread::interrupt);
+                }
+              }
+            },
+            name);
+    thread.setDaemon(true);
+    threads.add(thread);
+  }
+
+  private static <T> @NotNull Batch<T> take(
+      @NotNull Stage stage, @NotNull BlockingQueue<Batch<T>> queue) throws InterruptedException {
+    long start = System.nanoTime();
+    Batch<T> batch = queue.take();
+    stage.idleNanos.addAndGet(System.nanoTime() - start);
+    stage.sampleDepth(queue.size());
+    return batch;
+  }
+
+  private static <T> void put(
+      @NotNull Stage stage, @NotNull BlockingQueue<Batch<T>> queue, @NotNull Batch<T> batch)
+      throws InterruptedException {
+    long start = System.nanoTime();
+    queue.put(batch);
+    stage.blockedNanos.addAndGet(System.nanoTime() - start);
+  }
+
+  private static void done(@NotNull Stage stage, @NotNull Batch<?> batch, long start) {
+    stage.busyNanos.addAndGet(System.nanoTime() - start);
+    stage.records.addAndGet(batch.records);
+  }
+}
@@ -0,0 +1,637 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import datamodel.Record;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.ESMKeyValueMap;
+
+/**
+ * The references between the records registered with an {@link ESMJsonParser}, resolved once after
+ * loading (see {@link ESMJsonParser#link(int)}) rather than each time an accessor follows them.
+ *
+ * <p>The link phase walks the tree of every record, in parallel, and resolves each text value that
+ * holds a FormID, whether raw or decorated. A field is a <i>reference field</i> of a signature if
+ * any record of that signature has a value in it that resolves; the values of reference fields
+ * become the record's edges, and those that don't resolve are reported as dangling. Fields whose
+ * values never resolve are assumed to hold something else that happens to look like a FormID. A
+ * field is identified by the path of property keys from the record's root, such as {@code DNAM -
+ * Data\Projectile}; array indexes, and the occurrence numbers of repeated keys, are left out. The
+ * <i>Record Header</i> is skipped, as is the null reference {@code 00000000}.
+ *
+ * <p>Each record's edges are attached to it as {@link Links}: parallel arrays of the referenced
+ * FormID's, the references as they appear in the tree, the fields that hold them, and the resolved
+ * {@link Record}'s, sorted by field. An accessor names the {@link Field} it reads a reference from
+ * (see {@link #field(String...)}), and finds its edge with a binary search over the record's
+ * fields, then a comparison with each reference held in the field, usually just the one (see
+ * {@link ESMJsonParser#findLinkedRecord(Record, Field, String, Class)}); the reference is never
+ * parsed.
+ *
+ * <p>The sources are the records that the parser's load order sees: the winning override of each
+ * record in the plugin layers (see {@link RecordLayer}), and the parsed records that no plugin
+ * overrides. The graph is a snapshot: it stops being used once the load order changes, or a record
+ * is replaced by another with the same FormID, and {@link ESMJsonParser#link(int)} must be run
+ * again to rebuild it. The fields that records bound to a {@link RecordProjection} hold outside
+ * their trees are not linked; their accessors look those references up as before.
+ *
+ * <p>The graph also holds the reverse index: for each FormID, the {@link Referrer}'s that refer to
+ * it and the fields they refer from (see {@link #getReferrers(int)}). The referrers of all the
+ * FormID's are held in a single array, sorted so those of each FormID are adjacent, and a query
+ * costs a hash lookup, returning a view of its run of the array.
+ *
+ * @author Eric Karlson
+ */
+public final class LinkGraph {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  /** Separates the keys in the path of a field */
+  public static final String PATH_SEPARATOR = "\\";
+
+  /** The records of a signature are walked in chunks of this many records */
+  private static final int CHUNK_SIZE = 256;
+
+  /** An unresolved reference: the record that holds it, and its value */
+  public static final class Dangling {
+    private final Record source;
+    private final String reference;
+
+    private Dangling(@NotNull Record source, @NotNull String reference) {
+      this.source = source;
+      this.reference = reference;
+    }
+
+    public @NotNull Record getSource() {
+      return source;
+    }
+
+    /**
+     * @return The reference exactly as it appears in the record
+     */
+    public @NotNull String getReference() {
+      return reference;
+    }
+
+    @Override
+    public String toString() {
+      return source + " -> " + reference;
+    }
+  }
+
+  /**
+   * A field that may hold references, identified by its path (see {@link #field(String...)}). There
+   * is one instance for each path, shared by every graph, so fields are compared by identity and
+   * ordered by their number.
+   */
+  public static final class Field {
+    private final int number;
+    private final String path;
+
+    private Field(int number, @NotNull String path) {
+      this.number = number;
+      this.path = path;
+    }
+
+    /**
+     * @return The path of property keys from the record's root, joined by {@link #PATH_SEPARATOR}
+     */
+    public @NotNull String getPath() {
+      return path;
+    }
+
+    @Override
+    public String toString() {
+      return path;
+    }
+  }
+
+  /** The edges of one record, sorted by field, and in the order their values appear in its tree */
+  public static final class Links {
+    private final LinkGraph graph;
+    private final int[] formIds;
+    private final String[] references;
+    private final Field[] fields;
+    private final Record[] targets;
+
+    private Links(
+        @NotNull LinkGraph graph,
+        @NotNull int[] formIds,
+        @NotNull String[] references,
+        @NotNull Field[] fields,
+        @NotNull Record[] targets) {
+      this.graph = graph;
+      this.formIds = formIds;
+      this.references = references;
+      this.fields = fields;
+      this.targets = targets;
+    }
+
+    /**
+     * @return {@code true} if the graph that these edges belong to is still in use
+     */
+    public boolean isCurrent() {
+      return graph.current;
+    }
+
+    /**
+     * @return The number of edges
+     */
+    public int size() {
+      return formIds.length;
+    }
+
+    /**
+     * @param field The field that holds the reference
+     * @param reference The reference exactly as it appears in the field
+     * @return The index of the edge, or {@code -1} if the field holds no such reference
+     */
+    public int indexOf(@NotNull Field field, @NotNull String reference) {
+      // Find the first edge of the field, then compare the references that it holds
+      int low = 0;
+      int high = fields.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (fields[mid].number < field.number) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      for (int idx = low; idx < fields.length && field == fields[idx]; idx++) {
+        if (reference.equals(references[idx])) {
+          return idx;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @param idx The index of an edge
+     * @return The FormID that the edge refers to
+     */
+    public int getFormId(int idx) {
+      return formIds[idx];
+    }
+
+    /**
+     * @param idx The index of an edge
+     * @return The field that holds the edge's reference
+     */
+    public @NotNull Field getField(int idx) {
+      return fields[idx];
+    }
+
+    /**
+     * @param idx The index of an edge
+     * @return The record that the edge refers to, or {@code null} if the reference is dangling
+     */
+    public @Nullable Record getTarget(int idx) {
+      return targets[idx];
+    }
+  }
+
+  /** A record that refers to a FormID, and the field that holds the reference */
+  public static final class Referrer {
+    private final Record source;
+    private final String field;
+
+    private Referrer(@NotNull Record source, @NotNull String field) {
+      this.source = source;
+      this.field = field;
+    }
+
+    public @NotNull Record getSource() {
+      return source;
+    }
+
+    /**
+     * @return The path of the field that holds the reference
+     */
+    public @NotNull String getField() {
+      return field;
+    }
+
+    @Override
+    public String toString() {
+      return source + " " + field;
+    }
+  }
+
+  /** A reference found while walking a record's tree, before its field has been classified */
+  private static final class Candidate {
+    private final Field field;
+    private final int formId;
+    private final String reference;
+    private final Record target;
+
+    private Candidate(
+        @NotNull Field field, int formId, @NotNull String reference, @Nullable Record target) {
+      this.field = field;
+      this.formId = formId;
+      this.reference = reference;
+      this.target = target;
+    }
+  }
+
+  /** Every field, by its path, numbered as the walkers and accessors come across them */
+  private static final Map<String, Field> FIELDS = new ConcurrentHashMap<>();
+
+  private static final AtomicInteger FIELD_COUNT = new AtomicInteger();
+
+  /** Cleared by the parser once the graph no longer reflects the data model */
+  private volatile boolean current = true;
+
+  private final Map<String, Map<String, List<Dangling>>> dangling = new TreeMap<>();
+  private int records = 0;
+  private int edges = 0;
+
+  /** Every edge's {@link Referrer}, grouped by the FormID it refers to */
+  private Referrer[] referrers = new Referrer[0];
+
+  /**
+   * An open-addressing table from each referenced FormID to its run of {@link #referrers}: the
+   * FormID's, and the bounds of their runs; a start of {@code -1} marks an empty slot
+   */
+  private int[] referencedIds = new int[0];
+
+  private int[] runStarts = new int[0];
+
+  private int[] runEnds = new int[0];
+
+  private LinkGraph() {}
+
+  /**
+   * Looks up the field that accessors name when they follow a reference. Accessors look their
+   * fields up once, and keep them in constants.
+   *
+   * @param keys The property keys from the record's root to the value, such as {@code DNAM - Data}
+   *     and {@code Projectile}; the occurrence numbers of repeated keys are left out
+   * @return The field
+   */
+  public static @NotNull Field field(@NotNull String... keys) {
+    StringBuilder path = new StringBuilder();
+    for (String key : keys) {
+      if (path.length() > 0) {
+        path.append(PATH_SEPARATOR);
+      }
+      appendKey(path, key);
+    }
+    return fieldOf(path.toString());
+  }
+
+  private static @NotNull Field fieldOf(@NotNull String path) {
+    return FIELDS.computeIfAbsent(path, k -> new Field(FIELD_COUNT.getAndIncrement(), k));
+  }
+
+  /**
+   * Runs the link phase over the records registered with a parser, and attaches the edges of each
+   * record to it
+   *
+   * @param parser The {@link ESMJsonParser} holding the data model
+   * @param groups The records that the parser's load order sees, by signature
+   * @param threads The number of threads to walk the records with
+   * @return The graph
+   */
+  static @NotNull LinkGraph build(
+      @NotNull ESMJsonParser parser, @NotNull Map<String, List<Record>> groups, int threads) {
+    Map<Record, List<Candidate>> candidates = new IdentityHashMap<>();
+
+    List<List<Record>> chunks = new ArrayList<>();
+    for (List<Record> records : groups.values()) {
+      for (int start = 0; start < records.size(); start += CHUNK_SIZE) {
+        chunks.add(records.subList(start, Math.min(start + CHUNK_SIZE, records.size())));
+      }
+    }
+    if (threads <= 1) {
+      for (List<Record> chunk : chunks) {
+        candidates.putAll(walk(parser, chunk));
+      }
+    } else {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<Map<Record, List<Candidate>>>> walked = new ArrayList<>();
+        for (List<Record> chunk : chunks) {
+          walked.add(pool.submit(() -> walk(parser, chunk)));
+        }
+        for (Future<Map<Record, List<Candidate>>> chunk : walked) {
+          candidates.putAll(chunk.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while linking records", e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      } finally {
+        pool.shutdownNow();
+      }
+    }
+
+    LinkGraph graph = new LinkGraph();
+    graph.attach(groups, candidates);
+    graph.indexReferrers(groups);
+    return graph;
+  }
+
+  /**
+   * @return The references found in the trees of a run of records, by record
+   */
+  private static @NotNull Map<Record, List<Candidate>> walk(
+      @NotNull ESMJsonParser parser, @NotNull List<Record> records) {
+    Map<Record, List<Candidate>> found = new IdentityHashMap<>();
+    StringBuilder path = new StringBuilder();
+    for (Record rec : records) {
+      List<Candidate> refs = new ArrayList<>();
+      JsonNode root = rec.getNode();
+      for (Iterator<Map.Entry<String, JsonNode>> iter = root.fields(); iter.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = iter.next();
+        if (!Record.FLD_RECORD_HDR.equals(field.getKey())) {
+          path.setLength(0);
+          appendKey(path, field.getKey());
+          walk(parser, field.getValue(), path, refs);
+        }
+      }
+      found.put(rec, refs);
+    }
+    return found;
+  }
+
+  private static void walk(
+      @NotNull ESMJsonParser parser,
+      @NotNull JsonNode node,
+      @NotNull StringBuilder path,
+      @NotNull List<Candidate> refs) {
+    if (node.isObject()) {
+      // The path is only turned into a string for the values that hold a FormID
+      int length = path.length();
+      for (Iterator<Map.Entry<String, JsonNode>> iter = node.fields(); iter.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = iter.next();
+        appendKey(path.append(PATH_SEPARATOR), field.getKey());
+        walk(parser, field.getValue(), path, refs);
+        path.setLength(length);
+      }
+    } else if (node.isArray()) {
+      for (JsonNode element : node) {
+        walk(parser, element, path, refs);
+      }
+    } else if (node.isTextual()) {
+      String reference = node.textValue();
+      long id = Util.parseReference(reference);
+      if (id > 0) {
+        Field field = fieldOf(path.toString());
+        Record target = parser.findRecordByFormId((int) id, Record.class);
+        refs.add(new Candidate(field, (int) id, reference, target));
+      }
+    }
+  }
+
+  /** Appends a key to a field's path, leaving out its occurrence number if it is repeated */
+  private static void appendKey(@NotNull StringBuilder path, @NotNull String key) {
+    int end = (ESMKeyValueMap.occurrenceOf(key) > 1) ? key.lastIndexOf(' ') : key.length();
+    path.append(key, 0, end);
+  }
+
+  /**
+   * Classifies the fields of each signature, then attaches the edges of its reference fields to
+   * each record, and collects the dangling references
+   */
+  private void attach(
+      @NotNull Map<String, List<Record>> groups,
+      @NotNull Map<Record, List<Candidate>> candidates) {
+    for (Map.Entry<String, List<Record>> group : groups.entrySet()) {
+      BitSet referenceFields = new BitSet();
+      for (Record rec : group.getValue()) {
+        for (Candidate ref : candidates.get(rec)) {
+          if (null != ref.target) {
+            referenceFields.set(ref.field.number);
+          }
+        }
+      }
+
+      Map<String, List<Dangling>> byField = new TreeMap<>();
+      for (Record rec : group.getValue()) {
+        List<Candidate> refs = candidates.get(rec);
+        refs.removeIf(ref -> !referenceFields.get(ref.field.number));
+        refs.sort(Comparator.comparingInt(ref -> ref.field.number));
+        int[] formIds = new int[refs.size()];
+        String[] references = new String[refs.size()];
+        Field[] fields = new Field[refs.size()];
+        Record[] targets = new Record[refs.size()];
+        for (int idx = 0; idx < formIds.length; idx++) {
+          Candidate ref = refs.get(idx);
+          formIds[idx] = ref.formId;
+          references[idx] = ref.reference;
+          fields[idx] = ref.field;
+          targets[idx] = ref.target;
+          if (null == ref.target) {
+            byField
+                .computeIfAbsent(ref.field.path, k -> new ArrayList<>())
+                .add(new Dangling(rec, ref.reference));
+          }
+        }
+        rec.attachLinks(new Links(this, formIds, references, fields, targets));
+        records++;
+        edges += formIds.length;
+      }
+      if (!byField.isEmpty()) {
+        dangling.put(group.getKey(), byField);
+      }
+    }
+  }
+
+  /**
+   * Builds the reverse index: the {@link Referrer}'s of every edge are sorted by the FormID they
+   * refer to, so that those of each FormID form a run, and the runs are entered in a hash table
+   */
+  private void indexReferrers(@NotNull Map<String, List<Record>> groups) {
+    // Each edge is sorted as its FormID (unsigned) in the upper 32 bits, and its number below
+    long[] order = new long[edges];
+    List<Referrer> unsorted = new ArrayList<>(edges);
+    for (List<Record> records : groups.values()) {
+      for (Record rec : records) {
+        Links links = rec.getLinks();
+        for (int idx = 0; idx < links.size(); idx++) {
+          int edge = unsorted.size();
+          order[edge] = (Integer.toUnsignedLong(links.formIds[idx]) << 32) | edge;
+          unsorted.add(new Referrer(rec, links.fields[idx].path));
+        }
+      }
+    }
+    Arrays.sort(order);
+
+    referrers = new Referrer[edges];
+    int runs = 0;
+    for (int idx = 0; idx < edges; idx++) {
+      referrers[idx] = unsorted.get((int) order[idx]);
+      if (0 == idx || (order[idx] >>> 32) != (order[idx - 1] >>> 32)) {
+        runs++;
+      }
+    }
+
+    int capacity = Integer.highestOneBit(Math.max(2 * runs, 1)) << 1;
+    referencedIds = new int[capacity];
+    runStarts = new int[capacity];
+    runEnds = new int[capacity];
+    Arrays.fill(runStarts, -1);
+    int mask = capacity - 1;
+    for (int start = 0, end; start < edges; start = end) {
+      int formId = (int) (order[start] >>> 32);
+      end = start + 1;
+      while (end < edges && (int) (order[end] >>> 32) == formId) {
+        end++;
+      }
+      int slot = slot(formId, mask);
+      while (runStarts[slot] >= 0) {
+        slot = (slot + 1) & mask;
+      }
+      referencedIds[slot] = formId;
+      runStarts[slot] = start;
+      runEnds[slot] = end;
+    }
+  }
+
+  /** Spreads FormID's across the table, as {@link FormIdTable} does */
+  private static int slot(int formId, int mask) {
+    int h = formId * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * @param formId The 32 bit value of a FormID (see {@link Util#parseFormId(CharSequence)})
+   * @return The records that refer to the FormID, each with the field that holds the reference, by
+   *     signature and then in the order the records were loaded; the list is a view of the index,
+   *     and cannot be modified
+   */
+  public @NotNull List<Referrer> getReferrers(int formId) {
+    if (0 == runStarts.length) {
+      return Collections.emptyList();
+    }
+    int mask = runStarts.length - 1;
+    for (int slot = slot(formId, mask); runStarts[slot] >= 0; slot = (slot + 1) & mask) {
+      if (formId == referencedIds[slot]) {
+        return Collections.unmodifiableList(
+            Arrays.asList(referrers).subList(runStarts[slot], runEnds[slot]));
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /** Called by the parser once the graph no longer reflects the data model */
+  void invalidate() {
+    current = false;
+  }
+
+  /**
+   * @return {@code true} if the graph still reflects the data model
+   */
+  public boolean isCurrent() {
+    return current;
+  }
+
+  /**
+   * @return The number of records that were linked
+   */
+  public int getRecordCount() {
+    return records;
+  }
+
+  /**
+   * @return The number of edges, including the dangling ones
+   */
+  public int getEdgeCount() {
+    return edges;
+  }
+
+  /**
+   * @return The number of dangling references
+   */
+  public int getDanglingCount() {
+    int count = 0;
+    for (Map<String, List<Dangling>> byField : dangling.values()) {
+      for (List<Dangling> refs : byField.values()) {
+        count += refs.size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return The dangling references, by the signature of the records that hold them, then by field
+   */
+  public @NotNull Map<String, Map<String, List<Dangling>>> getDangling() {
+    return Collections.unmodifiableMap(dangling);
+  }
+
+  /**
+   * Prints a summary of the dangling references: the number for each signature and field, with a
+   * few examples of each
+   *
+   * @param out Where to print the summary
+   * @param examplesPerField The number of dangling references to list for each field
+   */
+  public void printDangling(@NotNull PrintStream out, int examplesPerField) {
+    out.printf(
+        "Linked %d records: %d references, %d dangling%n",
+        records, edges, getDanglingCount());
+    for (Map.Entry<String, Map<String, List<Dangling>>> sig : dangling.entrySet()) {
+      for (Map.Entry<String, List<Dangling>> field : sig.getValue().entrySet()) {
+        List<Dangling> refs = field.getValue();
+        out.printf("%s %s: %d%n", sig.getKey(), field.getKey(), refs.size());
+        refs.stream().limit(examplesPerField).forEach(ref -> out.println("  " + ref));
+      }
+    }
+  }
+
+  /**
+   * Writes the dangling references as JSON: an array of signatures, each with an array of its
+   * fields, each with the references that it holds but that don't resolve
+   *
+   * @param out Where to write the JSON
+   * @throws IOException If the JSON cannot be written
+   */
+  public void writeJson(@NotNull OutputStream out) throws IOException {
+    try (JsonGenerator gen = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      gen.useDefaultPrettyPrinter();
+      gen.writeStartObject();
+      gen.writeNumberField("records", records);
+      gen.writeNumberField("references", edges);
+      gen.writeNumberField("dangling", getDanglingCount());
+      gen.writeArrayFieldStart("signatures");
+      for (Map.Entry<String, Map<String, List<Dangling>>> sig : dangling.entrySet()) {
+        gen.writeStartObject();
+        gen.writeStringField("signature", sig.getKey());
+        gen.writeArrayFieldStart("fields");
+        for (Map.Entry<String, List<Dangling>> field : sig.getValue().entrySet()) {
+          gen.writeStartObject();
+          gen.writeStringField("field", field.getKey());
+          gen.writeArrayFieldStart("references");
+          for (Dangling ref : field.getValue()) {
+            gen.writeStartObject();
+            gen.writeStringField("source", ref.source.getFormId());
+            gen.writeStringField("editorId", ref.source.getEditorId());
+            gen.writeStringField("reference", ref.reference);
+            gen.writeEndObject();
+          }
+          gen.writeEndArray();
+          gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+      gen.writeEndObject();
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package parser;
+
+import datamodel.Record;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A view of a stack of {@link RecordLayer}'s in load order. Nothing is copied out of the layers: a
+ * FormID is resolved by searching the layers from the last loaded plugin down, and the search stops
+ * at the plugin whose index matches the FormID's plugin-index byte, since no plugin loaded before
+ * that one can hold the record. Only the merged groups are built, on first use, and cached for the
+ * lifetime of the view; so are the groups merged with the parsed records beneath the layers, until
+ * more records of their signature are parsed.
+ *
+ * @author Eric Karlson
+ */
+class LoadOrder {
+  private final List<RecordLayer> layers;
+
+  /** Merged groups built so far, by signature */
+  private final Map<String, List<Record>> groups = new ConcurrentHashMap<>();
+
+  /** Merged groups built so far on top of the parsed records, by signature */
+  private final Map<String, BaseGroup> baseGroups = new ConcurrentHashMap<>();
+
+  /** A group merged on top of the parsed records, and how many of them there were */
+  private static final class BaseGroup {
+    private final int baseSize;
+    private final List<Record> records;
+
+    private BaseGroup(int baseSize, @NotNull List<Record> records) {
+      this.baseSize = baseSize;
+      this.records = records;
+    }
+  }
+
+  /**
+   * @param layers The layers, in load order (masters first)
+   */
+  LoadOrder(@NotNull List<RecordLayer> layers) {
+    this.layers = List.copyOf(layers);
+  }
+
+  @NotNull
+  List<RecordLayer> getLayers() {
+    return layers;
+  }
+
+  boolean isEmpty() {
+    return layers.isEmpty();
+  }
+
+  /**
+   * @param formId The FormID of interest
+   * @return The winning override of the record, or {@code null} if no layer in the view has it
+   */
+  @Nullable
+  Record findByFormId(@NotNull String formId) {
+    long id = Util.parseFormId(formId);
+    if (id >= 0) {
+      return findByFormId((int) id);
+    }
+    for (int idx = layers.size() - 1; idx >= 0; idx--) {
+      Record rec = layers.get(idx).getByFormId(formId);
+      if (null != rec) {
+        return rec;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param formId The FormID of interest (see {@link Util#parseFormId(CharSequence)})
+   * @return The winning override of the record, or {@code null} if no layer in the view has it
+   */
+  @Nullable
+  Record findByFormId(int formId) {
+    int owner = formId >>> 24;
+    for (int idx = layers.size() - 1; idx >= 0; idx--) {
+      RecordLayer layer = layers.get(idx);
+      Record rec = layer.getByFormId(formId);
+      if (null != rec) {
+        return rec;
+      }
+      if (owner == layer.getPluginIndex()) {
+        // The plugin that defines the FormID doesn't have it, and no earlier plugin can
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param editorId The EditorID of interest
+   * @return The record with the EditorID in the last plugin that has one, or {@code null}
+   */
+  @Nullable
+  Record findByEditorId(@NotNull String editorId) {
+    for (int idx = layers.size() - 1; idx >= 0; idx--) {
+      Record rec = layers.get(idx).getByEditorId(editorId);
+      if (null != rec) {
+        return rec;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The signatures of the records in every layer
+   */
+  @NotNull
+  Set<String> getSignatures() {
+    Set<String> signatures = new TreeSet<>();
+    layers.forEach(layer -> signatures.addAll(layer.getSignatures()));
+    return signatures;
+  }
+
+  /**
+   * @param signature The signature of interest
+   * @return The winning override of every record with the signature, in load order
+   */
+  @NotNull
+  List<Record> getGroup(@NotNull String signature) {
+    return groups.computeIfAbsent(
+        signature,
+        sig -> {
+          List<Record> group = new ArrayList<>();
+          for (RecordLayer layer : layers) {
+            for (Record rec : layer.getGroup(sig)) {
+              // Each record appears once, as its winning override, where it was first defined
+              if (rec == layer.getByFormId(rec.getFormId()) && isFirstDefinition(layer, rec)) {
+                Record winner = findByFormId(rec.getFormId());
+                if (null != winner && sig.equals(winner.getSignature())) {
+                  group.add(winner);
+                }
+              }
+            }
+          }
+          return Collections.unmodifiableList(group);
+        });
+  }
+
+  /**
+   * @param signature The signature of interest
+   * @param base The parsed records with the signature, which lie beneath every layer; records are
+   *     only ever appended to it
+   * @return The parsed records that no layer overrides, followed by the winning override of every
+   *     record in the layers, in load order
+   */
+  @NotNull
+  List<Record> getGroup(@NotNull String signature, @NotNull List<Record> base) {
+    int size = base.size();
+    if (0 == size) {
+      return getGroup(signature);
+    }
+    BaseGroup cached = baseGroups.get(signature);
+    if (null != cached && size == cached.baseSize) {
+      return cached.records;
+    }
+
+    List<Record> group = new ArrayList<>();
+    for (int idx = 0; idx < size; idx++) {
+      Record rec = base.get(idx);
+      if (null == findByFormId(rec.getFormId())) {
+        group.add(rec);
+      }
+    }
+    group.addAll(getGroup(signature));
+    List<Record> records = Collections.unmodifiableList(group);
+    baseGroups.put(signature, new BaseGroup(size, records));
+    return records;
+  }
+
+  /**
+   * @return {@code true} if no layer below the given one holds the record's FormID
+   */
+  private boolean isFirstDefinition(@NotNull RecordLayer layer, @NotNull Record rec) {
+    for (RecordLayer below : layers) {
+      if (below == layer) {
+        return true;
+      }
+      if (null != below.getByFormId(rec.getFormId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,418 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import datamodel.Record;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import org.jetbrains.annotations.NotNull;
+import util.ESMKeyValueMap;
+
+/**
+ * Accounts for the heap held by the trees of the records registered with an {@link ESMJsonParser},
+ * by signature and by top-level field. Sizes are estimated from the layout of each object on a
+ * 64-bit JVM with compressed references, and are split three ways:
+ *
+ * <ul>
+ *   <li>Payload - the scalar values: their nodes, strings and characters
+ *   <li>Nodes - the object and array nodes, and the arrays that hold their elements
+ *   <li>Maps - the property maps of the objects: the {@link ESMKeyValueMap}'s, their hash tables,
+ *       entries and occurrence lists, the shapes of frozen objects, and the keys themselves
+ * </ul>
+ *
+ * <p>Objects shared between trees (interned values, shared subtrees, keys) are only counted once,
+ * for the first record and field that reaches them. Records that are not resident (see {@link
+ * ESMJsonParser#setLazyLoading(boolean)}) are counted, but their trees are not loaded. The typed
+ * copies of projected records, and the {@link Record} objects themselves, are not included.
+ *
+ * @author Eric Karlson
+ */
+public class MemoryReport {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  /** The pseudo-field that the root object of each record is counted against */
+  public static final String ROOT_FIELD = "(record)";
+
+  private static final int HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REF = 4;
+
+  /** The heap held by a group of records, or by one of their fields */
+  public static final class Usage {
+    private int records;
+    private int resident;
+    private long payloadBytes;
+    private long nodeBytes;
+    private long mapBytes;
+
+    /**
+     * @return The number of records (for a field, the number that have it)
+     */
+    public int getRecords() {
+      return records;
+    }
+
+    /**
+     * @return The number of records whose tree is held in memory
+     */
+    public int getResident() {
+      return resident;
+    }
+
+    public long getPayloadBytes() {
+      return payloadBytes;
+    }
+
+    public long getNodeBytes() {
+      return nodeBytes;
+    }
+
+    public long getMapBytes() {
+      return mapBytes;
+    }
+
+    public long getTotalBytes() {
+      return payloadBytes + nodeBytes + mapBytes;
+    }
+
+    private void add(@NotNull Usage other) {
+      records += other.records;
+      resident += other.resident;
+      payloadBytes += other.payloadBytes;
+      nodeBytes += other.nodeBytes;
+      mapBytes += other.mapBytes;
+    }
+  }
+
+  private final Map<String, Usage> signatures = new TreeMap<>();
+  private final Map<String, Map<String, Usage>> fields = new HashMap<>();
+
+  /** Everything counted so far, so that shared objects are only counted once */
+  private final Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private MemoryReport() {}
+
+  /**
+   * Walks the trees of every record registered with a parser
+   *
+   * @param parser The {@link ESMJsonParser} holding the data model
+   * @return The report
+   */
+  public static @NotNull MemoryReport of(@NotNull ESMJsonParser parser) {
+    MemoryReport report = new MemoryReport();
+    parser.getGroups().forEach(report::account);
+    return report;
+  }
+
+  /**
+   * @return The heap held by the records of each signature
+   */
+  public @NotNull Map<String, Usage> getSignatures() {
+    return Collections.unmodifiableMap(signatures);
+  }
+
+  /**
+   * @param signature The signature of interest
+   * @return The heap held by each top-level field of the records with the signature, largest first
+   */
+  public @NotNull Map<String, Usage> getFields(@NotNull String signature) {
+    Map<String, Usage> sorted = new LinkedHashMap<>();
+    fields.getOrDefault(signature, Map.of()).entrySet().stream()
+        .sorted((a, b) -> Long.compare(b.getValue().getTotalBytes(), a.getValue().getTotalBytes()))
+        .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+    return sorted;
+  }
+
+  /**
+   * @return The heap held by all the records
+   */
+  public @NotNull Usage getTotal() {
+    Usage total = new Usage();
+    signatures.values().forEach(total::add);
+    return total;
+  }
+
+  private void account(@NotNull String signature, @NotNull List<Record> records) {
+    Usage group = signatures.computeIfAbsent(signature, k -> new Usage());
+    Map<String, Usage> byField = fields.computeIfAbsent(signature, k -> new HashMap<>());
+    for (Record rec : records) {
+      group.records++;
+      if (!rec.isResident()) {
+        continue;
+      }
+      group.resident++;
+
+      JsonNode root = rec.getNode();
+      Usage rootUsage = byField.computeIfAbsent(ROOT_FIELD, k -> new Usage());
+      rootUsage.records++;
+      Set<String> seen = new HashSet<>();
+      if (root.isObject()) {
+        countContainer(root, rootUsage);
+        root.fields()
+            .forEachRemaining(
+                field -> {
+                  String name = field.getKey();
+                  if (ESMKeyValueMap.occurrenceOf(name) > 1) {
+                    name = ESMKeyValueMap.baseKeyOf(name);
+                  }
+                  Usage usage = byField.computeIfAbsent(name, k -> new Usage());
+                  if (seen.add(name)) {
+                    usage.records++;
+                  }
+                  count(field.getValue(), usage);
+                });
+      } else {
+        count(root, rootUsage);
+      }
+    }
+    for (Usage usage : byField.values()) {
+      // Only resident records have their fields walked
+      usage.resident = usage.records;
+      group.payloadBytes += usage.payloadBytes;
+      group.nodeBytes += usage.nodeBytes;
+      group.mapBytes += usage.mapBytes;
+    }
+  }
+
+  /** Counts a subtree, and everything below it */
+  private void count(@NotNull JsonNode node, @NotNull Usage usage) {
+    if (!node.isContainerNode()) {
+      if (counted.add(node)) {
+        usage.payloadBytes += scalarSize(node);
+      }
+      return;
+    }
+    if (countContainer(node, usage)) {
+      for (Iterator<JsonNode> iter = node.elements(); iter.hasNext(); ) {
+        count(iter.next(), usage);
+      }
+    }
+  }
+
+  /**
+   * Counts an object or array node itself, and its property map, but not its values
+   *
+   * @return {@code true} if the node hadn't been counted before
+   */
+  private boolean countContainer(@NotNull JsonNode node, @NotNull Usage usage) {
+    if (!counted.add(node)) {
+      return false;
+    }
+    usage.nodeBytes += align(HEADER + 2 * REF);
+    int size = node.size();
+    if (node instanceof ESMObjectNode) {
+      ESMObjectNode object = (ESMObjectNode) node;
+      Set<String> keys = object.distinctKeys();
+
+      // The ESMKeyValueMap, its HashMap, the table, one entry per distinct key, and the occurrence
+      // lists of repeated keys
+      usage.mapBytes += align(HEADER + 5 * REF) + align(HEADER + 9 * REF);
+      if (!keys.isEmpty()) {
+        usage.mapBytes += arraySize(hashCapacity(keys.size()));
+      }
+      for (String key : keys) {
+        usage.mapBytes += align(HEADER + 4 * REF) + keySize(key);
+        int occurrences = object.occurrences(key).size();
+        if (occurrences > 1) {
+          int capacity = 4;
+          while (capacity < occurrences) {
+            capacity *= 2;
+          }
+          usage.mapBytes += align(HEADER + 2 * REF) + arraySize(capacity);
+        }
+      }
+    } else if (node instanceof FrozenObjectNode) {
+      FrozenObjectNode.Shape shape = ((FrozenObjectNode) node).getShape();
+      usage.mapBytes += align(HEADER + 3 * REF) + arraySize(size);
+      if (counted.add(shape)) {
+        int keys = shape.getKeyCount();
+        usage.mapBytes += align(HEADER + 4 * REF) + arraySize(keys) + arraySize(keys + 1);
+        if (shape.isIndexed()) {
+          // The index's HashMap, table, entries and boxed positions
+          usage.mapBytes += align(HEADER + 9 * REF) + arraySize(hashCapacity(keys));
+          usage.mapBytes += keys * (align(HEADER + 4 * REF) + align(HEADER + 4));
+        }
+        node.fieldNames().forEachRemaining(key -> usage.mapBytes += keySize(key));
+      }
+    } else if (node.isObject()) {
+      usage.mapBytes += align(HEADER + 9 * REF) + arraySize(hashCapacity(size));
+      usage.mapBytes += size * align(HEADER + 4 * REF);
+      node.fieldNames().forEachRemaining(key -> usage.mapBytes += keySize(key));
+    } else {
+      // The list of elements, and its backing array
+      usage.nodeBytes += align(HEADER + 3 * REF) + arraySize(Math.max(size, 10));
+    }
+    return true;
+  }
+
+  /**
+   * @return The size of a key's string, unless it has already been counted
+   */
+  private long keySize(@NotNull String key) {
+    return counted.add(key) ? stringSize(key) : 0;
+  }
+
+  private static long scalarSize(@NotNull JsonNode node) {
+    if (node.isTextual()) {
+      return align(HEADER + REF) + stringSize(node.textValue());
+    }
+    if (node.isInt() || node.isFloat()) {
+      return align(HEADER + 4);
+    }
+    if (node.isLong() || node.isDouble()) {
+      return align(HEADER + 8);
+    }
+    if (node.isShort()) {
+      return align(HEADER + 2);
+    }
+    if (node.isBigInteger()) {
+      return align(HEADER + REF) + bigIntegerSize(node.bigIntegerValue());
+    }
+    if (node.isBigDecimal()) {
+      // A DecimalNode and its BigDecimal, which only holds a BigInteger if it doesn't fit a long
+      BigDecimal value = node.decimalValue();
+      long size = align(HEADER + REF) + align(HEADER + 4 * REF + 8);
+      return (value.unscaledValue().bitLength() < 64)
+          ? size
+          : size + bigIntegerSize(value.unscaledValue());
+    }
+    // Nulls and booleans are singletons
+    return 0;
+  }
+
+  /**
+   * @return The size of a BigInteger and the array of its magnitude
+   */
+  private static long bigIntegerSize(@NotNull BigInteger value) {
+    int words = (value.bitLength() + 31) / 32;
+    return align(HEADER + 6 * 4) + align(ARRAY_HEADER + 4L * words);
+  }
+
+  /**
+   * @return The size of a string and its characters, which are stored one byte each unless any of
+   *     them needs more
+   */
+  private static long stringSize(@NotNull String str) {
+    int bytes = str.length();
+    for (int idx = 0; idx < str.length(); idx++) {
+      if (str.charAt(idx) > 0xFF) {
+        bytes = 2 * str.length();
+        break;
+      }
+    }
+    return align(HEADER + 2 * REF + 1) + align(ARRAY_HEADER + bytes);
+  }
+
+  private static long arraySize(int length) {
+    return align(ARRAY_HEADER + (long) REF * length);
+  }
+
+  /**
+   * @return The table size of a {@link HashMap} that has grown to hold the given number of keys
+   */
+  private static int hashCapacity(int keys) {
+    int capacity = 16;
+    while (keys > capacity * 3 / 4) {
+      capacity *= 2;
+    }
+    return capacity;
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  /**
+   * Prints the report as a table: each signature, largest first, followed by its largest fields
+   *
+   * @param out Where to print the table
+   * @param fieldsPerSignature The number of fields to list for each signature
+   */
+  public void printTable(@NotNull PrintStream out, int fieldsPerSignature) {
+    String format = "%-40s %9s %9s %12s %12s %12s %12s %6s%n";
+    out.printf(
+        format,
+        "Signature / Field",
+        "Records",
+        "Resident",
+        "Payload",
+        "Nodes",
+        "Maps",
+        "Total",
+        "Maps%");
+    List<Map.Entry<String, Usage>> bySize = new ArrayList<>(signatures.entrySet());
+    bySize.sort((a, b) -> Long.compare(b.getValue().getTotalBytes(), a.getValue().getTotalBytes()));
+    for (Map.Entry<String, Usage> sig : bySize) {
+      printRow(out, format, sig.getKey(), sig.getValue());
+      getFields(sig.getKey()).entrySet().stream()
+          .limit(fieldsPerSignature)
+          .forEach(field -> printRow(out, format, "  " + field.getKey(), field.getValue()));
+    }
+    printRow(out, format, "Total", getTotal());
+  }
+
+  private static void printRow(
+      @NotNull PrintStream out, @NotNull String format, @NotNull String name, @NotNull Usage u) {
+    long total = u.getTotalBytes();
+    out.printf(
+        format,
+        (name.length() > 40) ? name.substring(0, 37) + "..." : name,
+        u.records,
+        u.resident,
+        u.payloadBytes,
+        u.nodeBytes,
+        u.mapBytes,
+        total,
+        (0 == total) ? "-" : String.format("%.1f", 100.0 * u.mapBytes / total));
+  }
+
+  /**
+   * Writes the report as JSON: an array of signatures, each with its usage and that of each of its
+   * fields, followed by the totals
+   *
+   * @param out Where to write the JSON
+   * @throws IOException If the JSON cannot be written
+   */
+  public void writeJson(@NotNull OutputStream out) throws IOException {
+    try (JsonGenerator gen = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      gen.useDefaultPrettyPrinter();
+      gen.writeStartObject();
+      gen.writeArrayFieldStart("signatures");
+      for (Map.Entry<String, Usage> sig : signatures.entrySet()) {
+        gen.writeStartObject();
+        gen.writeStringField("signature", sig.getKey());
+        writeUsage(gen, sig.getValue());
+        gen.writeArrayFieldStart("fields");
+        for (Map.Entry<String, Usage> field : getFields(sig.getKey()).entrySet()) {
+          gen.writeStartObject();
+          gen.writeStringField("field", field.getKey());
+          writeUsage(gen, field.getValue());
+          gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+      gen.writeObjectFieldStart("total");
+      writeUsage(gen, getTotal());
+      gen.writeEndObject();
+      gen.writeEndObject();
+    }
+  }
+
+  private static void writeUsage(@NotNull JsonGenerator gen, @NotNull Usage u) throws IOException {
+    gen.writeNumberField("records", u.records);
+    gen.writeNumberField("resident", u.resident);
+    gen.writeNumberField("payloadBytes", u.payloadBytes);
+    gen.writeNumberField("nodeBytes", u.nodeBytes);
+    gen.writeNumberField("mapBytes", u.mapBytes);
+    gen.writeNumberField("totalBytes", u.getTotalBytes());
+  }
+}
@@ -0,0 +1,367 @@
+package parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Assert;
+
+/**
+ * A binary snapshot of a fully loaded data model, written after a load from the ESM Json Dump
+ * Files and memory-mapped on later runs instead of parsing them again. The snapshot records the
+ * size and modification time of every dump it was built from, and is ignored once any of them
+ * changes. Nothing is deserialized when a snapshot is opened: the record table, the string pool and
+ * the record trees are all read in place from the mapping, and a record's tree is only decoded into
+ * {@link JsonNode}'s when the record is used.
+ *
+ * <p>Layout of the snapshot (all integers big-endian):
+ *
+ * <ul>
+ *   <li>Header - magic, version, and the offsets of the source, string and record sections
+ *   <li>Trees - the encoded tree of each record (see {@link TreeCodec}), with each property key
+ *       and text value as a string reference
+ *   <li>Sources - the name, size and modification time of each dump file, followed by the
+ *       signatures the model was restricted to (none if it holds every record)
+ *   <li>Strings - the string count, the offset of each string's UTF-8 bytes, then the bytes
+ *   <li>Records - one per record, grouped by signature in registration order: FormID, EditorID and
+ *       Signature string references, registry flags, and the offset and length of its tree
+ * </ul>
+ *
+ * @author Eric Karlson
+ */
+class ModelSnapshot implements TreeCodec.StringDecoder {
+  /** "ESMSNAP1" */
+  private static final long MAGIC = 0x45534D534E415031L;
+
+  private static final int VERSION = 3;
+  private static final int HEADER_SIZE = 8 + 4 + 3 * 4;
+  private static final int RECORD_SIZE = 6 * 4;
+
+  /** Record flag: the record is the one registered under its FormID */
+  static final int FLAG_FORM_ID = 1;
+
+  /** Record flag: the record is the one registered under its EditorID */
+  static final int FLAG_EDITOR_ID = 2;
+
+  private final ByteBuffer data;
+  private final int stringCount;
+  private final int stringOffsets;
+  private final int stringBytes;
+  private final int recordCount;
+  private final int records;
+
+  /** Strings decoded so far, so that each is only decoded (and held) once */
+  private final String[] strings;
+
+  private ModelSnapshot(@NotNull ByteBuffer data) {
+    this.data = data;
+    int stringSection = data.getInt(16);
+    this.stringCount = data.getInt(stringSection);
+    this.stringOffsets = stringSection + 4;
+    this.stringBytes = stringOffsets + (stringCount + 1) * 4;
+    this.strings = new String[stringCount];
+    int recordSection = data.getInt(20);
+    this.recordCount = data.getInt(recordSection);
+    this.records = recordSection + 4;
+  }
+
+  /**
+   * Opens a snapshot, provided it exists, was built from exactly the given dump files, none of
+   * which have changed since, and holds (at least) all records with the given signatures.
+   *
+   * @param filename The name of the snapshot file
+   * @param sources The dump files the model is loaded from
+   * @param signatures The signatures of the records needed, or an empty set for every record
+   * @return The snapshot, or {@code null} if it is missing or out of date
+   * @throws IOException If the snapshot cannot be mapped
+   */
+  static @Nullable ModelSnapshot open(
+      @NotNull String filename, @NotNull List<String> sources, @NotNull Set<String> signatures)
+      throws IOException {
+    Path path = Paths.get(filename);
+    if (!Files.isRegularFile(path) || Files.size(path) > Integer.MAX_VALUE) {
+      return null;
+    }
+    ByteBuffer data;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (data.limit() < HEADER_SIZE || MAGIC != data.getLong(0) || VERSION != data.getInt(8)) {
+      return null;
+    }
+
+    ModelSnapshot snapshot = new ModelSnapshot(data);
+    return snapshot.isCurrent(sources, signatures) ? snapshot : null;
+  }
+
+  /**
+   * @param sources The dump files the model is loaded from
+   * @param signatures The signatures of the records needed, or an empty set for every record
+   * @return {@code true} if the snapshot was built from exactly these files, as they are now, and
+   *     holds the records needed
+   */
+  private boolean isCurrent(@NotNull List<String> sources, @NotNull Set<String> signatures) {
+    int pos = data.getInt(12);
+    if (sources.size() != data.getInt(pos)) {
+      return false;
+    }
+    pos += 4;
+    for (String source : sources) {
+      File file = new File(source);
+      if (!file.getAbsolutePath().equals(getString(data.getInt(pos)))
+          || file.length() != data.getLong(pos + 4)
+          || file.lastModified() != data.getLong(pos + 12)) {
+        return false;
+      }
+      pos += 4 + 8 + 8;
+    }
+
+    int cnt = data.getInt(pos);
+    Set<String> held = new HashSet<>();
+    for (int idx = 0; idx < cnt; idx++) {
+      held.add(getString(data.getInt(pos + 4 + idx * 4)));
+    }
+    return held.isEmpty() || (!signatures.isEmpty() && held.containsAll(signatures));
+  }
+
+  /** Where each record's tree was written, and how it is registered */
+  static class Entry {
+    private final String formId;
+    private final String editorId;
+    private final String signature;
+    private final int flags;
+    private final JsonNode node;
+
+    /**
+     * @param formId The record's FormID
+     * @param editorId The record's EditorID
+     * @param signature The record's Signature
+     * @param flags Which registries the record is the registered one for
+     * @param node The record's tree
+     */
+    Entry(
+        @NotNull String formId,
+        @NotNull String editorId,
+        @NotNull String signature,
+        int flags,
+        @NotNull JsonNode node) {
+      this.formId = formId;
+      this.editorId = editorId;
+      this.signature = signature;
+      this.flags = flags;
+      this.node = node;
+    }
+  }
+
+  /**
+   * Writes a snapshot. The snapshot is written to a temporary file first, and only moved into place
+   * once complete, so that an interrupted write never leaves a corrupt snapshot behind.
+   *
+   * @param filename The name of the snapshot file
+   * @param sources The dump files the model was loaded from
+   * @param signatures The signatures the model was restricted to, or an empty set for none
+   * @param entries The records of the model, grouped by signature in registration order
+   * @throws IOException If the snapshot cannot be written
+   */
+  static void write(
+      @NotNull String filename,
+      @NotNull List<String> sources,
+      @NotNull Set<String> signatures,
+      @NotNull Iterator<Entry> entries)
+      throws IOException {
+    Path path = Paths.get(filename).toAbsolutePath();
+    Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try {
+      Writer writer = new Writer();
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        writer.write(out, sources, signatures, entries);
+        out.flush();
+
+        // Now that the sections have been laid out, go back and fill in the header
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC).putInt(VERSION);
+        header.putInt(writer.sourceSection).putInt(writer.stringSection);
+        header.putInt(writer.recordSection).flip();
+        channel.write(header, 0);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /** Lays out the sections of a snapshot, interning strings along the way */
+  private static class Writer implements TreeCodec.StringEncoder {
+    private final Map<String, Integer> stringRefs = new HashMap<>();
+    private final List<String> stringList = new ArrayList<>();
+    private int sourceSection;
+    private int stringSection;
+    private int recordSection;
+
+    private void write(
+        @NotNull DataOutputStream out,
+        @NotNull List<String> sources,
+        @NotNull Set<String> signatures,
+        @NotNull Iterator<Entry> entries)
+        throws IOException {
+      out.write(new byte[HEADER_SIZE]);
+
+      // The trees go first, noting where each one lands
+      List<int[]> table = new ArrayList<>();
+      while (entries.hasNext()) {
+        Entry entry = entries.next();
+        int offset = out.size();
+        TreeCodec.encode(out, entry.node, this);
+        table.add(
+            new int[] {
+              ref(entry.formId),
+              ref(entry.editorId),
+              ref(entry.signature),
+              entry.flags,
+              offset,
+              out.size() - offset
+            });
+      }
+
+      sourceSection = out.size();
+      out.writeInt(sources.size());
+      for (String source : sources) {
+        File file = new File(source);
+        out.writeInt(ref(file.getAbsolutePath()));
+        out.writeLong(file.length());
+        out.writeLong(file.lastModified());
+      }
+      out.writeInt(signatures.size());
+      for (String signature : signatures) {
+        out.writeInt(ref(signature));
+      }
+
+      stringSection = out.size();
+      List<byte[]> bytes = new ArrayList<>(stringList.size());
+      out.writeInt(stringList.size());
+      int offset = 0;
+      for (String str : stringList) {
+        byte[] utf8 = str.getBytes(StandardCharsets.UTF_8);
+        bytes.add(utf8);
+        out.writeInt(offset);
+        offset += utf8.length;
+      }
+      out.writeInt(offset);
+      for (byte[] utf8 : bytes) {
+        out.write(utf8);
+      }
+
+      recordSection = out.size();
+      out.writeInt(table.size());
+      for (int[] row : table) {
+        for (int value : row) {
+          out.writeInt(value);
+        }
+      }
+      // The stream's count sticks at Integer.MAX_VALUE once it overflows; every offset is an int
+      Assert.assertTrue(out.size() < Integer.MAX_VALUE, "Snapshot is too large");
+    }
+
+    @Override
+    public void writeKey(@NotNull DataOutput out, @NotNull String key) throws IOException {
+      out.writeInt(ref(key));
+    }
+
+    @Override
+    public void writeText(@NotNull DataOutput out, @NotNull String text) throws IOException {
+      out.writeInt(ref(text));
+    }
+
+    private int ref(@NotNull String str) {
+      return stringRefs.computeIfAbsent(
+          str,
+          s -> {
+            stringList.add(s);
+            return stringList.size() - 1;
+          });
+    }
+  }
+
+  /**
+   * @return The number of records in the snapshot
+   */
+  int size() {
+    return recordCount;
+  }
+
+  @NotNull
+  String getFormId(int entry) {
+    return getString(data.getInt(records + entry * RECORD_SIZE));
+  }
+
+  @NotNull
+  String getEditorId(int entry) {
+    return getString(data.getInt(records + entry * RECORD_SIZE + 4));
+  }
+
+  @NotNull
+  String getSignature(int entry) {
+    return getString(data.getInt(records + entry * RECORD_SIZE + 8));
+  }
+
+  int getFlags(int entry) {
+    return data.getInt(records + entry * RECORD_SIZE + 12);
+  }
+
+  int getTreeOffset(int entry) {
+    return data.getInt(records + entry * RECORD_SIZE + 16);
+  }
+
+  int getTreeLength(int entry) {
+    return data.getInt(records + entry * RECORD_SIZE + 20);
+  }
+
+  /**
+   * Decodes a record's tree (see {@link TreeCodec}). Property keys and text values are references
+   * into the string pool.
+   *
+   * @param offset The offset of the tree in the snapshot
+   * @param factory The {@link JsonNodeFactory} to build the tree with
+   * @return The record's tree
+   */
+  @NotNull
+  JsonNode decode(int offset, @NotNull JsonNodeFactory factory) {
+    ByteBuffer in = data.duplicate();
+    in.position(offset);
+    return TreeCodec.decode(in, factory, this);
+  }
+
+  @Override
+  public @NotNull String readKey(@NotNull ByteBuffer in) {
+    return getString(in.getInt());
+  }
+
+  @Override
+  public @NotNull String readText(@NotNull ByteBuffer in) {
+    return getString(in.getInt());
+  }
+
+  private @NotNull String getString(int ref) {
+    String str = strings[ref];
+    if (null == str) {
+      int start = data.getInt(stringOffsets + ref * 4);
+      int end = data.getInt(stringOffsets + ref * 4 + 4);
+      byte[] bytes = new byte[end - start];
+      ByteBuffer utf8 = data.duplicate();
+      utf8.position(stringBytes + start);
+      utf8.get(bytes);
+      str = new String(bytes, StandardCharsets.UTF_8);
+      strings[ref] = str;
+    }
+    return str;
+  }
+}
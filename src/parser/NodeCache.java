@@ -0,0 +1,58 @@
+package parser;
+
+import datamodel.Record;
+import java.util.ArrayDeque;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the lazily loaded {@link Record}'s whose {@link com.fasterxml.jackson.databind.JsonNode}
+ * is currently resident, and evicts them once their combined size goes over a limit. Uses "second
+ * chance" (CLOCK) eviction, so recently used records survive a pass without the cost of keeping a
+ * true LRU order on every access.
+ *
+ * @author Eric Karlson
+ */
+class NodeCache {
+  private final ArrayDeque<Record> resident = new ArrayDeque<>();
+  private final ArrayDeque<Integer> sizes = new ArrayDeque<>();
+
+  /** The limit on the JSON bytes of the resident records, or {@code 0} for no limit */
+  private long limit = 0;
+
+  private long used = 0;
+
+  synchronized void setLimit(long limit) {
+    this.limit = Math.max(0, limit);
+    trim();
+  }
+
+  /**
+   * Notes that a record has just been loaded, evicting others as needed to stay within the limit
+   *
+   * @param record The newly loaded {@link Record}
+   * @param size The size of the record's JSON, in bytes
+   */
+  synchronized void admit(@NotNull Record record, int size) {
+    resident.add(record);
+    sizes.add(size);
+    used += size;
+    trim();
+  }
+
+  private void trim() {
+    if (0 == limit) {
+      return;
+    }
+    while (used > limit && resident.size() > 1) {
+      Record record = resident.poll();
+      int size = sizes.poll();
+      if (record.evictIfIdle()) {
+        used -= size;
+      } else {
+        // Recently used - give it a second chance
+        resident.add(record);
+        sizes.add(size);
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Converts parsed record trees into read-only trees of {@link FrozenObjectNode}'s and fixed-size
+ * {@link ArrayNode}'s, which hold the same values in a fraction of the heap. The key arrays of the
+ * frozen objects are shared through a table of {@link FrozenObjectNode.Shape}'s, so an object costs
+ * little more than its values. Scalar nodes are already immutable, and are kept as they are.
+ *
+ * <p>Optionally, the freezer also <i>hash-conses</i> the trees: each frozen object or array below
+ * a record's root is replaced by the first structurally equal one that it has frozen, so the
+ * subtrees that many records have in common (condition lists, damage types, property sheets and so
+ * on) are only held once. Since the subtrees are frozen from the bottom up, the children of an
+ * object are already shared by the time the object is looked up, so its hash and comparison only
+ * cost a pass over its own values. The shared subtrees are only held weakly (see {@link
+ * WeakInterner}), so a subtree that no tree uses any more, such as one of an evicted lazily loaded
+ * record, is not kept alive by the freezer.
+ *
+ * @author Eric Karlson
+ */
+class NodeFreezer {
+  private final JsonNodeFactory factory;
+
+  /** Every distinct shape seen so far, mapped to itself */
+  private final Map<FrozenObjectNode.Shape, FrozenObjectNode.Shape> shapes =
+      new ConcurrentHashMap<>();
+
+  /** The canonical instance of each distinct subtree, or {@code null} if they aren't shared */
+  private final WeakInterner<JsonNode, JsonNode> subtrees;
+
+  /**
+   * @param factory The {@link JsonNodeFactory} of the frozen nodes
+   * @param shareSubtrees {@code true} to share structurally equal subtrees between trees
+   */
+  NodeFreezer(@NotNull JsonNodeFactory factory, boolean shareSubtrees) {
+    this.factory = factory;
+    this.subtrees = shareSubtrees ? new WeakInterner<>() : null;
+  }
+
+  /**
+   * @param node The root of a parsed tree
+   * @return The frozen copy of the tree; a tree that is already frozen is returned as it is
+   */
+  @NotNull
+  JsonNode freeze(@NotNull JsonNode node) {
+    if (node instanceof FrozenObjectNode) {
+      return node;
+    }
+    // The root itself is unique to its record, so is never worth sharing
+    return freeze(node, false);
+  }
+
+  private @NotNull JsonNode freeze(@NotNull JsonNode node, boolean share) {
+    JsonNode frozen;
+    if (node.isObject()) {
+      frozen = freezeObject(node);
+    } else if (node.isArray()) {
+      JsonNode[] elements = new JsonNode[node.size()];
+      for (int idx = 0; idx < elements.length; idx++) {
+        elements[idx] = freeze(node.get(idx), true);
+      }
+      frozen = new ArrayNode(factory, List.of(elements));
+    } else {
+      return node;
+    }
+
+    if (share && null != subtrees) {
+      JsonNode shared = subtrees.putIfAbsent(frozen, frozen);
+      if (null != shared) {
+        return shared;
+      }
+    }
+    return frozen;
+  }
+
+  private @NotNull JsonNode freezeObject(@NotNull JsonNode node) {
+    Set<String> distinct =
+        (node instanceof ESMObjectNode) ? ((ESMObjectNode) node).distinctKeys() : null;
+    String[] keys = new String[(null != distinct) ? distinct.size() : node.size()];
+    int[] starts = new int[keys.length + 1];
+    JsonNode[] values = new JsonNode[node.size()];
+    int key = 0;
+    int next = 0;
+    if (null != distinct) {
+      ESMObjectNode object = (ESMObjectNode) node;
+      for (String name : distinct) {
+        keys[key] = name;
+        starts[key++] = next;
+        for (JsonNode value : object.occurrences(name)) {
+          values[next++] = freeze(value, true);
+        }
+      }
+    } else {
+      for (Iterator<Map.Entry<String, JsonNode>> iter = node.fields(); iter.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = iter.next();
+        keys[key] = field.getKey();
+        starts[key++] = next;
+        values[next++] = freeze(field.getValue(), true);
+      }
+    }
+    starts[key] = next;
+
+    FrozenObjectNode.Shape shape = new FrozenObjectNode.Shape(keys, starts);
+    FrozenObjectNode.Shape shared = shapes.putIfAbsent(shape, shape);
+    return new FrozenObjectNode(factory, (null != shared) ? shared : shape, values);
+  }
+}
@@ -0,0 +1,188 @@
+package parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import datamodel.Record;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Holds the trees of parsed records outside the Java heap, so that neither the size of the dumps
+ * nor the number of records they hold is limited by the heap, or adds to the cost of garbage
+ * collection. Each tree is encoded as a {@link ModelSnapshot} encodes it (see {@link TreeCodec}),
+ * except that text is stored inline as UTF-8 rather than in a string pool; only the property keys,
+ * of which there are a few hundred, are kept in a table on the heap. The encoded trees are
+ * appended to chunks of a temporary file that are memory-mapped, so the operating system pages them
+ * in and out as needed, and the file is deleted when the JVM exits.
+ *
+ * <p>A stored tree is decoded back into {@link JsonNode}'s by its {@link RecordSource} whenever
+ * its record is used while not resident.
+ *
+ * @author Eric Karlson
+ */
+class OffHeapCorpus implements TreeCodec.StringEncoder, TreeCodec.StringDecoder {
+  private static final int CHUNK_SIZE = 64 << 20;
+
+  private final JsonNodeFactory factory;
+  private final UnaryOperator<JsonNode> settle;
+  private final NodeCache cache;
+  private final FileChannel channel;
+
+  /** Where the next chunk starts in the file */
+  private long fileSize = 0;
+
+  /** The mapped chunk that trees are being appended to; a tree never spans two chunks */
+  private MappedByteBuffer current = null;
+
+  /** Every property key stored so far, indexed by its reference */
+  private volatile String[] keys = new String[0];
+
+  private final Map<String, Integer> keyRefs = new ConcurrentHashMap<>();
+
+  /** Reused to encode each tree before it is copied off the heap */
+  private final ThreadLocal<ByteArrayOutputStream> scratch =
+      ThreadLocal.withInitial(ByteArrayOutputStream::new);
+
+  /**
+   * @param factory The {@link JsonNodeFactory} to decode trees with
+   * @param settle Applied to each tree when it is decoded
+   * @param cache The {@link NodeCache} that is told about each decoded tree
+   * @throws IOException If the temporary file cannot be created
+   */
+  OffHeapCorpus(
+      @NotNull JsonNodeFactory factory,
+      @NotNull UnaryOperator<JsonNode> settle,
+      @NotNull NodeCache cache)
+      throws IOException {
+    this.factory = factory;
+    this.settle = settle;
+    this.cache = cache;
+    Path path = Files.createTempFile("esm-corpus", ".bin");
+    path.toFile().deleteOnExit();
+    channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+  }
+
+  /**
+   * Encodes a record's tree into the corpus
+   *
+   * @param node The record's tree
+   * @return The {@link RecordSource} that decodes the tree
+   */
+  @NotNull
+  RecordSource store(@NotNull JsonNode node) {
+    ByteArrayOutputStream bytes = scratch.get();
+    bytes.reset();
+    try {
+      TreeCodec.encode(new DataOutputStream(bytes), node, this);
+    } catch (IOException e) {
+      // Writing to memory cannot fail
+      throw new RuntimeException(e);
+    }
+    int length = bytes.size();
+
+    ByteBuffer chunk;
+    int offset;
+    synchronized (this) {
+      if (null == current || current.remaining() < length) {
+        current = map(Math.max(CHUNK_SIZE, length));
+      }
+      chunk = current;
+      offset = current.position();
+      current.put(bytes.toByteArray());
+    }
+    return new Source(chunk, offset, length);
+  }
+
+  private @NotNull MappedByteBuffer map(int size) {
+    try {
+      MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+      fileSize += size;
+      return chunk;
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to extend the off-heap corpus", e);
+    }
+  }
+
+  @Override
+  public void writeKey(@NotNull DataOutput out, @NotNull String key) throws IOException {
+    out.writeInt(keyRef(key));
+  }
+
+  @Override
+  public void writeText(@NotNull DataOutput out, @NotNull String text) throws IOException {
+    byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(utf8.length);
+    out.write(utf8);
+  }
+
+  private int keyRef(@NotNull String key) {
+    Integer ref = keyRefs.get(key);
+    if (null != ref) {
+      return ref;
+    }
+    synchronized (keyRefs) {
+      ref = keyRefs.get(key);
+      if (null == ref) {
+        // Publish a new array, so that decoding never needs the lock
+        ref = keys.length;
+        String[] grown = Arrays.copyOf(keys, ref + 1);
+        grown[ref] = key;
+        keys = grown;
+        keyRefs.put(key, ref);
+      }
+      return ref;
+    }
+  }
+
+  @Override
+  public @NotNull String readKey(@NotNull ByteBuffer in) {
+    return keys[in.getInt()];
+  }
+
+  @Override
+  public @NotNull String readText(@NotNull ByteBuffer in) {
+    byte[] utf8 = new byte[in.getInt()];
+    in.get(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  /** A {@link RecordSource} that decodes a record's tree from the corpus */
+  private class Source implements RecordSource {
+    private final ByteBuffer chunk;
+    private final int offset;
+    private final int length;
+
+    private Source(@NotNull ByteBuffer chunk, int offset, int length) {
+      this.chunk = chunk;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public @NotNull JsonNode load(@NotNull Record record) {
+      ByteBuffer in = chunk.duplicate();
+      in.position(offset);
+      JsonNode node = settle.apply(TreeCodec.decode(in, factory, OffHeapCorpus.this));
+      cache.admit(record, length);
+      return node;
+    }
+  }
+}
@@ -0,0 +1,407 @@
+package parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import util.Assert;
+
+/**
+ * Byte-level pre-scanner that locates the top-level records in an ESM Json Dump File without
+ * tokenizing it. Only brace/bracket depth and string escapes are tracked, which is enough to find
+ * where each record object starts and ends. All the structural characters are plain ASCII, so this
+ * works directly on the cp1252 encoded bytes of the dump.
+ *
+ * @author Eric Karlson
+ */
+class RecordBoundaryScanner {
+  /** The size of the chunks a streamed dump is read in, unless a record needs a bigger one */
+  private static final int STREAM_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * The byte ranges of the top-level records discovered by {@link #scan(ByteBuffer)} or {@link
+   * #scanLines(ByteBuffer)}
+   */
+  static class Spans {
+    private int count = 0;
+    private int[] offsets = new int[1024];
+    private int[] lengths = new int[1024];
+
+    private void add(int offset, int length) {
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, 2 * count);
+        lengths = Arrays.copyOf(lengths, 2 * count);
+      }
+      offsets[count] = offset;
+      lengths[count] = length;
+      count++;
+    }
+
+    int size() {
+      return count;
+    }
+
+    int getOffset(int idx) {
+      return offsets[idx];
+    }
+
+    int getLength(int idx) {
+      return lengths[idx];
+    }
+
+    /**
+     * Splits the records into contiguous runs of roughly equal byte size
+     *
+     * @param chunks The desired number of runs
+     * @return The runs, each as a {@code [from, to)} pair of record indices
+     */
+    @NotNull
+    List<int[]> split(int chunks) {
+      List<int[]> result = new ArrayList<>();
+      if (0 == count) {
+        return result;
+      }
+      long total = (long) offsets[count - 1] + lengths[count - 1] - offsets[0];
+      long target = Math.max(1, total / Math.max(1, chunks));
+      int from = 0;
+      long bytes = 0;
+      for (int idx = 0; idx < count; idx++) {
+        bytes += lengths[idx];
+        if (bytes >= target) {
+          result.add(new int[] {from, idx + 1});
+          from = idx + 1;
+          bytes = 0;
+        }
+      }
+      if (from < count) {
+        result.add(new int[] {from, count});
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Locates the value of each property of the dump's top-level object
+   *
+   * @param data The dump file contents, between its position and limit
+   * @return The byte ranges of each record object, in file order
+   */
+  static @NotNull Spans scan(@NotNull ByteBuffer data) {
+    Spans spans = new Spans();
+    int end = data.limit();
+    int pos = skipWhitespace(data, data.position(), end);
+    expect(data, pos++, end, '{');
+    pos = skipWhitespace(data, pos, end);
+    if (pos < end && '}' == data.get(pos)) {
+      return spans;
+    }
+
+    while (true) {
+      // "<FormID>" : { ... }
+      expect(data, pos, end, '"');
+      pos = skipWhitespace(data, complete(skipString(data, pos, end)), end);
+      expect(data, pos++, end, ':');
+      int start = skipWhitespace(data, pos, end);
+      pos = complete(skipValue(data, start, end));
+      spans.add(start, pos - start);
+
+      // Either another record follows, or this is the end of the top-level object
+      pos = skipWhitespace(data, pos, end);
+      Assert.assertTrue(pos < end, "Unexpected end of ESM Dump File");
+      byte sep = data.get(pos++);
+      if ('}' == sep) {
+        return spans;
+      }
+      Assert.assertTrue(',' == sep, "Expected ',' or '}' at offset " + (pos - 1));
+      pos = skipWhitespace(data, pos, end);
+    }
+  }
+
+  /**
+   * Locates the records of a line-delimited dump (see {@link DumpFile#isLineDelimited(String)}),
+   * which is simply one record object per line. JSON strings cannot hold a raw newline, so every
+   * newline is a record boundary. Blank lines are ignored.
+   *
+   * @param data The dump file contents, between its position and limit
+   * @return The byte ranges of each record object, in file order
+   */
+  static @NotNull Spans scanLines(@NotNull ByteBuffer data) {
+    Spans spans = new Spans();
+    int end = data.limit();
+    int pos = data.position();
+    while (pos < end) {
+      int start = skipWhitespace(data, pos, end);
+      pos = start;
+      while (pos < end && '\n' != data.get(pos)) {
+        pos++;
+      }
+      // Trim the line's trailing whitespace (e.g. a CR)
+      int stop = pos;
+      while (stop > start && data.get(stop - 1) <= ' ') {
+        stop--;
+      }
+      if (stop > start) {
+        spans.add(start, stop - start);
+      }
+    }
+    return spans;
+  }
+
+  /**
+   * Locates the records of a dump that can only be streamed (see {@link
+   * DumpFile#isMappable(String)}), as it is read. The stream is read a chunk at a time, and each
+   * complete record in the chunk is handed on as a view of its raw bytes; a record cut off by the
+   * end of a chunk is carried over into the next one. A chunk is never reused once any of its
+   * records have been handed on.
+   *
+   * @param in The (decompressed) contents of the dump, as stored
+   * @param lineDelimited {@code true} if the dump is line-delimited
+   * @param visitor Called with the bytes of each record object, in file order
+   * @throws IOException If there is some problem reading the stream, or the visitor fails
+   */
+  static void scan(
+      @NotNull InputStream in, boolean lineDelimited, @NotNull RecordVisitor visitor)
+      throws IOException {
+    new StreamScanner(lineDelimited, visitor).scan(in);
+  }
+
+  /** Called by {@link #scan(InputStream, boolean, RecordVisitor)} for each record */
+  @FunctionalInterface
+  interface RecordVisitor {
+    /**
+     * @param record The record's bytes, between the buffer's position and limit
+     * @throws IOException If there is some problem handling the record
+     */
+    void visit(@NotNull ByteBuffer record) throws IOException;
+  }
+
+  /** The state of {@link #scan(InputStream, boolean, RecordVisitor)} between chunks */
+  private static final class StreamScanner {
+    private static final int BEFORE_OBJECT = 0;
+    private static final int BEFORE_FIRST_KEY = 1;
+    private static final int BEFORE_KEY = 2;
+    private static final int AFTER_RECORD = 3;
+    private static final int AFTER_OBJECT = 4;
+
+    private final boolean lineDelimited;
+    private final RecordVisitor visitor;
+
+    /** Where the scanner is within the top-level object of a dump that is not line-delimited */
+    private int state = BEFORE_OBJECT;
+
+    private StreamScanner(boolean lineDelimited, @NotNull RecordVisitor visitor) {
+      this.lineDelimited = lineDelimited;
+      this.visitor = visitor;
+    }
+
+    private void scan(@NotNull InputStream in) throws IOException {
+      byte[] chunk = new byte[STREAM_CHUNK_SIZE];
+      int filled = 0;
+      boolean eof = false;
+      while (true) {
+        while (!eof && filled < chunk.length) {
+          int n = in.read(chunk, filled, chunk.length - filled);
+          if (n < 0) {
+            eof = true;
+          } else {
+            filled += n;
+          }
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(chunk, 0, filled);
+        int pos =
+            lineDelimited ? consumeLines(data, filled, eof) : consumeRecords(data, filled, eof);
+        if (eof) {
+          Assert.assertTrue(
+              lineDelimited || AFTER_OBJECT == state, "Unexpected end of ESM Dump File");
+          return;
+        }
+
+        // Carry the unfinished record over, into a bigger chunk if the record needs one
+        int rest = filled - pos;
+        byte[] next = new byte[Math.max(STREAM_CHUNK_SIZE, 2 * rest)];
+        System.arraycopy(chunk, pos, next, 0, rest);
+        chunk = next;
+        filled = rest;
+      }
+    }
+
+    /**
+     * @return The offset of the first byte that is not part of a complete line
+     */
+    private int consumeLines(@NotNull ByteBuffer data, int end, boolean eof) throws IOException {
+      int pos = 0;
+      while (pos < end) {
+        int start = skipWhitespace(data, pos, end);
+        int stop = start;
+        while (stop < end && '\n' != data.get(stop)) {
+          stop++;
+        }
+        if (stop == end && !eof) {
+          return start;
+        }
+        pos = stop;
+
+        // Trim the line's trailing whitespace (e.g. a CR)
+        while (stop > start && data.get(stop - 1) <= ' ') {
+          stop--;
+        }
+        if (stop > start) {
+          visit(data, start, stop);
+        }
+      }
+      return pos;
+    }
+
+    /**
+     * @return The offset of the first byte that is not part of a complete record (or separator)
+     */
+    private int consumeRecords(@NotNull ByteBuffer data, int end, boolean eof) throws IOException {
+      int pos = 0;
+      while (true) {
+        int next = skipWhitespace(data, pos, end);
+        if (next == end) {
+          return next;
+        }
+        switch (state) {
+          case BEFORE_OBJECT:
+            expect(data, next, end, '{');
+            state = BEFORE_FIRST_KEY;
+            pos = next + 1;
+            continue;
+          case AFTER_RECORD:
+            byte sep = data.get(next);
+            Assert.assertTrue(
+                ',' == sep || '}' == sep, "Expected ',' or '}' in ESM Dump File");
+            state = (',' == sep) ? BEFORE_KEY : AFTER_OBJECT;
+            pos = next + 1;
+            continue;
+          case AFTER_OBJECT:
+            throw new AssertionError("Unexpected data after the end of the ESM Dump File");
+          default:
+            if (BEFORE_FIRST_KEY == state && '}' == data.get(next)) {
+              state = AFTER_OBJECT;
+              pos = next + 1;
+              continue;
+            }
+        }
+
+        // "<FormID>" : { ... }
+        expect(data, next, end, '"');
+        next = skipString(data, next, end);
+        next = (next < 0) ? end : skipWhitespace(data, next, end);
+        if (next == end) {
+          return pos;
+        }
+        expect(data, next, end, ':');
+        int start = skipWhitespace(data, next + 1, end);
+        int stop = skipValue(data, start, end);
+        if (stop < 0 || (stop == end && !eof)) {
+          return pos;
+        }
+        visit(data, start, stop);
+        state = AFTER_RECORD;
+        pos = stop;
+      }
+    }
+
+    private void visit(@NotNull ByteBuffer data, int start, int stop) throws IOException {
+      ByteBuffer record = data.duplicate();
+      record.limit(stop).position(start);
+      visitor.visit(record);
+    }
+  }
+
+  private static void expect(@NotNull ByteBuffer data, int pos, int end, char ch) {
+    Assert.assertTrue(
+        pos < end && ch == data.get(pos), "Expected '" + ch + "' at offset " + pos);
+  }
+
+  private static int skipWhitespace(@NotNull ByteBuffer data, int pos, int end) {
+    while (pos < end) {
+      byte b = data.get(pos);
+      if (' ' != b && '\t' != b && '\r' != b && '\n' != b) {
+        break;
+      }
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * @param pos The offset returned by {@link #skipString(ByteBuffer, int, int)} or {@link
+   *     #skipValue(ByteBuffer, int, int)}
+   * @return The offset, provided the string or value was complete
+   */
+  private static int complete(int pos) {
+    Assert.assertTrue(pos >= 0, "Unexpected end of ESM Dump File");
+    return pos;
+  }
+
+  /**
+   * @param pos The offset of the opening quote
+   * @return The offset just past the closing quote, or {@code -1} if the string is cut off
+   */
+  private static int skipString(@NotNull ByteBuffer data, int pos, int end) {
+    pos++;
+    while (pos < end) {
+      byte b = data.get(pos++);
+      if ('\\' == b) {
+        pos++;
+      } else if ('"' == b) {
+        return pos;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param pos The offset of the first byte of the value
+   * @return The offset just past the end of the value, or {@code -1} if the value is cut off
+   */
+  private static int skipValue(@NotNull ByteBuffer data, int pos, int end) {
+    if (pos >= end) {
+      return -1;
+    }
+    byte b = data.get(pos);
+    if ('"' == b) {
+      return skipString(data, pos, end);
+    }
+    if ('{' == b || '[' == b) {
+      int depth = 0;
+      while (pos < end) {
+        b = data.get(pos);
+        if ('"' == b) {
+          pos = skipString(data, pos, end);
+          if (pos < 0) {
+            return -1;
+          }
+          continue;
+        }
+        if ('{' == b || '[' == b) {
+          depth++;
+        } else if ('}' == b || ']' == b) {
+          depth--;
+        }
+        pos++;
+        if (0 == depth) {
+          return pos;
+        }
+      }
+      return -1;
+    }
+
+    // Scalar value (number, true, false, null)
+    while (pos < end) {
+      b = data.get(pos);
+      if (',' == b || '}' == b || ']' == b || ' ' == b || '\t' == b || '\r' == b || '\n' == b) {
+        break;
+      }
+      pos++;
+    }
+    return pos;
+  }
+}
@@ -6,7 +6,9 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import util.Assert;
 
 /**
@@ -16,6 +18,9 @@ import util.Assert;
  * @author Eric Karlson
  */
 public class RecordFactory {
+  /** The Editor ID given to records that do not have one */
+  static final String NO_EDITOR_ID = "<no-edit-id>";
+
   private static final Map<String, Class<?>> SIGNATURE_TO_CLASS = new HashMap<>();
 
   static {
@@ -33,6 +38,28 @@ public class RecordFactory {
     SIGNATURE_TO_CLASS.put("WEAP", WEAPRecord.class);
   }
 
+  /** The signatures whose records can be bound to a {@link RecordProjection} */
+  private static final Map<String, Supplier<RecordProjection>> SIGNATURE_TO_PROJECTION =
+      new HashMap<>();
+
+  static {
+    SIGNATURE_TO_PROJECTION.put("AMMO", AMMORecord.Projection::new);
+    SIGNATURE_TO_PROJECTION.put("COBJ", COBJRecord.Projection::new);
+    SIGNATURE_TO_PROJECTION.put("EXPL", EXPLRecord.Projection::new);
+    SIGNATURE_TO_PROJECTION.put("PROJ", PROJRecord.Projection::new);
+    SIGNATURE_TO_PROJECTION.put("WEAP", WEAPRecord.Projection::new);
+  }
+
+  /**
+   * @param signature The Signature that identifies a record's type
+   * @return A new, empty projection for records of this type, or {@code null} if the type has no
+   *     projection and its records are always loaded as a full tree
+   */
+  static @Nullable RecordProjection newProjection(@NotNull String signature) {
+    Supplier<RecordProjection> projection = SIGNATURE_TO_PROJECTION.get(signature);
+    return (null != projection) ? projection.get() : null;
+  }
+
   /**
    * The factory builder method. Note that the caller is responsible for registering the new {@link
    * Record} with some {@link ESMJsonParser} to make it available for data minding.
@@ -40,7 +67,8 @@ public class RecordFactory {
    * @param formId The Form ID that uniquely identifies this record
    * @param editorId The Editor ID for this record
    * @param signature The SIgnaure that identifies this record's type
-   * @param node The {@link JsonNode} holding the record's data
+   * @param node The {@link JsonNode} holding the record's data, or {@code null} if it is loaded
+   *     lazily
    * @param registrar The {@link ESMJsonParser.ParserRegistrar} to use for {@link Record}
    *     registration
    * @return The constructed {@link Record}
@@ -53,15 +81,15 @@ public class RecordFactory {
       @NotNull String formId,
       @NotNull String editorId,
       @NotNull String signature,
-      @NotNull JsonNode node,
+      @Nullable JsonNode node,
       @NotNull ESMJsonParser.ParserRegistrar registrar)
       throws InvocationTargetException,
           InstantiationException,
           IllegalAccessException,
           NoSuchMethodException {
     // Determine the class to use for this new Record - defaults to Record if no specific class
-    // found
-    Class<?> clazz = SIGNATURE_TO_CLASS.computeIfAbsent(signature, s -> Record.class);
+    // found. Note that the map is only read here since records may be created concurrently.
+    Class<?> clazz = SIGNATURE_TO_CLASS.getOrDefault(signature, Record.class);
     Constructor<?> constructor =
         clazz.getConstructor(
             String.class,
@@ -72,6 +100,40 @@ public class RecordFactory {
     return (Record) constructor.newInstance(formId, editorId, signature, node, registrar);
   }
 
+  /**
+   * Creates a lazily loaded {@link Record}, whose {@link JsonNode} will only be loaded from its
+   * {@link RecordSource} when it is first needed.
+   *
+   * @param formId The Form ID that uniquely identifies this record
+   * @param editorId The Editor ID for this record
+   * @param signature The Signature that identifies this record's type
+   * @param source Where to load the record's {@link JsonNode} from
+   * @param registrar The {@link ESMJsonParser.ParserRegistrar} to use for {@link Record}
+   *     registration
+   * @return The constructed {@link Record}
+   */
+  public static @NotNull Record createLazyRecord(
+      @NotNull String formId,
+      @NotNull String editorId,
+      @NotNull String signature,
+      @NotNull RecordSource source,
+      @NotNull ESMJsonParser.ParserRegistrar registrar) {
+    try {
+      // The record registers itself as it is constructed, so it is held back until its source is
+      // attached, since a registration listener may use it straight away
+      ESMJsonParser.ParserRegistrar pending = registrar.getParser().newDeferredRegistrar();
+      Record record = createRecord(formId, editorId, signature, null, pending);
+      record.attachSource(source);
+      pending.commit(registrar);
+      return record;
+    } catch (InvocationTargetException
+        | InstantiationException
+        | IllegalAccessException
+        | NoSuchMethodException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Factory method to create a {@link Record} from the raw ESM {@link JsonNode}
    *
@@ -82,6 +144,23 @@ public class RecordFactory {
    */
   public static @NotNull Record fromESMJsonObject(
       @NotNull JsonNode node, @NotNull ESMJsonParser.ParserRegistrar registrar) {
+    return fromESMJsonObject(node, null, registrar);
+  }
+
+  /**
+   * Factory method to create a {@link Record} from the raw ESM {@link JsonNode} and, optionally,
+   * the {@link RecordProjection} its accessors read from
+   *
+   * @param node the raw {@link JsonNode} to map into a {@link Record}
+   * @param projection The record's projection, or {@code null} if the node is the full tree
+   * @param registrar The {@link ESMJsonParser.ParserRegistrar} to use for {@link Record}
+   *     registration
+   * @return The derived {@link Record} object
+   */
+  public static @NotNull Record fromESMJsonObject(
+      @NotNull JsonNode node,
+      @Nullable RecordProjection projection,
+      @NotNull ESMJsonParser.ParserRegistrar registrar) {
     // All Record objects must have a "Record Header" property
     Assert.assertTrue(node.isObject(), "Record objets must be of type 'Object'");
     JsonNode recordHdr =
@@ -95,10 +174,19 @@ public class RecordFactory {
             recordHdr.get(Record.FLD_SIGNATURE), "Missing " + Record.FLD_SIGNATURE);
     Assert.assertTrue(signature.isTextual(), "Signatures must be Json Strings");
     JsonNode editorId = node.get(Record.FLD_EDITOR_ID);
-    String editId = (null != editorId) ? editorId.asText() : "<no-edit-id>";
+    String editId = (null != editorId) ? editorId.asText() : NO_EDITOR_ID;
 
     try {
-      return createRecord(formId.asText(), editId, signature.asText(), node, registrar);
+      if (null == projection) {
+        return createRecord(formId.asText(), editId, signature.asText(), node, registrar);
+      }
+
+      // As for a lazy record, registration waits until the accessors can read the projection
+      ESMJsonParser.ParserRegistrar pending = registrar.getParser().newDeferredRegistrar();
+      Record record = createRecord(formId.asText(), editId, signature.asText(), node, pending);
+      record.attachProjection(projection);
+      pending.commit(registrar);
+      return record;
     } catch (InvocationTargetException
         | InstantiationException
         | IllegalAccessException
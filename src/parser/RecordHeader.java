@@ -0,0 +1,72 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import datamodel.Record;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+import util.Assert;
+
+/**
+ * The identifying properties of a record (FormID, EditorID and Signature), extracted at the token
+ * level without building the record's {@link com.fasterxml.jackson.databind.JsonNode} tree.
+ *
+ * @author Eric Karlson
+ */
+class RecordHeader {
+  final String formId;
+  final String editorId;
+  final String signature;
+
+  private RecordHeader(@NotNull String formId, @NotNull String editorId, @NotNull String signature) {
+    this.formId = formId;
+    this.editorId = editorId;
+    this.signature = signature;
+  }
+
+  /**
+   * Scans a record object for its identifying properties, skipping over everything else
+   *
+   * @param jp The {@link JsonParser}, positioned on the {@code START_OBJECT} of the record
+   * @return The record's header
+   * @throws IOException If there is some problem reading the record
+   */
+  static @NotNull RecordHeader scan(@NotNull JsonParser jp) throws IOException {
+    Assert.assertTrue(
+        JsonToken.START_OBJECT == jp.currentToken(), "Record objets must be of type 'Object'");
+    String formId = null;
+    String signature = null;
+    String editorId = RecordFactory.NO_EDITOR_ID;
+    while (JsonToken.FIELD_NAME == jp.nextToken()) {
+      String field = jp.getCurrentName();
+      JsonToken value = jp.nextToken();
+      if (Record.FLD_RECORD_HDR.equals(field)) {
+        Assert.assertTrue(JsonToken.START_OBJECT == value, "Record Headers must be Json Objects");
+        while (JsonToken.FIELD_NAME == jp.nextToken()) {
+          String hdrField = jp.getCurrentName();
+          JsonToken hdrValue = jp.nextToken();
+          if (Record.FLD_FORM_ID.equals(hdrField)) {
+            Assert.assertTrue(JsonToken.VALUE_STRING == hdrValue, "Form IDs must be Json Strings");
+            formId = jp.getText();
+          } else if (Record.FLD_SIGNATURE.equals(hdrField)) {
+            Assert.assertTrue(
+                JsonToken.VALUE_STRING == hdrValue, "Signatures must be Json Strings");
+            signature = jp.getText();
+          } else {
+            jp.skipChildren();
+          }
+        }
+      } else if (Record.FLD_EDITOR_ID.equals(field)) {
+        editorId = jp.getValueAsString(RecordFactory.NO_EDITOR_ID);
+        jp.skipChildren();
+      } else {
+        jp.skipChildren();
+      }
+    }
+
+    return new RecordHeader(
+        Assert.assertNotNull(formId, "Missing " + Record.FLD_FORM_ID),
+        editorId,
+        Assert.assertNotNull(signature, "Missing " + Record.FLD_SIGNATURE));
+  }
+}
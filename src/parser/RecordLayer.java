@@ -0,0 +1,97 @@
+package parser;
+
+import datamodel.Record;
+import java.util.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The records of a single plugin, loaded once (see {@link ESMJsonParser#loadLayer(String, int,
+ * List, int)}) and never modified afterwards. Layers are stacked into a load order (see {@link
+ * ESMJsonParser#setLoadOrder(List)}), and the same layer can take part in any number of load
+ * orders, so switching between mod setups never requires reloading a plugin.
+ *
+ * @author Eric Karlson
+ */
+public final class RecordLayer {
+  private final String name;
+  private final int pluginIndex;
+  private final ESMJsonParser parser;
+  private final FormIdTable recordsByFormId = new FormIdTable();
+  private final Map<String, Record> recordsByEditorId = new HashMap<>();
+  private final Map<String, List<Record>> recordsBySignature = new HashMap<>();
+
+  /**
+   * @param name The name of the plugin
+   * @param pluginIndex The plugin-index byte (the top byte of the FormID) of the records that this
+   *     plugin defines, as opposed to overrides of its masters' records
+   * @param parser The {@link ESMJsonParser} that created the records
+   * @param records The plugin's records, in file order
+   */
+  RecordLayer(
+      @NotNull String name,
+      int pluginIndex,
+      @NotNull ESMJsonParser parser,
+      @NotNull List<Record> records) {
+    this.name = name;
+    this.pluginIndex = pluginIndex;
+    this.parser = parser;
+    for (Record rec : records) {
+      // Within a plugin the last occurrence wins, the same as a plain parse
+      recordsByFormId.put(rec.getFormId(), rec);
+      recordsByEditorId.put(rec.getEditorId(), rec);
+      recordsBySignature.computeIfAbsent(rec.getSignature(), k -> new ArrayList<>()).add(rec);
+    }
+    recordsBySignature.replaceAll((k, v) -> Collections.unmodifiableList(v));
+  }
+
+  public @NotNull String getName() {
+    return name;
+  }
+
+  public int getPluginIndex() {
+    return pluginIndex;
+  }
+
+  @NotNull
+  ESMJsonParser getParser() {
+    return parser;
+  }
+
+  /**
+   * @return The number of distinct FormID's in this layer
+   */
+  public int size() {
+    return recordsByFormId.size();
+  }
+
+  @Nullable
+  Record getByFormId(@NotNull String formId) {
+    return recordsByFormId.get(formId);
+  }
+
+  @Nullable
+  Record getByFormId(int formId) {
+    return recordsByFormId.get(formId);
+  }
+
+  @Nullable
+  Record getByEditorId(@NotNull String editorId) {
+    return recordsByEditorId.get(editorId);
+  }
+
+  @NotNull
+  List<Record> getGroup(@NotNull String signature) {
+    return recordsBySignature.getOrDefault(signature, Collections.emptyList());
+  }
+
+  @NotNull
+  Set<String> getSignatures() {
+    return recordsBySignature.keySet();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s [%02X]", name, pluginIndex);
+  }
+}
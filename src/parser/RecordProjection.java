@@ -0,0 +1,110 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.ESMKeyValueMap;
+
+/**
+ * A compact, typed copy of the few fields of a record that the data model actually reads. When
+ * projection binding is enabled (see {@link ESMJsonParser#setProjectionBinding(boolean)}), the
+ * fields of a record whose signature has a projection (see {@link RecordFactory}) are streamed
+ * straight into the projection instead of being built into a {@link JsonNode} tree; only the
+ * <i>Record Header</i>, the EditorID and the name are kept as a tree.
+ *
+ * @author Eric Karlson
+ */
+public interface RecordProjection {
+  /** Reads the value of a field, leaving the {@link JsonParser} on the value's last token */
+  @FunctionalInterface
+  interface FieldReader {
+    /**
+     * @param key The field's name, disambiguated the same way as {@link ESMKeyValueMap} does for
+     *     repeated names
+     * @param jp The {@link JsonParser} positioned on the first token of the field's value
+     * @throws IOException If there is some problem reading the value
+     */
+    void read(@NotNull String key, @NotNull JsonParser jp) throws IOException;
+  }
+
+  /**
+   * Called for each top-level field of the record after the <i>Record Header</i>. Fields that the
+   * projection has no use for are simply ignored; whatever part of the value is left unread is
+   * skipped by the caller.
+   *
+   * @param key The field's name, disambiguated as for {@link FieldReader#read(String, JsonParser)}
+   * @param jp The {@link JsonParser} positioned on the first token of the field's value
+   * @throws IOException If there is some problem reading the value
+   */
+  void bind(@NotNull String key, @NotNull JsonParser jp) throws IOException;
+
+  /**
+   * Called once every field has been bound, so that any subtrees the projection keeps are held the
+   * same way as the record's own tree (interned and frozen, say). Projections that keep no trees
+   * have nothing to do.
+   *
+   * @param settler Returns the subtree to keep in place of a newly read one
+   */
+  default void settle(@NotNull UnaryOperator<JsonNode> settler) {}
+
+  /**
+   * Reads the fields of an object value. Any value the reader leaves unread is skipped, so the
+   * reader only has to handle the fields it is interested in. A value that is not an object is
+   * skipped entirely.
+   *
+   * @param jp The {@link JsonParser} positioned on the value's {@code START_OBJECT}
+   * @param reader Called for each field of the object
+   * @throws IOException If there is some problem reading the object
+   */
+  static void readFields(@NotNull JsonParser jp, @NotNull FieldReader reader) throws IOException {
+    if (JsonToken.START_OBJECT != jp.currentToken()) {
+      jp.skipChildren();
+      return;
+    }
+    readRemainingFields(jp, reader);
+  }
+
+  /**
+   * Reads the remaining fields of an object, leaving the {@link JsonParser} on its {@code
+   * END_OBJECT}
+   *
+   * @param jp The {@link JsonParser} positioned within the object, before its next field
+   * @param reader Called for each remaining field of the object
+   * @throws IOException If there is some problem reading the object
+   */
+  static void readRemainingFields(@NotNull JsonParser jp, @NotNull FieldReader reader)
+      throws IOException {
+    Map<String, Integer> seen = null;
+    while (JsonToken.FIELD_NAME == jp.nextToken()) {
+      String name = jp.getCurrentName();
+      int occurrence = 1;
+      if (null == seen) {
+        seen = new HashMap<>();
+        seen.put(name, 1);
+      } else {
+        occurrence = seen.merge(name, 1, Integer::sum);
+      }
+      jp.nextToken();
+      reader.read(ESMKeyValueMap.generateRepeatedKey(name, occurrence), jp);
+
+      // A no-op if the reader consumed the value (or it is a scalar)
+      jp.skipChildren();
+    }
+  }
+
+  /**
+   * @param jp The {@link JsonParser} positioned on a value
+   * @return The value's text if it is a scalar, {@code null} if it is an object or an array
+   * @throws IOException If there is some problem reading the value
+   */
+  static @Nullable String text(@NotNull JsonParser jp) throws IOException {
+    JsonToken tok = jp.currentToken();
+    return (null != tok && tok.isScalarValue()) ? jp.getText() : null;
+  }
+}
@@ -0,0 +1,22 @@
+package parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import datamodel.Record;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Where a lazily loaded {@link Record} gets its {@link JsonNode} from. The node is (re)loaded the
+ * first time it is needed after the record was created or evicted.
+ *
+ * @author Eric Karlson
+ */
+public interface RecordSource {
+  /**
+   * Loads the {@link JsonNode} for a record
+   *
+   * @param record The {@link Record} whose node is being loaded
+   * @return The record's freshly loaded {@link JsonNode}
+   */
+  @NotNull
+  JsonNode load(@NotNull Record record);
+}
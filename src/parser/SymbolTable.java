@@ -0,0 +1,78 @@
+package parser;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The symbols of a single load: one canonical instance of each property key, and optionally of
+ * each short text value, shared by every tree that an {@link ESMNodeFactory} builds. The dumps
+ * repeat the same few hundred keys in every record, and the same FormID's and references in many
+ * records, so sharing them saves a copy of each for every occurrence.
+ *
+ * <p>Keys are canonicalized to the JVM's interned instance of the string, which is the same
+ * instance as the {@code FLD_*} constants used by the data model, so a lookup by one of those
+ * constants usually finds the key by reference, without comparing any characters. The table sits
+ * in front of {@link String#intern()}, so each distinct key is only interned once per load.
+ *
+ * <p>Text values are only held weakly (see {@link WeakInterner}): there are as many of them as
+ * there are records, so a value is dropped from the table once no tree uses it any more, such as
+ * when a lazily loaded record is evicted.
+ *
+ * @author Eric Karlson
+ */
+final class SymbolTable implements UnaryOperator<String> {
+  /** Text values longer than this are rarely repeated, and are never shared */
+  static final int MAX_VALUE_LENGTH = 64;
+
+  private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+  /** Each shared value, by its own text, so that the entry lives exactly as long as the node */
+  private final WeakInterner<String, TextNode> values = new WeakInterner<>();
+
+  /**
+   * @param key A property key
+   * @return The canonical instance of the key
+   */
+  @NotNull
+  String intern(@NotNull String key) {
+    String symbol = keys.get(key);
+    if (null == symbol) {
+      symbol = key.intern();
+      keys.put(symbol, symbol);
+    }
+    return symbol;
+  }
+
+  /**
+   * @param key A property key
+   * @return The canonical instance of the key
+   */
+  @Override
+  public @NotNull String apply(@NotNull String key) {
+    return intern(key);
+  }
+
+  /**
+   * @param text A text value
+   * @return The shared {@link TextNode} holding the value, or a new one if the value is too long
+   *     to be shared
+   */
+  @NotNull
+  TextNode textNode(@NotNull String text) {
+    if (text.length() > MAX_VALUE_LENGTH) {
+      return new TextNode(text);
+    }
+    TextNode node = values.get(text);
+    if (null == node) {
+      TextNode added = new TextNode(text);
+      node = values.putIfAbsent(added.textValue(), added);
+      if (null == node) {
+        node = added;
+      }
+    }
+    return node;
+  }
+}
@@ -0,0 +1,216 @@
+package parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The binary encoding of a record's tree, shared by {@link ModelSnapshot} and {@link
+ * OffHeapCorpus}. A tree is a tagged value: numbers are their kind followed by their binary value
+ * (see {@link #encodeNumber(DataOutput, JsonNode)}), objects are a field count followed by each
+ * key and value, and arrays are an element count followed by the elements (all integers
+ * big-endian). How the property keys and text values are stored is left to the caller, through a
+ * {@link StringEncoder} and a {@link StringDecoder}; a snapshot stores references into its string
+ * pool, say, while the corpus stores text inline.
+ *
+ * @author Eric Karlson
+ */
+final class TreeCodec {
+  private static final byte TAG_NULL = 0;
+  private static final byte TAG_TEXT = 1;
+  private static final byte TAG_OBJECT = 2;
+  private static final byte TAG_ARRAY = 3;
+  private static final byte TAG_TRUE = 4;
+  private static final byte TAG_FALSE = 5;
+  private static final byte TAG_NUMBER = 6;
+
+  /* The kind of number following a TAG_NUMBER, so that it decodes to the same type of node */
+  private static final byte NUMBER_INT = 0;
+  private static final byte NUMBER_LONG = 1;
+  private static final byte NUMBER_SHORT = 2;
+  private static final byte NUMBER_FLOAT = 3;
+  private static final byte NUMBER_DOUBLE = 4;
+  private static final byte NUMBER_BIG_INTEGER = 5;
+  private static final byte NUMBER_BIG_DECIMAL = 6;
+
+  /** Writes the property keys and text values of a tree */
+  interface StringEncoder {
+    void writeKey(@NotNull DataOutput out, @NotNull String key) throws IOException;
+
+    void writeText(@NotNull DataOutput out, @NotNull String text) throws IOException;
+  }
+
+  /** Reads the property keys and text values written by a {@link StringEncoder} */
+  interface StringDecoder {
+    @NotNull
+    String readKey(@NotNull ByteBuffer in);
+
+    @NotNull
+    String readText(@NotNull ByteBuffer in);
+  }
+
+  private TreeCodec() {}
+
+  /**
+   * @param out The stream to write to
+   * @param node The tree to write
+   * @param strings Writes the property keys and text values
+   * @throws IOException If the stream cannot be written
+   */
+  static void encode(
+      @NotNull DataOutput out, @Nullable JsonNode node, @NotNull StringEncoder strings)
+      throws IOException {
+    if (null == node || node.isNull()) {
+      out.writeByte(TAG_NULL);
+    } else if (node.isObject()) {
+      out.writeByte(TAG_OBJECT);
+      out.writeInt(node.size());
+      Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        strings.writeKey(out, field.getKey());
+        encode(out, field.getValue(), strings);
+      }
+    } else if (node.isArray()) {
+      out.writeByte(TAG_ARRAY);
+      out.writeInt(node.size());
+      for (JsonNode element : node) {
+        encode(out, element, strings);
+      }
+    } else if (node.isBoolean()) {
+      out.writeByte(node.booleanValue() ? TAG_TRUE : TAG_FALSE);
+    } else if (node.isNumber()) {
+      encodeNumber(out, node);
+    } else {
+      out.writeByte(TAG_TEXT);
+      strings.writeText(out, node.asText());
+    }
+  }
+
+  /**
+   * @param in The buffer to read from, positioned at the start of the tree
+   * @param factory The {@link JsonNodeFactory} to build the tree with
+   * @param strings Reads the property keys and text values
+   * @return The tree
+   */
+  static @NotNull JsonNode decode(
+      @NotNull ByteBuffer in, @NotNull JsonNodeFactory factory, @NotNull StringDecoder strings) {
+    byte tag = in.get();
+    switch (tag) {
+      case TAG_NULL:
+        return factory.nullNode();
+      case TAG_TEXT:
+        return factory.textNode(strings.readText(in));
+      case TAG_OBJECT:
+        {
+          ObjectNode object = factory.objectNode();
+          for (int cnt = in.getInt(); cnt > 0; cnt--) {
+            String key = strings.readKey(in);
+            object.set(key, decode(in, factory, strings));
+          }
+          return object;
+        }
+      case TAG_ARRAY:
+        {
+          int cnt = in.getInt();
+          ArrayNode array = factory.arrayNode(cnt);
+          for (; cnt > 0; cnt--) {
+            array.add(decode(in, factory, strings));
+          }
+          return array;
+        }
+      case TAG_TRUE:
+        return factory.booleanNode(true);
+      case TAG_FALSE:
+        return factory.booleanNode(false);
+      case TAG_NUMBER:
+        return decodeNumber(in, factory);
+      default:
+        throw new IllegalStateException("Corrupt tree: unknown tag " + tag);
+    }
+  }
+
+  /**
+   * Writes a number node as {@link #TAG_NUMBER}, the kind of number and its binary value. Big
+   * integers are their two's-complement bytes preceded by the byte count, and big decimals are
+   * their scale followed by their unscaled value as a big integer.
+   */
+  private static void encodeNumber(@NotNull DataOutput out, @NotNull JsonNode node)
+      throws IOException {
+    out.writeByte(TAG_NUMBER);
+    if (node.isShort()) {
+      out.writeByte(NUMBER_SHORT);
+      out.writeShort(node.shortValue());
+    } else if (node.isInt()) {
+      out.writeByte(NUMBER_INT);
+      out.writeInt(node.intValue());
+    } else if (node.isLong()) {
+      out.writeByte(NUMBER_LONG);
+      out.writeLong(node.longValue());
+    } else if (node.isFloat()) {
+      out.writeByte(NUMBER_FLOAT);
+      out.writeFloat(node.floatValue());
+    } else if (node.isDouble()) {
+      out.writeByte(NUMBER_DOUBLE);
+      out.writeDouble(node.doubleValue());
+    } else if (node.isBigInteger()) {
+      out.writeByte(NUMBER_BIG_INTEGER);
+      writeBigInteger(out, node.bigIntegerValue());
+    } else {
+      BigDecimal value = node.decimalValue();
+      out.writeByte(NUMBER_BIG_DECIMAL);
+      out.writeInt(value.scale());
+      writeBigInteger(out, value.unscaledValue());
+    }
+  }
+
+  private static void writeBigInteger(@NotNull DataOutput out, @NotNull BigInteger value)
+      throws IOException {
+    byte[] bytes = value.toByteArray();
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /** Reads a number written by {@link #encodeNumber(DataOutput, JsonNode)}, just past its tag */
+  private static @NotNull JsonNode decodeNumber(
+      @NotNull ByteBuffer in, @NotNull JsonNodeFactory factory) {
+    byte kind = in.get();
+    switch (kind) {
+      case NUMBER_INT:
+        return factory.numberNode(in.getInt());
+      case NUMBER_LONG:
+        return factory.numberNode(in.getLong());
+      case NUMBER_SHORT:
+        return factory.numberNode(in.getShort());
+      case NUMBER_FLOAT:
+        return factory.numberNode(in.getFloat());
+      case NUMBER_DOUBLE:
+        return factory.numberNode(in.getDouble());
+      case NUMBER_BIG_INTEGER:
+        return factory.numberNode(readBigInteger(in));
+      case NUMBER_BIG_DECIMAL:
+        {
+          int scale = in.getInt();
+          return factory.numberNode(new BigDecimal(readBigInteger(in), scale));
+        }
+      default:
+        throw new IllegalStateException("Corrupt number: unknown kind " + kind);
+    }
+  }
+
+  private static @NotNull BigInteger readBigInteger(@NotNull ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new BigInteger(bytes);
+  }
+}
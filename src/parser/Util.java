@@ -1,11 +1,12 @@
 package parser;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import util.Assert;
+import util.ESMKeyValueMap;
 
 /**
  * Utility class that defines methods useful for operating on Form ID's, JsonNode's, casting etc.
@@ -13,20 +14,166 @@ import util.Assert;
  * @author Eric Karlson
  */
 public class Util {
-  private static final Pattern DECORATED_FORMID_REGEX =
-      Pattern.compile(".*\\[[^:]*:([0-9A-F]*)\\].*");
+  private static final String HEX_DIGITS = "0123456789ABCDEF";
 
   /**
    * Extracts a raw Form ID from a <i>Decorated Form ID</i>. <i>Decorated Form IDs</i> have the
-   * following syntax: {@code <EditorID>[<Signature>:<RawFormID>]}
+   * following syntax: {@code <EditorID>[<Signature>:<RawFormID>]}. A reference that is already a
+   * raw Form ID (see {@link #canonicalReference(String)}) is returned as it is.
    *
    * @param decoratedFormId The <i>Decorated Form ID</i>
    * @return The extracted <i>Raw Form ID</i>
    */
   public static @NotNull String toRaw(@NotNull String decoratedFormId) {
-    Matcher matcher = DECORATED_FORMID_REGEX.matcher(decoratedFormId);
-    Assert.assertTrue(matcher.find(), "Unable to extract raw form id from " + decoratedFormId);
-    return matcher.group(1);
+    long span = rawSpan(decoratedFormId);
+    if (span < 0) {
+      Assert.assertTrue(
+          parseFormId(decoratedFormId) >= 0,
+          "Unable to extract raw form id from " + decoratedFormId);
+      return decoratedFormId;
+    }
+    return decoratedFormId.substring((int) (span >>> 32), (int) span);
+  }
+
+  /**
+   * @param reference A reference value
+   * @return {@code true} if the reference is a <i>Decorated Form ID</i>, rather than a raw Form ID
+   */
+  public static boolean isDecorated(@NotNull CharSequence reference) {
+    return rawSpan(reference) >= 0;
+  }
+
+  /**
+   * Parses the Form ID of a reference, without allocating anything
+   *
+   * @param reference A <i>Decorated Form ID</i>, or a raw Form ID
+   * @return The 32 bit value of the referenced Form ID (see {@link #parseFormId(CharSequence)}), or
+   *     {@code -1} if the reference doesn't hold 8 hex digits
+   */
+  public static long parseReference(@Nullable CharSequence reference) {
+    if (null == reference) {
+      return -1;
+    }
+    long span = rawSpan(reference);
+    if (span < 0) {
+      return parseFormId(reference);
+    }
+    int start = (int) (span >>> 32);
+    int end = (int) span;
+    return (8 == end - start) ? parseFormId(reference, start) : -1;
+  }
+
+  /**
+   * Compares the Form ID of a reference with a raw Form ID, without extracting it
+   *
+   * @param reference A <i>Decorated Form ID</i>, or a raw Form ID
+   * @param rawFormId The raw Form ID
+   * @return {@code true} if the reference is to the Form ID
+   */
+  public static boolean isReferenceTo(@NotNull String reference, @NotNull String rawFormId) {
+    long span = rawSpan(reference);
+    if (span < 0) {
+      Assert.assertTrue(
+          parseFormId(reference) >= 0, "Unable to extract raw form id from " + reference);
+      return reference.equals(rawFormId);
+    }
+    int start = (int) (span >>> 32);
+    int length = (int) span - start;
+    return length == rawFormId.length() && reference.regionMatches(start, rawFormId, 0, length);
+  }
+
+  /**
+   * Reduces a text value to its canonical form: a value that consists of a <i>Decorated Form
+   * ID</i>, with exactly 8 hex digits, is replaced by its raw Form ID, and any other value is
+   * returned as it is
+   *
+   * @param text The text value
+   * @return The canonical form of the value
+   */
+  public static @Nullable String canonicalReference(@Nullable String text) {
+    // Most values aren't references, and are rejected by their last character
+    int length = (null != text) ? text.length() : 0;
+    if (length < 12 || ']' != text.charAt(length - 1)) {
+      return text;
+    }
+    long span = rawSpan(text);
+    int start = (int) (span >>> 32);
+    int end = (int) span;
+    return (span >= 0 && length - 1 == end && 8 == end - start) ? text.substring(start, end) : text;
+  }
+
+  /**
+   * Finds the raw Form ID within a <i>Decorated Form ID</i>: the hex digits between the first
+   * {@code ':'} after a {@code '['}, and the {@code ']'} that immediately follows them. If more
+   * than one {@code '['} qualifies, the last one is used.
+   *
+   * @param decoratedFormId The <i>Decorated Form ID</i>
+   * @return The index of the first digit in the upper 32 bits, and the index just past the last
+   *     digit in the lower 32 bits, or {@code -1} if there is no raw Form ID
+   */
+  private static long rawSpan(@NotNull CharSequence decoratedFormId) {
+    int length = decoratedFormId.length();
+    for (int open = length - 1; open >= 0; open--) {
+      if ('[' != decoratedFormId.charAt(open)) {
+        continue;
+      }
+      int colon = open + 1;
+      while (colon < length && ':' != decoratedFormId.charAt(colon)) {
+        colon++;
+      }
+      int end = colon + 1;
+      while (end < length && isHexDigit(decoratedFormId.charAt(end))) {
+        end++;
+      }
+      if (end < length && ']' == decoratedFormId.charAt(end)) {
+        return ((long) (colon + 1) << 32) | end;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isHexDigit(char c) {
+    return HEX_DIGITS.indexOf(c) >= 0;
+  }
+
+  /**
+   * Parses a raw FormID into its 32 bit value: the plugin-index byte, followed by the plugin-local
+   * ID
+   *
+   * @param formId The raw FormID, as 8 upper-case hex digits
+   * @return The FormID's value (between {@code 0} and {@code 0xFFFFFFFF}), or {@code -1} if it is
+   *     not 8 upper-case hex digits
+   */
+  public static long parseFormId(@Nullable CharSequence formId) {
+    return (null != formId && 8 == formId.length()) ? parseFormId(formId, 0) : -1;
+  }
+
+  /**
+   * @return The value of the 8 hex digits at {@code start}, or {@code -1} if they aren't all digits
+   */
+  private static long parseFormId(@NotNull CharSequence text, int start) {
+    long value = 0;
+    for (int idx = start; idx < start + 8; idx++) {
+      int digit = HEX_DIGITS.indexOf(text.charAt(idx));
+      if (digit < 0) {
+        return -1;
+      }
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+
+  /**
+   * @param formId The 32 bit value of a FormID
+   * @return The raw FormID, as 8 upper-case hex digits
+   */
+  public static @NotNull String formatFormId(int formId) {
+    char[] digits = new char[8];
+    for (int idx = 7; idx >= 0; idx--) {
+      digits[idx] = HEX_DIGITS.charAt(formId & 0xF);
+      formId >>>= 4;
+    }
+    return new String(digits);
   }
 
   public static Integer asInt(@NotNull String value) {
@@ -68,6 +215,31 @@ public class Util {
     return value.asDouble();
   }
 
+  /**
+   * Enumerates every occurrence of a property that the "serialize-command-json" xEdit script may
+   * repeat within a JSON Object (see {@link ESMKeyValueMap})
+   *
+   * @param node The JSON Object, or {@code null}
+   * @param key The property key
+   * @return The values of every occurrence of the key, in the order they were parsed
+   */
+  public static @NotNull List<JsonNode> occurrences(@Nullable JsonNode node, @NotNull String key) {
+    if (node instanceof ESMObjectNode) {
+      return ((ESMObjectNode) node).occurrences(key);
+    }
+    if (node instanceof FrozenObjectNode) {
+      return ((FrozenObjectNode) node).occurrences(key);
+    }
+    List<JsonNode> values = new ArrayList<>();
+    JsonNode value;
+    for (int idx = 1;
+        null != node && null != (value = node.get(ESMKeyValueMap.generateRepeatedKey(key, idx)));
+        idx++) {
+      values.add(value);
+    }
+    return values;
+  }
+
   public static <T> @Nullable T cast(@Nullable Object o, @NotNull Class<T> clazz) {
     return clazz.isInstance(o) ? clazz.cast(o) : null;
   }
@@ -0,0 +1,73 @@
+package parser;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A table of canonical instances that does not keep them alive. Each value is held by a weak
+ * reference, under a key that the value itself holds (or is), so an entry goes away once nothing
+ * but the table refers to its value. This lets the trees of lazily loaded, off-heap or evicted
+ * records be collected even though their nodes were shared while they were resident.
+ *
+ * <p>The table is split into stripes, each a synchronized {@link WeakHashMap}, so that threads
+ * parsing different files seldom wait for each other.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the canonical instances
+ * @author Eric Karlson
+ */
+final class WeakInterner<K, V> {
+  private static final int STRIPES = 16;
+
+  private final List<Map<K, WeakReference<V>>> stripes = new ArrayList<>(STRIPES);
+
+  WeakInterner() {
+    for (int idx = 0; idx < STRIPES; idx++) {
+      stripes.add(new WeakHashMap<>());
+    }
+  }
+
+  /**
+   * @param key The key of interest
+   * @return The canonical instance for the key, or {@code null} if there is none
+   */
+  @Nullable
+  V get(@NotNull K key) {
+    Map<K, WeakReference<V>> stripe = stripe(key);
+    synchronized (stripe) {
+      WeakReference<V> ref = stripe.get(key);
+      return (null != ref) ? ref.get() : null;
+    }
+  }
+
+  /**
+   * @param key The key of the value, which must be reachable from the value for as long as it is
+   * @param value The value to make canonical, unless there already is one for the key
+   * @return The canonical instance that was already in the table, or {@code null} if the value
+   *     has become the canonical instance
+   */
+  @Nullable
+  V putIfAbsent(@NotNull K key, @NotNull V value) {
+    Map<K, WeakReference<V>> stripe = stripe(key);
+    synchronized (stripe) {
+      WeakReference<V> ref = stripe.get(key);
+      V shared = (null != ref) ? ref.get() : null;
+      if (null == shared) {
+        // Replacing the value of a stale entry would keep its dying key, so the entry goes first
+        stripe.remove(key);
+        stripe.put(key, new WeakReference<>(value));
+      }
+      return shared;
+    }
+  }
+
+  private @NotNull Map<K, WeakReference<V>> stripe(@NotNull K key) {
+    int h = key.hashCode();
+    return stripes.get((h ^ (h >>> 16)) & (STRIPES - 1));
+  }
+}
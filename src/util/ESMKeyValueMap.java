@@ -1,28 +1,82 @@
 package util;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import java.util.HashMap;
-import java.util.Map;
+import com.fasterxml.jackson.databind.node.NullNode;
+import java.util.*;
+import java.util.function.UnaryOperator;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
- * A custom override of a standard {@link HashMap} that alters the behavior when inserting a key
- * that already exists in the map. Rather than replacing the existing value, it fabricates a new key
- * value for the value being added. This addresses the duplicate property name issue that arises
- * from the existing "serialize-command-json" script used with xEdit.
+ * A map of JSON Object properties that keeps every occurrence of a repeated property key, rather
+ * than just the last one. This addresses the duplicate property name issue that arises from the
+ * existing "serialize-command-json" script used with xEdit.
+ *
+ * <p>Each key has a single slot, holding either its only value or the list of its values in the
+ * order they were inserted, so the n'th occurrence of a key is found with one lookup (see {@link
+ * #getOccurrence(String, int)} and {@link #occurrences(String)}). For compatibility, the map also
+ * presents the repeated occurrences under fabricated keys of the form {@code "<key> #<n>"} (see
+ * {@link #generateRepeatedKey(String, int)}), both when they are looked up and when the map is
+ * iterated.
  *
  * @author Eric Karlson
  */
-public class ESMKeyValueMap extends HashMap<String, JsonNode> {
-  /** Tracks duplicated keys in the object */
-  private final Map<String, Integer> duplicateKeys = new HashMap<>();
+public class ESMKeyValueMap extends AbstractMap<String, JsonNode> {
+  private static final String REPEAT_SEPARATOR = " #";
+
+  /** Each key's value, or its {@link Occurrences} if the key is repeated */
+  private final Map<String, Object> slots = new HashMap<>();
+
+  /** The total number of values, counting each occurrence of a repeated key */
+  private int size = 0;
+
+  /** Supplies the canonical instance of each newly added key */
+  private final UnaryOperator<String> keys;
+
+  /** The values of a repeated key, in insertion order */
+  private static final class Occurrences {
+    private JsonNode[] values;
+    private int count;
+
+    private Occurrences(@NotNull JsonNode first, @NotNull JsonNode second) {
+      this.values = new JsonNode[] {first, second, null, null};
+      this.count = 2;
+    }
+
+    private void add(@NotNull JsonNode value) {
+      if (count == values.length) {
+        values = Arrays.copyOf(values, 2 * count);
+      }
+      values[count++] = value;
+    }
+
+    private @NotNull JsonNode remove(int idx) {
+      JsonNode value = values[idx];
+      System.arraycopy(values, idx + 1, values, idx, count - idx - 1);
+      values[--count] = null;
+      return value;
+    }
+  }
 
   public ESMKeyValueMap() {
+    this(UnaryOperator.identity());
+  }
+
+  /**
+   * @param keys Supplies the canonical instance of each newly added key, so that maps with the same
+   *     keys can share a single copy of each key
+   */
+  public ESMKeyValueMap(@NotNull UnaryOperator<String> keys) {
     super();
+    this.keys = keys;
   }
 
   public ESMKeyValueMap(Map<String, JsonNode> source) {
-    super();
+    this(UnaryOperator.identity(), source);
+  }
+
+  public ESMKeyValueMap(@NotNull UnaryOperator<String> keys, Map<String, JsonNode> source) {
+    this(keys);
     this.putAll(source);
   }
 
@@ -36,21 +90,289 @@ public class ESMKeyValueMap extends HashMap<String, JsonNode> {
    */
   public static @NotNull String generateRepeatedKey(@NotNull String propName, int iteration) {
     Assert.assertTrue(iteration > 0, "Invalid 'iteration' value - should be 1-based, not 0-based");
-    return (1 == iteration) ? propName : String.format("%s #%d", propName, iteration);
+    return (1 == iteration) ? propName : propName + REPEAT_SEPARATOR + iteration;
+  }
+
+  /**
+   * Reverses {@link #generateRepeatedKey(String, int)}
+   *
+   * @param key A property key
+   * @return The occurrence named by the key if it was fabricated for a repeated occurrence (so is
+   *     at least 2), otherwise {@code -1}
+   */
+  public static int occurrenceOf(@NotNull String key) {
+    int sep = key.lastIndexOf(REPEAT_SEPARATOR);
+    return (sep > 0) ? parseOccurrence(key, sep + REPEAT_SEPARATOR.length()) : -1;
+  }
+
+  /**
+   * @param key A property key for which {@link #occurrenceOf(String)} found an occurrence
+   * @return The repeated key that the fabricated key was generated from
+   */
+  public static @NotNull String baseKeyOf(@NotNull String key) {
+    return key.substring(0, key.lastIndexOf(REPEAT_SEPARATOR));
+  }
+
+  /**
+   * @param key A property key, possibly fabricated by {@link #generateRepeatedKey(String, int)}
+   * @param propName A property name
+   * @return {@code true} if the key is the name itself or one of its repeated occurrences
+   */
+  public static boolean isOccurrenceOf(@NotNull String key, @NotNull String propName) {
+    return key.equals(propName)
+        || (key.startsWith(propName)
+            && key.lastIndexOf(REPEAT_SEPARATOR) == propName.length()
+            && occurrenceOf(key) > 1);
+  }
+
+  /**
+   * @return Each distinct key, regardless of how many times it occurs
+   */
+  public @NotNull Set<String> distinctKeys() {
+    return Collections.unmodifiableSet(slots.keySet());
+  }
+
+  /**
+   * @param key The property key
+   * @param n The occurrence of the key of interest (1-based)
+   * @return The value of the n'th occurrence of the key, or {@code null} if there are fewer
+   */
+  public @Nullable JsonNode getOccurrence(@NotNull String key, int n) {
+    Object slot = slots.get(key);
+    if (slot instanceof Occurrences) {
+      Occurrences occurrences = (Occurrences) slot;
+      return (n > 0 && n <= occurrences.count) ? occurrences.values[n - 1] : null;
+    }
+    return (1 == n) ? (JsonNode) slot : null;
+  }
+
+  /**
+   * @param key The property key
+   * @return The values of every occurrence of the key, in the order they were inserted
+   */
+  public @NotNull List<JsonNode> occurrences(@NotNull String key) {
+    Object slot = slots.get(key);
+    if (null == slot) {
+      return Collections.emptyList();
+    }
+    if (slot instanceof Occurrences) {
+      Occurrences occurrences = (Occurrences) slot;
+      return Collections.unmodifiableList(
+          Arrays.asList(occurrences.values).subList(0, occurrences.count));
+    }
+    return Collections.singletonList((JsonNode) slot);
   }
 
   @Override
   public JsonNode put(String key, JsonNode value) {
-    // How many times have we seen this key?
-    int cnt = 1 + duplicateKeys.computeIfAbsent(key, k -> 0);
-    duplicateKeys.put(key, cnt);
+    if (null == value) {
+      value = NullNode.getInstance();
+    }
 
-    // Disambiguate the key value (if needed) and store the value
-    return super.put(generateRepeatedKey(key, cnt), value);
+    // Repeated keys add another occurrence rather than replacing the existing value
+    Object slot = slots.get(key);
+    if (null == slot) {
+      // A fabricated key (e.g. from re-reading the entries of another map) that names the next
+      // occurrence of a key is folded back into that key's occurrences
+      int n = occurrenceOf(key);
+      if (n > 1 && n == countOf(slots.get(baseKeyOf(key))) + 1) {
+        return put(baseKeyOf(key), value);
+      }
+      slots.put(keys.apply(key), value);
+    } else if (slot instanceof Occurrences) {
+      ((Occurrences) slot).add(value);
+    } else {
+      slots.put(key, new Occurrences((JsonNode) slot, value));
+    }
+    size++;
+    return null;
   }
 
   @Override
   public void putAll(Map<? extends String, ? extends JsonNode> m) {
     m.entrySet().iterator().forEachRemaining(e -> put(e.getKey(), e.getValue()));
   }
+
+  @Override
+  public JsonNode get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    Object slot = slots.get(key);
+    if (null != slot) {
+      return (slot instanceof Occurrences) ? ((Occurrences) slot).values[0] : (JsonNode) slot;
+    }
+
+    // Otherwise it may be the fabricated key of a repeated occurrence
+    String name = (String) key;
+    int n = occurrenceOf(name);
+    return (n > 1) ? getOccurrence(baseKeyOf(name), n) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return null != get(key);
+  }
+
+  /**
+   * Removes a single occurrence of a key. Any later occurrences of the same key move up by one.
+   *
+   * @param key The key, or the fabricated key of a repeated occurrence
+   * @return The removed value, or {@code null} if there was none
+   */
+  @Override
+  public JsonNode remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    String name = (String) key;
+    int n = 1;
+    if (!slots.containsKey(name)) {
+      n = occurrenceOf(name);
+      if (n <= 1) {
+        return null;
+      }
+      name = baseKeyOf(name);
+    }
+
+    Object slot = slots.get(name);
+    JsonNode removed = null;
+    if (slot instanceof Occurrences) {
+      Occurrences occurrences = (Occurrences) slot;
+      if (n <= occurrences.count) {
+        removed = occurrences.remove(n - 1);
+        if (1 == occurrences.count) {
+          slots.put(name, occurrences.values[0]);
+        }
+      }
+    } else if (null != slot && 1 == n) {
+      removed = (JsonNode) slots.remove(name);
+    }
+    if (null != removed) {
+      size--;
+    }
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    slots.clear();
+    size = 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The second and later occurrences of a repeated key appear under their fabricated keys.
+   * Removing an entry through the set's iterator removes just that occurrence, and any later
+   * occurrences of the same key move up by one, as with {@link #remove(Object)}; the iterator
+   * carries on presenting them under the keys they had when it started.
+   */
+  @Override
+  public @NotNull Set<Entry<String, JsonNode>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public @NotNull Iterator<Entry<String, JsonNode>> iterator() {
+        Iterator<Entry<String, Object>> iter = slots.entrySet().iterator();
+        return new Iterator<>() {
+          private Entry<String, Object> slot = null;
+          private Occurrences occurrences = null;
+          private int next = 0;
+
+          /** The number of occurrences of the current key removed through this iterator */
+          private int removed = 0;
+
+          /** Whether the entry last returned can still be removed */
+          private boolean removable = false;
+
+          @Override
+          public boolean hasNext() {
+            return (null != occurrences && next < occurrences.count) || iter.hasNext();
+          }
+
+          @Override
+          public Entry<String, JsonNode> next() {
+            if (null != occurrences && next < occurrences.count) {
+              JsonNode value = occurrences.values[next++];
+              removable = true;
+              String key = generateRepeatedKey(slot.getKey(), next + removed);
+              return new SimpleImmutableEntry<>(key, value);
+            }
+            slot = iter.next();
+            removable = true;
+            if (slot.getValue() instanceof Occurrences) {
+              occurrences = (Occurrences) slot.getValue();
+              next = 1;
+              removed = 0;
+              return new SimpleImmutableEntry<>(slot.getKey(), occurrences.values[0]);
+            }
+            occurrences = null;
+            return new SimpleImmutableEntry<>(slot.getKey(), (JsonNode) slot.getValue());
+          }
+
+          @Override
+          public void remove() {
+            if (!removable) {
+              throw new IllegalStateException();
+            }
+            removable = false;
+            if (null == occurrences) {
+              iter.remove();
+            } else {
+              // The later occurrences move up, so the next one takes the removed one's place
+              occurrences.remove(--next);
+              removed++;
+              if (0 == occurrences.count) {
+                iter.remove();
+              } else if (1 == occurrences.count) {
+                slot.setValue(occurrences.values[0]);
+              }
+            }
+            size--;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * @return The number of occurrences held by a slot
+   */
+  private static int countOf(@Nullable Object slot) {
+    if (slot instanceof Occurrences) {
+      return ((Occurrences) slot).count;
+    }
+    return (null == slot) ? 0 : 1;
+  }
+
+  /**
+   * @param name A property key
+   * @param from The index of the first digit of the occurrence number
+   * @return The occurrence number that ends the key, or {@code -1} if it does not end in one
+   */
+  private static int parseOccurrence(@NotNull String name, int from) {
+    int len = name.length() - from;
+    if (len < 1 || len > 9 || '0' == name.charAt(from)) {
+      return -1;
+    }
+    int n = 0;
+    for (int idx = from; idx < name.length(); idx++) {
+      char c = name.charAt(idx);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      n = 10 * n + (c - '0');
+    }
+    return n;
+  }
 }
@@ -0,0 +1,85 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link BackgroundInflaterInputStream}
+ *
+ * @author Eric Karlson
+ */
+class BackgroundInflaterInputStreamTest {
+  @Test
+  void readsEverything() throws IOException {
+    // Several chunks, and a partial one at the end
+    byte[] data = new byte[5 * 65536 + 123];
+    new Random(1).nextBytes(data);
+    ByteArrayOutputStream gz = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gz)) {
+      out.write(data);
+    }
+
+    InputStream source = new GZIPInputStream(new ByteArrayInputStream(gz.toByteArray()));
+    try (InputStream in = new BackgroundInflaterInputStream(source, "test")) {
+      assertArrayEquals(data, in.readAllBytes());
+      assertEquals(-1, in.read());
+    }
+  }
+
+  @Test
+  void readsAnEmptyStream() throws IOException {
+    try (InputStream in =
+        new BackgroundInflaterInputStream(new ByteArrayInputStream(new byte[0]), "test")) {
+      assertEquals(-1, in.read());
+    }
+  }
+
+  @Test
+  void reportsAnIOException() {
+    IOException failure = new IOException("corrupt");
+    InputStream in = new BackgroundInflaterInputStream(new FailingStream(failure), "test");
+    assertSame(failure, assertThrows(IOException.class, in::readAllBytes));
+
+    // A truncated stream must never be taken for a complete one
+    assertSame(failure, assertThrows(IOException.class, in::read));
+    assertSame(failure, assertThrows(IOException.class, () -> in.read(new byte[10], 0, 10)));
+  }
+
+  @Test
+  void reportsAnyOtherFailure() {
+    // Without this the reader would wait forever for the end of the stream
+    RuntimeException failure = new IllegalStateException("inflater bug");
+    InputStream in = new BackgroundInflaterInputStream(new FailingStream(failure), "test");
+    assertSame(failure, assertThrows(IOException.class, in::readAllBytes).getCause());
+    assertSame(failure, assertThrows(IOException.class, in::read).getCause());
+  }
+
+  /** Returns a chunk of data, then fails */
+  private static class FailingStream extends InputStream {
+    private final Throwable failure;
+    private int remaining = 70000;
+
+    private FailingStream(Throwable failure) {
+      this.failure = failure;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining-- > 0) {
+        return 'x';
+      }
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      throw (RuntimeException) failure;
+    }
+  }
+}
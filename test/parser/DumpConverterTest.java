@@ -0,0 +1,91 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import datamodel.Record;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Holder;
+
+/**
+ * Tests converting dumps into line-delimited ones, and parsing those
+ *
+ * @author Eric Karlson
+ */
+class DumpConverterTest {
+  private static final String DUMP =
+      "{\n"
+          + "  '00000001': {'Record Header': {'Signature': 'KYWD', 'FormID': '00000001'},\n"
+          + "    'EDID - Editor ID': 'Caf\u00e9', 'FULL - Name': 'Caf\u00e9 Corp\u2019s'},\n"
+          + "  '00000002': {'Record Header': {'Signature': 'WEAP', 'FormID': '00000002'},\n"
+          + "    'EDID - Editor ID': 'Weap', 'Keywords': {'KWDA - Keywords':\n"
+          + "      {'Keyword': '00000001', 'Keyword': '00000003'}}}\n"
+          + "}\n";
+
+  @TempDir Path dir;
+
+  @Test
+  void writesOneRecordPerLine() throws IOException {
+    String source = dump("Test.json", DUMP);
+    String target = DumpConverter.toLineDelimitedName(source);
+
+    assertEquals(dir.resolve("Test.ndjson").toString(), target);
+    assertEquals(2, DumpConverter.toLineDelimited(source, target, false));
+    List<String> lines = Files.readAllLines(Path.of(target), StandardCharsets.UTF_8);
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(0).contains("\"Caf\u00e9 Corp\u2019s\""), lines.get(0));
+    assertTrue(lines.get(1).contains("\"Keyword\":\"00000001\",\"Keyword\":\"00000003\""));
+  }
+
+  @Test
+  void parsesTheSameRecordsAsTheDump() throws IOException {
+    String source = dump("Test.json", DUMP);
+    String target = DumpConverter.toLineDelimitedName(source);
+    DumpConverter.toLineDelimited(source, target, false);
+
+    ESMJsonParser expected = new ESMJsonParser();
+    expected.parse(source, new Holder<>());
+    for (int threads : new int[] {1, 4}) {
+      ESMJsonParser actual = new ESMJsonParser();
+      actual.parse(target, threads, new Holder<>());
+      for (String formId : List.of("00000001", "00000002")) {
+        Record rec = actual.findRecordByFormId(formId, Record.class);
+        assertNotNull(rec, formId);
+        assertEquals(expected.findRecordByFormId(formId, Record.class).getNode(), rec.getNode());
+      }
+      Record corp = actual.findRecordByFormId("00000001", Record.class);
+      assertEquals("Caf\u00e9 Corp\u2019s", corp.getFullName());
+    }
+  }
+
+  @Test
+  void appendsToALineDelimitedDump() throws IOException {
+    String target = dir.resolve("All.ndjson").toString();
+    DumpConverter.toLineDelimited(dump("Test.json", DUMP), target, false);
+    String more =
+        dump(
+            "More.json",
+            "{'00000003': {'Record Header': {'Signature': 'KYWD', 'FormID': '00000003'},"
+                + " 'EDID - Editor ID': 'More'}}");
+
+    assertEquals(1, DumpConverter.toLineDelimited(more, target, true));
+    assertEquals(3, Files.readAllLines(Path.of(target), StandardCharsets.UTF_8).size());
+
+    ESMJsonParser parser = new ESMJsonParser();
+    parser.parse(target, new Holder<>());
+    assertEquals("More", parser.findRecordByFormId("00000003", Record.class).getEditorId());
+  }
+
+  /** Writes a dump the way xEdit does, in cp1252 */
+  private String dump(String filename, String json) throws IOException {
+    Path path = dir.resolve(filename);
+    Files.write(path, json.replace('\'', '"').getBytes(Charset.forName("cp1252")));
+    return path.toString();
+  }
+}
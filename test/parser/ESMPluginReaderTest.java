@@ -0,0 +1,540 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import datamodel.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.Deflater;
+import miner.ShipWeaponMiner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Holder;
+
+/**
+ * Tests that a binary plugin is read into the same records as the xEdit JSON dump of it. The
+ * plugin holds one Ship Weapon and everything it refers to, with the WEAP and AMMO records
+ * compressed.
+ *
+ * @author Eric Karlson
+ */
+class ESMPluginReaderTest {
+  private static final String COBJ_FID = "01000005";
+  private static final String GBFM_FID = "01000000";
+  private static final String WEAP_FID = "01000001";
+  private static final String AMMO_FID = "01000002";
+  private static final String PROJ_FID = "01000003";
+  private static final String EXPL_FID = "01000004";
+  private static final String MAKE_FID = "01F00001";
+  private static final String CLASS_FID = "01F00002";
+  private static final String PERK_FID = "01F00003";
+
+  @TempDir Path dir;
+
+  @Test
+  void readsTheSameRecordsAsTheJsonDump() throws IOException {
+    ESMJsonParser fromJson = parse(writeJson());
+    ESMJsonParser fromPlugin = parse(writePlugin());
+
+    for (String formId :
+        List.of(
+            COBJ_FID, GBFM_FID, WEAP_FID, AMMO_FID, PROJ_FID, EXPL_FID, MAKE_FID, CLASS_FID,
+            PERK_FID)) {
+      Record expected = fromJson.findRecordByFormId(formId, Record.class);
+      Record actual = fromPlugin.findRecordByFormId(formId, Record.class);
+      assertNotNull(actual, formId);
+      assertEquals(expected.getClass(), actual.getClass(), formId);
+      assertEquals(expected.getEditorId(), actual.getEditorId(), formId);
+      assertEquals(expected.getFullName(), actual.getFullName(), formId);
+    }
+
+    COBJRecord cobj = fromPlugin.findRecordByFormId(COBJ_FID, COBJRecord.class);
+    assertEquals(KYWDRecord.CATEGORY_SHIPMOD_WEAPON_FID, cobj.getCategoryFormId());
+    assertEquals(1000, cobj.getCost());
+    List<String> conditions = new ArrayList<>();
+    cobj.getConditions()
+        .forEachRemaining(
+            c ->
+                conditions.add(
+                    c.getFunction()
+                        + " "
+                        + c.getRunOn()
+                        + " "
+                        + c.getConditionType()
+                        + " "
+                        + c.getComparisonValue()
+                        + " "
+                        + c.getParam1()));
+    assertEquals(
+        List.of(
+            "GetLevel Reference EQUAL_OR_GREATER 5 null",
+            "HasKeyword Subject EQUAL 1 0022A1B2",
+            "GetGlobalValue Subject EQUAL 1 0010DA30"),
+        conditions);
+    List<String> perks = new ArrayList<>();
+    cobj.getRequiredPerks().forEachRemaining(p -> perks.add(p.getPerkFormId() + "=" + p.getRank()));
+    assertEquals(List.of(PERKRecord.SKILL_STARSHIP_DESIGN_FID + "=2", PERK_FID + "=1"), perks);
+
+    GBFMRecord gbfm = cobj.getCreatedObject(GBFMRecord.class);
+    assertNotNull(gbfm);
+    assertEquals("Corp A", gbfm.getManufacturer());
+    assertEquals("Class A", gbfm.getShipModuleClass());
+    assertEquals(
+        1.5,
+        gbfm.getPropertySheet().getPropertyValueAsDouble(AVIFRecord.SPACESHIP_CREW_RATING_FID, ""));
+    assertEquals(
+        20, gbfm.getPropertySheet().getPropertyValueAsInt(AVIFRecord.SPACESHIP_PART_MASS_FID, 0));
+
+    WEAPRecord weap = gbfm.getWEAPRecord();
+    assertNotNull(weap);
+    assertEquals(List.of(KYWDRecord.SPACESHIP_KINETIC_WEAPON_FID), keywords(weap));
+    assertEquals(10, weap.getPhysicalDamage());
+    assertEquals(3000, weap.getMaxRange());
+    assertEquals(1.5, weap.getCriticalDamageMultiplier());
+    assertEquals(5, weap.getAuxDamage(DMGTRecord.SHIELD_FID));
+    assertEquals(2, weap.getAuxDamage(DMGTRecord.ELECTROMAGNETIC_FID));
+    assertEquals(0.25, weap.getRechargeTime());
+    assertEquals(1.5, weap.getRechargeDelay());
+    assertEquals(6, weap.getAmmoCapacity());
+    assertEquals(2.5, weap.getShotsPerSecond());
+    assertEquals(3, weap.getBurstCount());
+
+    PROJRecord proj = weap.getAMMORecord().getPROJRecord();
+    assertEquals(2000, proj.getSpeed());
+    EXPLRecord expl = proj.getEXPLRecord();
+    assertNotNull(expl);
+    assertEquals(7, expl.getPhysicalDamage());
+    assertEquals(3, expl.getAuxDamage(DMGTRecord.SHIELD_FID));
+
+    String mined = mine(fromPlugin);
+    assertEquals(mine(fromJson), mined);
+    assertEquals(2, mined.split("\n").length, mined);
+  }
+
+  @Test
+  void keepsSubrecordsShorterThanTheirLayoutUndecoded() throws IOException {
+    Path plugin = dir.resolve("Short.esm");
+    Files.write(
+        plugin,
+        concat(
+            header(),
+            group(
+                "AMMO",
+                record(
+                    "AMMO",
+                    AMMO_FID,
+                    false,
+                    sub("EDID", "Ammo"),
+                    sub("DNAM", new byte[] {0x03, 0x00}),
+                    sub("ONAM", new byte[] {0x0A})))));
+    AMMORecord ammo = parse(plugin).findRecordByFormId(AMMO_FID, AMMORecord.class);
+
+    assertEquals("03 00", ammo.getNode().get("DNAM - Unknown").textValue());
+    assertEquals("0A", ammo.getNode().get("ONAM - Unknown").textValue());
+    assertNull(ammo.getPROJRecord());
+  }
+
+  private static ESMJsonParser parse(Path path) throws IOException {
+    ESMJsonParser parser = new ESMJsonParser();
+    parser.parse(path.toString(), new Holder<>());
+    return parser;
+  }
+
+  private static List<String> keywords(WEAPRecord weap) {
+    List<String> keywords = new ArrayList<>();
+    for (Iterator<String> iter = weap.getKeywordFormIds(); iter.hasNext(); ) {
+      keywords.add(iter.next());
+    }
+    return keywords;
+  }
+
+  private static String mine(ESMJsonParser parser) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ShipWeaponMiner().run(parser, new PrintStream(out, true, "UTF-8"));
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  /** Writes the records the way the xEdit "serialize-command-json" script dumps them */
+  private Path writeJson() throws IOException {
+    String json =
+        "{"
+            + record(
+                MAKE_FID,
+                "KYWD",
+                "'EDID - Editor ID': 'CorpA', 'FULL - Name': 'Corp A',"
+                    + " 'TNAM - Type': 'Manufacturer'")
+            + ","
+            + record(
+                CLASS_FID,
+                "KYWD",
+                "'EDID - Editor ID': 'ClassA', 'FULL - Name': 'Class A',"
+                    + " 'TNAM - Type': 'Ship Module Class'")
+            + ","
+            + record(PERK_FID, "PERK", "'EDID - Editor ID': 'PerkX', 'FULL - Name': 'Perk X'")
+            + ","
+            + record(
+                COBJ_FID,
+                "COBJ",
+                "'EDID - Editor ID': 'co_gun',"
+                    + " 'Conditions': ["
+                    + condition("11000000", "5", "GetLevel", "Reference", "null")
+                    + ","
+                    + condition("10000000", "1", "HasKeyword", "Subject", "0022A1B2")
+                    + ","
+                    + condition("10000000", "1", "GetGlobalValue", "Subject", "0010DA30")
+                    + "],"
+                    + " 'RQPK - Required Perks': {"
+                    + "  'Required Perk #0': {'Perk': '"
+                    + PERKRecord.SKILL_STARSHIP_DESIGN_FID
+                    + "', 'Rank': '2'},"
+                    + "  'Required Perk #1': {'Perk': '"
+                    + PERK_FID
+                    + "', 'Rank': '1'}},"
+                    + " 'CNAM - Created Object': '"
+                    + GBFM_FID
+                    + "',"
+                    + " 'FNAM - Recipe Filters': {'Keyword': '"
+                    + KYWDRecord.CATEGORY_SHIPMOD_WEAPON_FID
+                    + "'},"
+                    + " 'DATA - Value': '1000'")
+            + ","
+            + record(
+                GBFM_FID,
+                "GBFM",
+                "'EDID - Editor ID': 'SM_Gun', 'Base Form Components': ["
+                    + component(
+                        "TESFullName_Component",
+                        "Component Data - Fullname",
+                        "'FULL - Name': 'Gun'")
+                    + ","
+                    + component(
+                        "BGSKeywordForm_Component",
+                        "Component Data - Keywords",
+                        "'Keywords': {'KSIZ - Keyword Count': '2', 'KWDA - Keywords':"
+                            + " {'Keyword': '"
+                            + MAKE_FID
+                            + "', 'Keyword': '"
+                            + CLASS_FID
+                            + "'}}")
+                    + ","
+                    + component(
+                        "BGSPropertySheet_Component",
+                        "Component Data - Property Sheet",
+                        "'PRPS - Properties': {"
+                            + property(AVIFRecord.HEALTH_FID, "100")
+                            + ","
+                            + property(AVIFRecord.SPACESHIP_PART_MASS_FID, "20")
+                            + ","
+                            + property(AVIFRecord.SPACESHIP_CREW_RATING_FID, "1.5")
+                            + ","
+                            + property(AVIFRecord.SHIP_SYSTEM_WEAPON_HEALTH_FID, "50")
+                            + ","
+                            + property(AVIFRecord.SPACESHIP_WEAPON_POWER_FID, "3")
+                            + "}")
+                    + ","
+                    + component(
+                        "BGSFormLinkData_Component",
+                        "Component Data - Form Links",
+                        "'Linked Forms': [{'Linked Form': {'FLKW - Keyword': '"
+                            + KYWDRecord.SPACESHIP_PART_LINKED_WEAPON_FID
+                            + "', 'FLFM - Linked Form': '"
+                            + WEAP_FID
+                            + "'}}]")
+                    + "]")
+            + ","
+            + record(
+                WEAP_FID,
+                "WEAP",
+                "'EDID - Editor ID': 'Weap',"
+                    + " 'Keywords': {'KSIZ - Keyword Count': '1', 'KWDA - Keywords': {'Keyword': '"
+                    + KYWDRecord.SPACESHIP_KINETIC_WEAPON_FID
+                    + "'}},"
+                    + " 'WDMG - Damage': {'Base Damage': '10', 'Range - Min': '100',"
+                    + "  'Range - Max': '3000', 'Crit Damage Mult': '1.5'},"
+                    + " 'DAMA - Damage Types': {"
+                    + damageType(DMGTRecord.SHIELD_FID, "5")
+                    + ","
+                    + damageType(DMGTRecord.ELECTROMAGNETIC_FID, "2")
+                    + "},"
+                    + " 'QNAM - Power': {'Recharge time': '0.25', 'Recharge delay': '1.5'},"
+                    + " 'WAM2 - Ammunition': {'Ammo Type': '"
+                    + AMMO_FID
+                    + "', 'Ammo Capacity': '6'},"
+                    + " 'WFIR - Firing': {'Shots Per Second': '2.5', 'Burst count': '3'}")
+            + ","
+            + record(
+                AMMO_FID,
+                "AMMO",
+                "'EDID - Editor ID': 'Ammo', 'DNAM - DNAM': {'Projectile': '" + PROJ_FID + "'}")
+            + ","
+            + record(
+                PROJ_FID,
+                "PROJ",
+                "'EDID - Editor ID': 'Proj', 'PROD - Data': {'Flags': {'Explosion': '1'},"
+                    + " 'Speed': '2000', 'Explosion': '"
+                    + EXPL_FID
+                    + "'}")
+            + ","
+            + record(
+                EXPL_FID,
+                "EXPL",
+                "'EDID - Editor ID': 'Expl', 'ENAM - Data': {'Unknown #2': '7'},"
+                    + " 'DAMA - Damage Types': {"
+                    + damageType(DMGTRecord.SHIELD_FID, "3")
+                    + "}")
+            + "}";
+    Path path = dir.resolve("Test.json");
+    Files.write(path, json.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+    return path;
+  }
+
+  private static String record(String formId, String signature, String fields) {
+    return String.format(
+        "'%s': {'Record Header': {'Signature': '%s', 'Record Flags': {}, 'FormID': '%s'}, %s}",
+        formId, signature, formId, fields);
+  }
+
+  private static String condition(
+      String type, String comparison, String function, String runOn, String param) {
+    return String.format(
+        "{'Condition': {'CTDA - CTDA': {'Type': '%s', 'Comparison Value': '%s',"
+            + " 'Function': '%s', 'Run On': '%s', 'Parameter #1': '%s'}}}",
+        type, comparison, function, runOn, param);
+  }
+
+  private static String component(String type, String dataName, String data) {
+    return String.format(
+        "{'Component': {'BFCB - Component Type': '%s', '%s': {%s}}}", type, dataName, data);
+  }
+
+  private static String property(String actorValue, String value) {
+    return String.format("'Property': {'Actor Value': '%s', 'Value': '%s'}", actorValue, value);
+  }
+
+  private static String damageType(String damageType, String value) {
+    return String.format("'Damage Type': {'Damage Type': '%s', 'Value': '%s'}", damageType, value);
+  }
+
+  /** Writes the same records as {@link #writeJson()} into a plugin */
+  private Path writePlugin() throws IOException {
+    byte[] plugin =
+        concat(
+            header(),
+            group(
+                "KYWD",
+                record(
+                    "KYWD",
+                    MAKE_FID,
+                    false,
+                    sub("EDID", "CorpA"),
+                    sub("FULL", "Corp A"),
+                    sub("TNAM", le(19))),
+                record(
+                    "KYWD",
+                    CLASS_FID,
+                    false,
+                    sub("EDID", "ClassA"),
+                    sub("FULL", "Class A"),
+                    sub("TNAM", le(20)))),
+            group(
+                "PERK",
+                record("PERK", PERK_FID, false, sub("EDID", "PerkX"), sub("FULL", "Perk X"))),
+            group(
+                "COBJ",
+                record(
+                    "COBJ",
+                    COBJ_FID,
+                    false,
+                    sub("EDID", "co_gun"),
+                    sub("CTDA", condition(0x03, 5, 80, 0, 2)),
+                    sub("CTDA", condition(0x01, 1, 560, fid("0022A1B2"), 0)),
+                    sub("CTDA", condition(0x01, 1, 74, fid("0010DA30"), 0)),
+                    sub(
+                        "RQPK",
+                        le(
+                            fid(PERKRecord.SKILL_STARSHIP_DESIGN_FID),
+                            (byte) 2,
+                            fid(PERK_FID),
+                            (byte) 1)),
+                    sub("CNAM", le(fid(GBFM_FID))),
+                    sub("FNAM", le(fid(KYWDRecord.CATEGORY_SHIPMOD_WEAPON_FID))),
+                    sub("DATA", le(1000)))),
+            group(
+                "GBFM",
+                record(
+                    "GBFM",
+                    GBFM_FID,
+                    false,
+                    sub("EDID", "SM_Gun"),
+                    sub("BFCB", "TESFullName_Component"),
+                    sub("FULL", "Gun"),
+                    sub("BFCE", new byte[0]),
+                    sub("BFCB", "BGSKeywordForm_Component"),
+                    sub("KSIZ", le(2)),
+                    sub("KWDA", le(fid(MAKE_FID), fid(CLASS_FID))),
+                    sub("BFCE", new byte[0]),
+                    sub("BFCB", "BGSPropertySheet_Component"),
+                    sub(
+                        "PRPS",
+                        le(
+                            fid(AVIFRecord.HEALTH_FID), 100f, 0,
+                            fid(AVIFRecord.SPACESHIP_PART_MASS_FID), 20f, 0,
+                            fid(AVIFRecord.SPACESHIP_CREW_RATING_FID), 1.5f, 0,
+                            fid(AVIFRecord.SHIP_SYSTEM_WEAPON_HEALTH_FID), 50f, 0,
+                            fid(AVIFRecord.SPACESHIP_WEAPON_POWER_FID), 3f, 0)),
+                    sub("BFCE", new byte[0]),
+                    sub("BFCB", "BGSFormLinkData_Component"),
+                    sub("FLKW", le(fid(KYWDRecord.SPACESHIP_PART_LINKED_WEAPON_FID))),
+                    sub("FLFM", le(fid(WEAP_FID))),
+                    sub("BFCE", new byte[0]))),
+            group(
+                "WEAP",
+                record(
+                    "WEAP",
+                    WEAP_FID,
+                    true,
+                    sub("EDID", "Weap"),
+                    sub("KSIZ", le(1)),
+                    sub("KWDA", le(fid(KYWDRecord.SPACESHIP_KINETIC_WEAPON_FID))),
+                    sub("WDMG", le(10f, 100f, 3000f, 1f, 1.5f)),
+                    sub(
+                        "DAMA",
+                        le(
+                            fid(DMGTRecord.SHIELD_FID), 5, 0,
+                            fid(DMGTRecord.ELECTROMAGNETIC_FID), 2, 0)),
+                    sub("QNAM", le(0.25f, 1.5f)),
+                    sub("WAM2", le(fid(AMMO_FID), 6)),
+                    sub("WFIR", le(2.5f, (byte) 3)))),
+            group(
+                "AMMO",
+                record(
+                    "AMMO",
+                    AMMO_FID,
+                    true,
+                    sub("EDID", "Ammo"),
+                    sub("DNAM", le(fid(PROJ_FID))))),
+            group(
+                "PROJ",
+                record(
+                    "PROJ",
+                    PROJ_FID,
+                    false,
+                    sub("EDID", "Proj"),
+                    sub(
+                        "PROD",
+                        le(
+                            (short) 0x0002,
+                            (short) 1,
+                            0f,
+                            2000f,
+                            5000f,
+                            0,
+                            0,
+                            0f,
+                            0f,
+                            fid(EXPL_FID))))),
+            group(
+                "EXPL",
+                record(
+                    "EXPL",
+                    EXPL_FID,
+                    false,
+                    sub("EDID", "Expl"),
+                    sub("ENAM", le(0, 7f)),
+                    sub("DAMA", le(fid(DMGTRecord.SHIELD_FID), 3, 0)))));
+    Path path = dir.resolve("Test.esm");
+    Files.write(path, plugin);
+    return path;
+  }
+
+  /** The TES4 header of a plugin whose strings are held in the plugin itself */
+  private static byte[] header() {
+    return record("TES4", "00000000", false, sub("HEDR", le(1f, 0, 0)));
+  }
+
+  private static byte[] group(String label, byte[]... records) {
+    byte[] contents = concat(records);
+    return concat(
+        "GRUP".getBytes(StandardCharsets.US_ASCII),
+        le(24 + contents.length),
+        label.getBytes(StandardCharsets.US_ASCII),
+        le(0, 0, 0),
+        contents);
+  }
+
+  private static byte[] record(
+      String signature, String formId, boolean compressed, byte[]... subrecords) {
+    byte[] fields = concat(subrecords);
+    int flags = 0;
+    if (compressed) {
+      Deflater deflater = new Deflater();
+      deflater.setInput(fields);
+      deflater.finish();
+      byte[] buf = new byte[fields.length + 64];
+      int length = deflater.deflate(buf);
+      deflater.end();
+      fields = concat(le(fields.length), Arrays.copyOf(buf, length));
+      flags = 0x00040000;
+    }
+    return concat(
+        signature.getBytes(StandardCharsets.US_ASCII),
+        le(fields.length, flags, fid(formId), 0, 0),
+        fields);
+  }
+
+  private static byte[] sub(String signature, String value) {
+    return sub(signature, concat(value.getBytes(StandardCharsets.ISO_8859_1), new byte[1]));
+  }
+
+  private static byte[] sub(String signature, byte[] value) {
+    return concat(
+        signature.getBytes(StandardCharsets.US_ASCII), le((short) value.length), value);
+  }
+
+  /** A condition in Fallout 4's CTDA layout */
+  private static byte[] condition(int type, float comparison, int function, int param, int runOn) {
+    return le(type, comparison, (short) function, (short) 0, param, 0, runOn, 0, -1);
+  }
+
+  private static int fid(String formId) {
+    return Integer.parseUnsignedInt(formId, 16);
+  }
+
+  /**
+   * @param values Each a {@link Byte}, {@link Short}, {@link Integer} or {@link Float}
+   * @return The values in little-endian order
+   */
+  private static byte[] le(Object... values) {
+    ByteBuffer buf = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+    for (Object value : values) {
+      if (value instanceof Byte) {
+        buf.put((Byte) value);
+      } else if (value instanceof Short) {
+        buf.putShort((Short) value);
+      } else if (value instanceof Float) {
+        buf.putFloat((Float) value);
+      } else {
+        buf.putInt((Integer) value);
+      }
+    }
+    return Arrays.copyOf(buf.array(), buf.position());
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part, 0, part.length);
+    }
+    return out.toByteArray();
+  }
+}
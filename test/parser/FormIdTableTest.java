@@ -0,0 +1,80 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import datamodel.Record;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the lookup of records by FormID in a {@link FormIdTable}
+ *
+ * @author Eric Karlson
+ */
+class FormIdTableTest {
+  private final ESMJsonParser.ParserRegistrar registrar =
+      new ESMJsonParser().newDeferredRegistrar();
+
+  @Test
+  void findsRecordsByTextOrValue() {
+    FormIdTable table = new FormIdTable();
+    Record rec = record("0100ABCD");
+    table.put("0100ABCD", rec);
+
+    assertSame(rec, table.get("0100ABCD"));
+    assertSame(rec, table.get(0x0100ABCD));
+    assertNull(table.get(0x0000ABCD));
+    assertNull(table.get("0000ABCD"));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  void keepsEveryRecordAsItGrows() {
+    FormIdTable table = new FormIdTable();
+    List<Record> records = new ArrayList<>();
+
+    // Plugins reuse the same local ID's, and FormID 0 is a valid key
+    for (int plugin = 0; plugin < 4; plugin++) {
+      for (int local = 0; local < 2000; local++) {
+        int formId = (plugin << 24) | local;
+        Record rec = record(Util.formatFormId(formId));
+        records.add(rec);
+        table.put(formId, rec);
+      }
+    }
+
+    assertEquals(records.size(), table.size());
+    for (Record rec : records) {
+      assertSame(rec, table.get(rec.getFormId()));
+    }
+    assertNull(table.get(0x04000000));
+  }
+
+  @Test
+  void replacesTheRecordOfAFormId() {
+    FormIdTable table = new FormIdTable();
+    Record first = record("00000001");
+    Record second = record("00000001");
+    table.put(1, first);
+    table.put("00000001", second);
+
+    assertSame(second, table.get(1));
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  void keepsOtherFormIdsByTheirText() {
+    FormIdTable table = new FormIdTable();
+    Record rec = record("abc");
+    table.put("abc", rec);
+
+    assertSame(rec, table.get("abc"));
+    assertNull(table.get("ABC"));
+    assertEquals(1, table.size());
+  }
+
+  private Record record(String formId) {
+    return new Record(formId, "Test", "KYWD", null, registrar);
+  }
+}
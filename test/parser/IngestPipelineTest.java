@@ -0,0 +1,127 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Holder;
+
+/**
+ * Tests loading dumps through the stages of an {@link IngestPipeline}
+ *
+ * @author Eric Karlson
+ */
+class IngestPipelineTest {
+  /** Enough records, of enough bytes, to fill several batches and streamed chunks */
+  private static final int RECORDS = 1500;
+
+  @TempDir Path dir;
+
+  @Test
+  void registersTheRecordsInFileOrder() throws IOException {
+    List<String> dumps =
+        List.of(
+            dump("A.json", 0x01000000, false, false),
+            dump("B.json.gz", 0x02000000, false, true),
+            dump("C.ndjson.gz", 0x03000000, true, true));
+    List<String> expected = new ArrayList<>();
+    ESMJsonParser sequential = new ESMJsonParser();
+    sequential.setRegistrationListener(rec -> expected.add(rec.getNode().toString()));
+    for (String dump : dumps) {
+      sequential.parse(dump, new Holder<>());
+    }
+
+    List<String> registered = new ArrayList<>();
+    ESMJsonParser parser = new ESMJsonParser();
+    parser.setRegistrationListener(rec -> registered.add(rec.getNode().toString()));
+    IngestPipeline pipeline = new IngestPipeline(3, 2, 1);
+    parser.parse(dumps, pipeline, new Holder<>());
+
+    assertEquals(3 * RECORDS, registered.size());
+    assertEquals(expected, registered);
+    for (IngestPipeline.Stage stage : pipeline.getStages()) {
+      assertEquals(3 * RECORDS, stage.getRecords(), stage.getName());
+    }
+  }
+
+  @Test
+  void shutsDownEveryStageWhenOneFails() throws IOException {
+    String good = dump("A.json.gz", 0x01000000, false, true);
+    String rest = Files.readString(Path.of(dump("C.ndjson", 0x03000000, true, false)));
+    Path bad = dir.resolve("B.ndjson");
+    String record = "{'Record Header': {'Signature': 'KYWD', 'FormID': '02000000'}, 'Flag': tru}";
+    Files.writeString(bad, record.replace('\'', '"') + "\n" + rest);
+
+    // The reader is blocked on a full queue when the tokenizer fails, and is interrupted
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(30),
+        () -> {
+          Holder<String> current = new Holder<>();
+          ESMJsonParser parser = new ESMJsonParser();
+          List<String> dumps = List.of(good, bad.toString());
+          assertThrows(
+              IOException.class, () -> parser.parse(dumps, new IngestPipeline(2, 2, 1), current));
+
+          // A stage that fails before the others have started stops them too
+          String missing = dir.resolve("Missing.json").toString();
+          assertThrows(
+              IOException.class,
+              () -> parser.parse(List.of(missing), new IngestPipeline(4, 4, 1), current));
+        });
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      assertFalse(thread.getName().startsWith("ingest "), thread.getName() + " is still running");
+    }
+  }
+
+  /**
+   * Writes a dump of {@link #RECORDS} KYWD records, whose names hold a non-ASCII character
+   *
+   * @param filename The name of the dump file
+   * @param plugin The FormID of the first record
+   * @param lineDelimited {@code true} for a line-delimited (UTF-8) dump, otherwise cp1252
+   * @param compressed {@code true} to gzip the dump
+   * @return The path of the dump
+   */
+  private String dump(String filename, int plugin, boolean lineDelimited, boolean compressed)
+      throws IOException {
+    StringBuilder json = new StringBuilder(lineDelimited ? "" : "{\n");
+    String padding = "x".repeat(1000);
+    for (int idx = 0; idx < RECORDS; idx++) {
+      String formId = Util.formatFormId(plugin + idx);
+      String record =
+          String.format(
+              "{'Record Header': {'Signature': 'KYWD', 'FormID': '%s'},"
+                  + " 'EDID - Editor ID': 'Kw%d', 'FULL - Name': 'Caf\u00e9 %s',"
+                  + " 'DATA - Data': {'Escaped': 'a \\'}' }}",
+              formId, idx, padding);
+      if (lineDelimited) {
+        json.append(record).append('\n');
+      } else {
+        json.append((0 == idx) ? "" : ",\n").append('\'').append(formId).append("': ");
+        json.append(record);
+      }
+    }
+    json.append(lineDelimited ? "" : "\n}\n");
+
+    Charset charset = lineDelimited ? StandardCharsets.UTF_8 : Charset.forName("cp1252");
+    byte[] bytes = json.toString().replace('\'', '"').getBytes(charset);
+    Path path = dir.resolve(filename);
+    try (OutputStream os =
+        compressed
+            ? new GZIPOutputStream(Files.newOutputStream(path))
+            : Files.newOutputStream(path)) {
+      os.write(bytes);
+    }
+    return path.toString();
+  }
+}
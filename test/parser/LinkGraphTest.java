@@ -0,0 +1,122 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import datamodel.AMMORecord;
+import datamodel.PROJRecord;
+import datamodel.WEAPRecord;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Holder;
+
+/**
+ * Tests following the references resolved by the link phase of an {@link ESMJsonParser}
+ *
+ * @author Eric Karlson
+ */
+class LinkGraphTest {
+  private static final String DUMP =
+      "{\n"
+          + "  '00000001': {'Record Header': {'Signature': 'WEAP', 'FormID': '00000001'},\n"
+          + "    'EDID - Editor ID': 'Weap',\n"
+          + "    'WAM2 - Ammunition': {'Ammo Type': 'Ammo [AMMO:00000002]'}},\n"
+          + "  '00000002': {'Record Header': {'Signature': 'AMMO', 'FormID': '00000002'},\n"
+          + "    'EDID - Editor ID': 'Ammo', 'DNAM - DNAM': {'Projectile': '00000003'}},\n"
+          + "  '00000003': {'Record Header': {'Signature': 'PROJ', 'FormID': '00000003'},\n"
+          + "    'EDID - Editor ID': 'Proj', 'PROD - Data': {'Flags': {'Explosion': '1'},\n"
+          + "      'Explosion': 'Expl [EXPL:00000004]', 'Sound': 'Ammo [AMMO:00000002]'}},\n"
+          + "  '00000005': {'Record Header': {'Signature': 'WEAP', 'FormID': '00000005'},\n"
+          + "    'EDID - Editor ID': 'Gone',\n"
+          + "    'WAM2 - Ammunition': {'Ammo Type': 'Gone [AMMO:00000006]'}}\n"
+          + "}\n";
+
+  @TempDir Path dir;
+
+  @Test
+  void followsEachReferenceThroughItsField() throws IOException {
+    ESMJsonParser parser = parse();
+    LinkGraph graph = parser.link(2);
+
+    assertEquals(4, graph.getEdgeCount());
+    WEAPRecord weap = parser.findRecordByFormId("00000001", WEAPRecord.class);
+    AMMORecord ammo = parser.findRecordByFormId("00000002", AMMORecord.class);
+    LinkGraph.Links links = weap.getLinks();
+    LinkGraph.Field field = LinkGraph.field("WAM2 - Ammunition", "Ammo Type");
+    int idx = links.indexOf(field, "Ammo [AMMO:00000002]");
+
+    assertSame(ammo, links.getTarget(idx));
+    assertSame(field, links.getField(idx));
+    assertEquals("WAM2 - Ammunition\\Ammo Type", field.getPath());
+    assertEquals(-1, links.indexOf(field, "00000002"));
+    assertEquals(-1, links.indexOf(LinkGraph.field("WAM2 - Ammunition"), "Ammo [AMMO:00000002]"));
+    assertSame(ammo, weap.getAMMORecord());
+    assertSame(parser.findRecordByFormId("00000003", PROJRecord.class), ammo.getPROJRecord());
+  }
+
+  @Test
+  void reportsTheReferencesThatDontResolve() throws IOException {
+    ESMJsonParser parser = parse();
+    LinkGraph graph = parser.link(1);
+
+    // No PROJ's explosion resolves, so that field isn't taken to hold references at all
+    assertEquals(1, graph.getDanglingCount());
+    WEAPRecord gone = parser.findRecordByFormId("00000005", WEAPRecord.class);
+    LinkGraph.Dangling dangling =
+        graph.getDangling().get("WEAP").get("WAM2 - Ammunition\\Ammo Type").get(0);
+    assertSame(gone, dangling.getSource());
+    assertEquals("Gone [AMMO:00000006]", dangling.getReference());
+    assertNull(gone.getAMMORecord());
+    assertNull(parser.findRecordByFormId("00000003", PROJRecord.class).getEXPLRecord());
+  }
+
+  @Test
+  void findsReferrersInTheLoadOrder() throws IOException {
+    ESMJsonParser parser = parse();
+    String mod =
+        dump(
+            "Mod.json",
+            "{'00000001': {'Record Header': {'Signature': 'WEAP', 'FormID': '00000001'},"
+                + " 'EDID - Editor ID': 'Weap',"
+                + " 'WAM2 - Ammunition': {'Ammo Type': 'Ammo [AMMO:01000002]'}},"
+                + " '01000002': {'Record Header': {'Signature': 'AMMO', 'FormID': '01000002'},"
+                + " 'EDID - Editor ID': 'ModAmmo'}}");
+    RecordLayer layer = parser.loadLayer("Mod.esp", 0x01, List.of(mod), 1);
+    parser.setLoadOrder(List.of(layer));
+
+    // A query never links the records itself
+    assertThrows(AssertionError.class, () -> parser.findReferrers("01000002"));
+    parser.link(2);
+
+    WEAPRecord weap = parser.findRecordByFormId("00000001", WEAPRecord.class);
+    List<LinkGraph.Referrer> referrers = parser.findReferrers("01000002");
+    assertEquals(1, referrers.size());
+    assertSame(weap, referrers.get(0).getSource());
+    assertEquals("WAM2 - Ammunition\\Ammo Type", referrers.get(0).getField());
+    assertEquals("ModAmmo", weap.getAMMORecord().getEditorId());
+
+    // The parsed WEAP that the plugin overrides no longer refers to the parsed AMMO
+    List<LinkGraph.Referrer> ammo = parser.findReferrers("00000002");
+    assertEquals(1, ammo.size());
+    assertEquals("PROJ", ammo.get(0).getSource().getSignature());
+
+    parser.setLoadOrder(List.of());
+    assertThrows(AssertionError.class, () -> parser.findReferrers("01000002"));
+  }
+
+  private ESMJsonParser parse() throws IOException {
+    ESMJsonParser parser = new ESMJsonParser();
+    parser.parse(dump("Test.json", DUMP), new Holder<>());
+    return parser;
+  }
+
+  private String dump(String filename, String json) throws IOException {
+    Path path = dir.resolve(filename);
+    Files.write(path, json.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+    return path.toString();
+  }
+}
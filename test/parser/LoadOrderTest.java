@@ -0,0 +1,98 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import datamodel.KYWDRecord;
+import datamodel.Record;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Holder;
+
+/**
+ * Tests groups merged from the parsed records and the plugin layers of a {@link LoadOrder}
+ *
+ * @author Eric Karlson
+ */
+class LoadOrderTest {
+  @TempDir Path dir;
+
+  @Test
+  void layersOverrideParsedRecords() throws IOException {
+    ESMJsonParser parser = new ESMJsonParser();
+    parser.parse(keywords("base.json", "00000001", "Base", "00000002", "Other"), new Holder<>());
+    RecordLayer mod =
+        parser.loadLayer(
+            "Mod.esp",
+            0x01,
+            List.of(keywords("mod.json", "00000001", "Overridden", "01000001", "Added")),
+            1);
+    parser.setLoadOrder(List.of(mod));
+
+    assertEquals(List.of("Other", "Overridden", "Added"), names(parser.getGroup(KYWDRecord.class)));
+  }
+
+  @Test
+  void reusesTheMergedGroupUntilMoreRecordsAreParsed() throws IOException {
+    ESMJsonParser parser = new ESMJsonParser();
+    parser.parse(keywords("base.json", "00000001", "Base", "00000002", "Other"), new Holder<>());
+    RecordLayer mod =
+        parser.loadLayer(
+            "Mod.esp", 0x01, List.of(keywords("mod.json", "00000001", "Overridden")), 1);
+    parser.setLoadOrder(List.of(mod));
+
+    List<Record> group = parser.getGroup(KYWDRecord.class);
+    assertSame(group, parser.getGroup(KYWDRecord.class));
+
+    parser.parse(keywords("more.json", "00000003", "More"), new Holder<>());
+    List<Record> grown = parser.getGroup(KYWDRecord.class);
+    assertNotSame(group, grown);
+    assertEquals(List.of("Other", "More", "Overridden"), names(grown));
+
+    // A new load order starts afresh
+    parser.setLoadOrder(List.of());
+    assertEquals(List.of("Base", "Other", "More"), names(parser.getGroup(KYWDRecord.class)));
+  }
+
+  private static List<String> names(List<Record> records) {
+    return records.stream().map(Record::getFullName).collect(Collectors.toList());
+  }
+
+  /**
+   * Writes a dump of KYWD records
+   *
+   * @param filename The name of the dump
+   * @param formIdsAndNames The FormID and name of each record, in turn
+   * @return The path of the dump
+   */
+  private String keywords(String filename, String... formIdsAndNames) throws IOException {
+    StringBuilder json = new StringBuilder("{\n");
+    for (int idx = 0; idx < formIdsAndNames.length; idx += 2) {
+      String formId = formIdsAndNames[idx];
+      String name = formIdsAndNames[idx + 1];
+      json.append((idx > 0) ? ",\n" : "")
+          .append('"')
+          .append(formId)
+          .append("\":{\n")
+          .append("  \"Record Header\":{\n")
+          .append("    \"Signature\": \"KYWD\",\n")
+          .append("    \"Record Flags\": {},\n")
+          .append("    \"FormID\": \"")
+          .append(formId)
+          .append("\"\n  },\n")
+          .append("  \"EDID - Editor ID\": \"")
+          .append(name)
+          .append("\",\n  \"FULL - Name\": \"")
+          .append(name)
+          .append("\"\n}");
+    }
+    json.append("\n}\n");
+    return Files.write(dir.resolve(filename), json.toString().getBytes(StandardCharsets.UTF_8))
+        .toString();
+  }
+}
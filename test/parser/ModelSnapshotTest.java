@@ -0,0 +1,133 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips record trees through a {@link ModelSnapshot}
+ *
+ * @author Eric Karlson
+ */
+class ModelSnapshotTest {
+  private static final JsonNodeFactory FACTORY = JsonNodeFactory.withExactBigDecimals(true);
+
+  @TempDir Path dir;
+
+  /**
+   * @return A tree holding every kind of value a snapshot encodes
+   */
+  static ObjectNode sampleTree() {
+    ObjectNode tree = FACTORY.objectNode();
+    tree.put("Text", "Ballistic");
+    tree.put("Int", 42);
+    tree.put("Negative", -7);
+    tree.put("Long", 1L << 40);
+    tree.put("Short", (short) 3);
+    tree.put("Float", 0.25f);
+    tree.put("Double", 1234.5625);
+    tree.put("BigInteger", new BigInteger("123456789012345678901234567890"));
+    tree.put("BigDecimal", new BigDecimal("-1.50"));
+    tree.put("True", true);
+    tree.put("False", false);
+    tree.putNull("Null");
+    tree.putArray("Array").add(1).add("two").addObject().put("Three", 3.0);
+    tree.putObject("Object").putObject("Nested").put("FormID", "0001A2B3");
+    return tree;
+  }
+
+  @Test
+  void roundTripsEveryNodeType() throws IOException {
+    ObjectNode tree = sampleTree();
+    ModelSnapshot snapshot = writeAndOpen(tree);
+
+    assertEquals(1, snapshot.size());
+    assertEquals("0001A2B3", snapshot.getFormId(0));
+    assertEquals("TestRecord", snapshot.getEditorId(0));
+    assertEquals("WEAP", snapshot.getSignature(0));
+    assertEquals(ModelSnapshot.FLAG_FORM_ID, snapshot.getFlags(0));
+
+    JsonNode decoded = snapshot.decode(snapshot.getTreeOffset(0), FACTORY);
+    assertEquals(tree, decoded);
+    assertSameNodeTypes(tree, decoded);
+  }
+
+  @Test
+  void keepsNumberTypes() throws IOException {
+    JsonNode decoded = decode(sampleTree());
+
+    assertTrue(decoded.get("Int").isInt());
+    assertEquals(42, decoded.get("Int").intValue());
+    assertTrue(decoded.get("Long").isLong());
+    assertEquals(1L << 40, decoded.get("Long").longValue());
+    assertTrue(decoded.get("Short").isShort());
+    assertTrue(decoded.get("Float").isFloat());
+    assertTrue(decoded.get("Double").isDouble());
+    assertEquals(1234.5625, decoded.get("Double").doubleValue());
+    assertTrue(decoded.get("BigInteger").isBigInteger());
+    assertTrue(decoded.get("BigDecimal").isBigDecimal());
+    assertEquals(new BigDecimal("-1.50"), decoded.get("BigDecimal").decimalValue());
+  }
+
+  @Test
+  void ignoresChangedSources() throws IOException {
+    Path source = Files.write(dir.resolve("Starfield.json"), new byte[] {'{', '}'});
+    List<String> sources = Collections.singletonList(source.toString());
+    String filename = dir.resolve("model.snap").toString();
+    ModelSnapshot.write(filename, sources, Collections.emptySet(), entries(sampleTree()));
+
+    Files.write(source, new byte[] {'{', ' ', '}'});
+    assertNull(ModelSnapshot.open(filename, sources, Collections.emptySet()));
+  }
+
+  private JsonNode decode(JsonNode tree) throws IOException {
+    ModelSnapshot snapshot = writeAndOpen(tree);
+    return snapshot.decode(snapshot.getTreeOffset(0), FACTORY);
+  }
+
+  private ModelSnapshot writeAndOpen(JsonNode tree) throws IOException {
+    Path source = Files.write(dir.resolve("Starfield.json"), new byte[] {'{', '}'});
+    List<String> sources = Collections.singletonList(source.toString());
+    String filename = dir.resolve("model.snap").toString();
+    ModelSnapshot.write(filename, sources, Collections.emptySet(), entries(tree));
+    ModelSnapshot snapshot = ModelSnapshot.open(filename, sources, Collections.emptySet());
+    assertNotNull(snapshot);
+    return snapshot;
+  }
+
+  private static Iterator<ModelSnapshot.Entry> entries(JsonNode tree) {
+    return Collections.singletonList(
+            new ModelSnapshot.Entry(
+                "0001A2B3", "TestRecord", "WEAP", ModelSnapshot.FLAG_FORM_ID, tree))
+        .iterator();
+  }
+
+  /** Asserts that two equal trees are built from the same classes of node throughout */
+  static void assertSameNodeTypes(JsonNode expected, JsonNode actual) {
+    assertEquals(expected.getNodeType(), actual.getNodeType());
+    if (expected.isValueNode()) {
+      assertEquals(expected.getClass(), actual.getClass(), expected.toString());
+    }
+    if (expected.isObject()) {
+      expected
+          .fieldNames()
+          .forEachRemaining(key -> assertSameNodeTypes(expected.get(key), actual.get(key)));
+    } else if (expected.isArray()) {
+      for (int idx = 0; idx < expected.size(); idx++) {
+        assertSameNodeTypes(expected.get(idx), actual.get(idx));
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the read-only trees of {@link FrozenObjectNode}'s built by a {@link NodeFreezer}
+ *
+ * @author Eric Karlson
+ */
+class NodeFreezerTest {
+  private static final String RECORD =
+      "{'EDID - Editor ID': 'Weap', 'Keywords': {'KWDA - Keywords': {'Keyword': '00000001',"
+          + " 'Keyword': '00000002', 'Keyword': '00000003'}},"
+          + " 'DAMA - Damage Types': {'Damage Type': {'Damage Type': '0001EDE8', 'Value': '5'}},"
+          + " 'Conditions': [{'Condition': {'Function': 'GetLevel'}}], 'Speed': 2000}";
+
+  private final ObjectMapper mapper = new ObjectMapper().setNodeFactory(new ESMNodeFactory());
+
+  @Test
+  void keepsEveryValueAndOccurrence() throws IOException {
+    JsonNode parsed = parse(RECORD);
+    JsonNode frozen = new NodeFreezer(mapper.getNodeFactory(), false).freeze(parsed);
+
+    assertTrue(frozen instanceof FrozenObjectNode);
+    assertEquals(parsed, frozen);
+    JsonNode kwda = frozen.get("Keywords").get("KWDA - Keywords");
+    assertEquals(
+        List.of("00000001", "00000002", "00000003"), texts(Util.occurrences(kwda, "Keyword")));
+    assertEquals("00000002", kwda.get("Keyword #2").textValue());
+    assertEquals(3, kwda.size());
+    assertEquals(2000, frozen.get("Speed").intValue());
+    assertEquals(
+        "GetLevel", frozen.get("Conditions").get(0).get("Condition").get("Function").textValue());
+  }
+
+  @Test
+  void isReadOnly() throws IOException {
+    JsonNode frozen = new NodeFreezer(mapper.getNodeFactory(), false).freeze(parse(RECORD));
+
+    assertThrows(UnsupportedOperationException.class, () -> ((ObjectNode) frozen).put("A", "B"));
+    assertThrows(
+        UnsupportedOperationException.class, () -> ((ObjectNode) frozen).remove("Speed"));
+  }
+
+  @Test
+  void sharesShapesButOnlySharesSubtreesWhenAsked() throws IOException {
+    NodeFreezer freezer = new NodeFreezer(mapper.getNodeFactory(), false);
+    JsonNode first = freezer.freeze(parse(RECORD));
+    JsonNode second = freezer.freeze(parse(RECORD));
+
+    assertSame(((FrozenObjectNode) first).getShape(), ((FrozenObjectNode) second).getShape());
+    assertEquals(first.get("DAMA - Damage Types"), second.get("DAMA - Damage Types"));
+    assertNotSame(first.get("DAMA - Damage Types"), second.get("DAMA - Damage Types"));
+    assertSame(first, freezer.freeze(first));
+
+    NodeFreezer sharing = new NodeFreezer(mapper.getNodeFactory(), true);
+    first = sharing.freeze(parse(RECORD));
+    second = sharing.freeze(parse(RECORD.replace("Weap", "Other")));
+
+    assertNotSame(first, second);
+    assertSame(first.get("DAMA - Damage Types"), second.get("DAMA - Damage Types"));
+    assertSame(first.get("Keywords"), second.get("Keywords"));
+    assertSame(first.get("Conditions"), second.get("Conditions"));
+  }
+
+  private JsonNode parse(String json) throws IOException {
+    return mapper.readTree(json.replace('\'', '"'));
+  }
+
+  private static List<String> texts(List<JsonNode> values) {
+    List<String> texts = new ArrayList<>();
+    values.forEach(value -> texts.add(value.textValue()));
+    return texts;
+  }
+}
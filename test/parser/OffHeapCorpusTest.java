@@ -0,0 +1,50 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import datamodel.Record;
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips record trees through an {@link OffHeapCorpus}
+ *
+ * @author Eric Karlson
+ */
+class OffHeapCorpusTest {
+  private static final JsonNodeFactory FACTORY = JsonNodeFactory.withExactBigDecimals(true);
+
+  @Test
+  void roundTripsEveryNodeType() throws IOException {
+    OffHeapCorpus corpus = new OffHeapCorpus(FACTORY, UnaryOperator.identity(), new NodeCache());
+    ObjectNode tree = ModelSnapshotTest.sampleTree();
+
+    JsonNode decoded = corpus.store(tree).load(newRecord());
+    assertEquals(tree, decoded);
+    ModelSnapshotTest.assertSameNodeTypes(tree, decoded);
+    assertTrue(decoded.get("Int").isInt());
+    assertTrue(decoded.get("Double").isDouble());
+  }
+
+  @Test
+  void keepsEachTreeApart() throws IOException {
+    OffHeapCorpus corpus = new OffHeapCorpus(FACTORY, UnaryOperator.identity(), new NodeCache());
+    ObjectNode first = FACTORY.objectNode().put("EDID - Editor ID", "First").put("Value", 1);
+    ObjectNode second = FACTORY.objectNode().put("EDID - Editor ID", "Second").put("Value", 2.5);
+
+    RecordSource firstSource = corpus.store(first);
+    RecordSource secondSource = corpus.store(second);
+    assertEquals(second, secondSource.load(newRecord()));
+    assertEquals(first, firstSource.load(newRecord()));
+  }
+
+  private static Record newRecord() {
+    // Never committed, so the record is not registered with the parser
+    return new Record(
+        "00000001", "Test", "WEAP", null, new ESMJsonParser().newDeferredRegistrar());
+  }
+}
@@ -0,0 +1,83 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import datamodel.COBJRecord;
+import datamodel.WEAPRecord;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Holder;
+
+/**
+ * Tests that records bound to a {@link RecordProjection} read the same as their trees
+ *
+ * @author Eric Karlson
+ */
+class RecordProjectionTest {
+  private static final String DUMP =
+      "{\n"
+          + "  '00000001': {'Record Header': {'Signature': 'WEAP', 'FormID': '00000001'},\n"
+          + "    'EDID - Editor ID': 'Weap',\n"
+          + "    'Keywords': {'KSIZ - Count': '3', 'KWDA - Keywords': {'Keyword': '0000000A',\n"
+          + "      'Count': '0000000C', 'Keyword': '0000000B'}},\n"
+          + "    'DAMA - Damage Types': {'Count': {'Damage Type': '0000000D', 'Value': '7'},\n"
+          + "      'Damage Type': {'Damage Type': '0000000E', 'Value': '5'},\n"
+          + "      'Damage Type': {'Damage Type': '0000000F', 'Value': '3'}}},\n"
+          + "  '00000002': {'Record Header': {'Signature': 'COBJ', 'FormID': '00000002'},\n"
+          + "    'EDID - Editor ID': 'Cobj', 'Conditions': [{'Condition': {'CTDA - CTDA':\n"
+          + "      {'Function': 'GetLevel', 'Comparison Value': '5'}}}],\n"
+          + "    'RQPK - Required Perks': {'Required Perk #0': {'Perk': '00000010', 'Rank': 2}}}\n"
+          + "}\n";
+
+  @TempDir Path dir;
+
+  @Test
+  void readsOnlyTheFieldsTheTreePathReads() throws IOException {
+    for (boolean binding : new boolean[] {false, true}) {
+      ESMJsonParser parser = parse(binding, false);
+      WEAPRecord weap = parser.findRecordByFormId("00000001", WEAPRecord.class);
+
+      assertEquals(List.of("0000000A", "0000000B"), list(weap.getKeywordFormIds()));
+      assertFalse(weap.hasKeyword("0000000C"));
+      assertEquals(5, weap.getAuxDamage("0000000E"));
+      assertEquals(3, weap.getAuxDamage("0000000F"));
+      assertEquals(0, weap.getAuxDamage("0000000D"));
+    }
+  }
+
+  @Test
+  void settlesTheTreesItKeeps() throws IOException {
+    ESMJsonParser parser = parse(true, true);
+    COBJRecord cobj = parser.findRecordByFormId("00000002", COBJRecord.class);
+
+    COBJRecord.Condition condition = cobj.getConditions().next();
+    assertTrue(condition.getNode() instanceof FrozenObjectNode);
+    assertEquals("GetLevel", condition.getFunction());
+    COBJRecord.RequiredPerk perk = cobj.getRequiredPerks().next();
+    assertTrue(perk.getNode() instanceof FrozenObjectNode);
+    assertEquals(Integer.valueOf(2), perk.getRank());
+  }
+
+  private ESMJsonParser parse(boolean binding, boolean frozen) throws IOException {
+    Path path = dir.resolve(binding + "-" + frozen + ".json");
+    Files.write(path, DUMP.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+    ESMJsonParser parser = new ESMJsonParser();
+    parser.setProjectionBinding(binding);
+    parser.setFrozenTrees(frozen);
+    parser.parse(path.toString(), new Holder<>());
+    return parser;
+  }
+
+  private static List<String> list(Iterator<String> iter) {
+    List<String> list = new ArrayList<>();
+    iter.forEachRemaining(list::add);
+    return list;
+  }
+}
@@ -0,0 +1,47 @@
+package parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.WeakReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link WeakInterner}
+ *
+ * @author Eric Karlson
+ */
+class WeakInternerTest {
+  @Test
+  void keepsTheFirstInstance() {
+    WeakInterner<String, String> interner = new WeakInterner<>();
+    String first = new String("00012345");
+    String second = new String("00012345");
+
+    assertNull(interner.putIfAbsent(first, first));
+    assertSame(first, interner.putIfAbsent(second, second));
+    assertSame(first, interner.get(second));
+    assertNull(interner.get("00054321"));
+  }
+
+  @Test
+  void doesNotKeepValuesAlive() throws InterruptedException {
+    WeakInterner<String, String> interner = new WeakInterner<>();
+    WeakReference<String> ref = intern(interner);
+
+    for (int attempt = 0; attempt < 50 && null != ref.get(); attempt++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(ref.get(), "The interner kept its value alive");
+
+    String replacement = new String("Ballistic");
+    assertNull(interner.putIfAbsent(replacement, replacement));
+    assertSame(replacement, interner.get("Ballistic"));
+  }
+
+  private static WeakReference<String> intern(WeakInterner<String, String> interner) {
+    String value = new String("Ballistic");
+    interner.putIfAbsent(value, value);
+    return new WeakReference<>(value);
+  }
+}
@@ -0,0 +1,142 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import parser.ESMNodeFactory;
+import parser.Util;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the occurrences of repeated keys held by an {@link ESMKeyValueMap}
+ *
+ * @author Eric Karlson
+ */
+class ESMKeyValueMapTest {
+  @Test
+  void keepsEveryOccurrenceInOrder() {
+    ESMKeyValueMap map = map("Keyword", "A", "Other", "X", "Keyword", "B", "Keyword", "C");
+
+    assertEquals(4, map.size());
+    assertEquals(List.of("A", "B", "C"), texts(map.occurrences("Keyword")));
+    assertEquals(List.of("X"), texts(map.occurrences("Other")));
+    assertTrue(map.occurrences("Missing").isEmpty());
+    assertEquals("A", map.get("Keyword").textValue());
+    assertEquals("B", map.getOccurrence("Keyword", 2).textValue());
+    assertNull(map.getOccurrence("Keyword", 4));
+    assertEquals(Set.of("Keyword", "Other"), map.distinctKeys());
+  }
+
+  @Test
+  void presentsRepeatedOccurrencesUnderFabricatedKeys() {
+    ESMKeyValueMap map = map("Keyword", "A", "Keyword", "B", "Keyword", "C");
+
+    assertEquals("Keyword #2", ESMKeyValueMap.generateRepeatedKey("Keyword", 2));
+    assertEquals("C", map.get("Keyword #3").textValue());
+    assertTrue(map.containsKey("Keyword #2"));
+    assertFalse(map.containsKey("Keyword #4"));
+    assertNull(map.get("Keyword #02"));
+
+    List<String> entries = new ArrayList<>();
+    map.forEach((key, value) -> entries.add(key + "=" + value.textValue()));
+    assertEquals(List.of("Keyword=A", "Keyword #2=B", "Keyword #3=C"), entries);
+  }
+
+  @Test
+  void foldsFabricatedKeysBackIntoTheirOccurrences() {
+    ESMKeyValueMap copy = new ESMKeyValueMap(map("Keyword", "A", "Keyword", "B", "Keyword", "C"));
+
+    assertEquals(List.of("A", "B", "C"), texts(copy.occurrences("Keyword")));
+    assertEquals(Set.of("Keyword"), copy.distinctKeys());
+
+    // A fabricated key out of sequence is just another key
+    ESMKeyValueMap map = map("Keyword", "A", "Keyword #3", "C");
+    assertEquals(List.of("A"), texts(map.occurrences("Keyword")));
+    assertEquals("C", map.get("Keyword #3").textValue());
+  }
+
+  @Test
+  void removingAnOccurrenceMovesTheLaterOnesUp() {
+    ESMKeyValueMap map = map("Keyword", "A", "Keyword", "B", "Keyword", "C");
+
+    assertEquals("B", map.remove("Keyword #2").textValue());
+    assertEquals(List.of("A", "C"), texts(map.occurrences("Keyword")));
+    assertEquals("C", map.get("Keyword #2").textValue());
+    assertNull(map.remove("Keyword #3"));
+
+    assertEquals("A", map.remove("Keyword").textValue());
+    assertEquals(List.of("C"), texts(map.occurrences("Keyword")));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void removesSingleOccurrencesThroughItsIterators() {
+    ESMKeyValueMap map = map("Keyword", "A", "Other", "X", "Keyword", "B", "Keyword", "C");
+
+    map.values().removeIf(value -> "B".equals(value.textValue()));
+    assertEquals(List.of("A", "C"), texts(map.occurrences("Keyword")));
+    assertEquals("C", map.get("Keyword #2").textValue());
+    assertEquals(3, map.size());
+
+    assertTrue(map.keySet().remove("Keyword"));
+    assertEquals(List.of("C"), texts(map.occurrences("Keyword")));
+    map.keySet().removeIf(key -> key.startsWith("Keyword"));
+    assertEquals(Set.of("Other"), map.distinctKeys());
+    assertEquals(1, map.size());
+
+    Iterator<Map.Entry<String, JsonNode>> iter = map.entrySet().iterator();
+    assertThrows(IllegalStateException.class, iter::remove);
+    iter.next();
+    iter.remove();
+    assertThrows(IllegalStateException.class, iter::remove);
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  void supportsTheObjectNodeRemovals() throws IOException {
+    ObjectMapper mapper = new ObjectMapper().setNodeFactory(new ESMNodeFactory());
+    String json = "{'Keyword': 'A', 'Other': 'X', 'Keyword': 'B', 'Keyword': 'C', 'Last': 'Y'}";
+    ObjectNode node = (ObjectNode) mapper.readTree(json.replace('\'', '"'));
+
+    // Later occurrences are matched by the keys they had before any were removed
+    node.retain("Keyword", "Keyword #3", "Last");
+    assertEquals(List.of("A", "C"), texts(Util.occurrences(node, "Keyword")));
+    assertNull(node.get("Other"));
+
+    node.remove(List.of("Keyword #2", "Last"));
+    assertEquals(List.of("A"), texts(Util.occurrences(node, "Keyword")));
+    assertEquals(1, node.size());
+
+    for (Iterator<Map.Entry<String, JsonNode>> iter = node.fields(); iter.hasNext(); ) {
+      iter.next();
+      iter.remove();
+    }
+    assertTrue(node.isEmpty());
+  }
+
+  /**
+   * @param keysAndValues Each key and its text value, in turn
+   */
+  private static ESMKeyValueMap map(String... keysAndValues) {
+    ESMKeyValueMap map = new ESMKeyValueMap();
+    for (int idx = 0; idx < keysAndValues.length; idx += 2) {
+      map.put(keysAndValues[idx], TextNode.valueOf(keysAndValues[idx + 1]));
+    }
+    return map;
+  }
+
+  private static List<String> texts(List<JsonNode> values) {
+    List<String> texts = new ArrayList<>();
+    values.forEach(value -> texts.add(value.textValue()));
+    return texts;
+  }
+}